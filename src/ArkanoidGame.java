@@ -4,6 +4,7 @@ import animation.AnimationRunner;
 import biuoop.GUI;
 import biuoop.KeyboardSensor;
 import game.GameFlow;
+import game.GameSettings;
 import game.LevelInformation;
 import levels.DirectHit;
 import levels.GreenThree;
@@ -27,7 +28,9 @@ public class ArkanoidGame {
      */
     public static void main(String[] args) {
         GUI gui = new GUI("Arkanoid", SCREEN_WIDTH, SCREEN_HEIGHT);
-        AnimationRunner animationRunner = new AnimationRunner(gui, 60);
+        AnimationRunner animationRunner = new AnimationRunner(gui, 60,
+                GameSettings.tickRate(), GameSettings.renderThread());
+        animationRunner.getProfiler().setEnabled(GameSettings.profile());
         KeyboardSensor keyboardSensor = gui.getKeyboardSensor();
         GameFlow gameFlow = new GameFlow(animationRunner, keyboardSensor);
         List<LevelInformation> levels = new ArrayList<>();
@@ -2,15 +2,37 @@ package animation;
 
 import biuoop.DrawSurface;
 import biuoop.GUI;
-import biuoop.Sleeper;
 
 /**
- * The type Animation runner, defined by gui and frames per second.
+ * The type Animation runner, defined by gui, frames per second and ticks
+ * per second. With a tick rate, stepped animations are simulated in fixed
+ * ticks measured with System.nanoTime and drawn in between the ticks, so
+ * the speed of the game doesn't depend on the rate of the drawing. With a
+ * render thread, the animations are simulated on the calling thread and
+ * every step records a frame that the render thread draws and shows, so
+ * neither of them waits for the other. The frames are paced by a frame
+ * pacer, which keeps the statistics of their timing, and the phases of
+ * the frames of the outermost animation may be profiled. Every frame is
+ * numbered by a frame fence, which tells the renderers when the images of
+ * a frame are no longer shown.
  * @author Max Shabs
  */
 public class AnimationRunner {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long MAX_FRAME_NANOS = 250 * NANOS_PER_MILLI;
     private GUI gui;
     private int framesPerSecond;
+    private int ticksPerSecond;
+    private boolean renderThread;
+    private FramePacer framePacer;
+    private FrameFence fence;
+    private FrameProfiler profiler;
+    private FrameProfiler nestedProfiler;
+    private int depth;
+    private FrameExchange exchange;
+    private RenderLoop renderLoop;
+    private Thread renderer;
 
     /**
      * Instantiates a new Animation runner.
@@ -19,8 +41,42 @@ public class AnimationRunner {
      * @param framesPerSecond the number of frames per second
      */
     public AnimationRunner(GUI gui, int framesPerSecond) {
+        this(gui, framesPerSecond, 0);
+    }
+
+    /**
+     * Instantiates a new Animation runner with a fixed tick rate for the
+     * stepped animations.
+     *
+     * @param gui             the gui
+     * @param framesPerSecond the number of frames drawn per second
+     * @param ticksPerSecond  the number of simulation ticks per second, 0
+     *                        to tick once every frame
+     */
+    public AnimationRunner(GUI gui, int framesPerSecond, int ticksPerSecond) {
+        this(gui, framesPerSecond, ticksPerSecond, false);
+    }
+
+    /**
+     * Instantiates a new Animation runner that may draw on a render thread.
+     *
+     * @param gui             the gui
+     * @param framesPerSecond the number of frames drawn per second
+     * @param ticksPerSecond  the number of simulation ticks per second, 0
+     *                        to tick once every frame
+     * @param renderThread    true to draw the frames on a render thread
+     */
+    public AnimationRunner(GUI gui, int framesPerSecond, int ticksPerSecond,
+                           boolean renderThread) {
         this.gui = gui;
         this.framesPerSecond = framesPerSecond;
+        this.ticksPerSecond = ticksPerSecond;
+        this.renderThread = renderThread;
+        this.framePacer = new FramePacer(NANOS_PER_SECOND / framesPerSecond);
+        this.fence = new FrameFence();
+        this.profiler = new FrameProfiler(false);
+        this.nestedProfiler = new FrameProfiler(false, false);
+        this.depth = 0;
     }
 
     /**
@@ -33,24 +89,225 @@ public class AnimationRunner {
     }
 
     /**
-     * Runs the animation.
+     * Gets the frame pacer of the frames that are shown, whose statistics
+     * are of the frames shown since they were last reset. With a render
+     * thread, the pacer is used by the render thread.
+     *
+     * @return the frame pacer.
+     */
+    public FramePacer getFramePacer() {
+        return this.framePacer;
+    }
+
+    /**
+     * Gets the fence of the frames shown on the gui, which the renderers
+     * use to tell when the images they drew are no longer shown.
+     *
+     * @return the frame fence.
+     */
+    public FrameFence getFrameFence() {
+        return this.fence;
+    }
+
+    /**
+     * Gets the frame profiler, which is disabled unless it is enabled. The
+     * runner profiles the frames of the outermost animation it runs, and
+     * the animation may profile the phases inside its frames.
+     *
+     * @return the frame profiler.
+     */
+    public FrameProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    /**
+     * Runs the animation. An animation that is run inside a frame of
+     * another one (like the pause screen) isn't profiled or recorded as
+     * frame events, and the frame it ran in is discarded.
      *
      * @param animation the animation we want to run.
      */
     public void run(Animation animation) {
-        int millisecondsPerFrame = 1000 / this.framesPerSecond;
-        biuoop.Sleeper sleeper = new Sleeper();
+        FrameProfiler frameProfiler = this.profiler;
+        this.depth++;
+        // checks if the animation runs inside a frame of another animation.
+        if (this.depth > 1) {
+            this.profiler.discardFrame();
+            frameProfiler = this.nestedProfiler;
+        }
+        // checks if the frames are drawn on the render thread.
+        if (this.renderThread) {
+            runWithRenderThread(animation, frameProfiler);
+        } else if (this.ticksPerSecond > 0
+                    && animation instanceof SteppedAnimation) {
+            runFixedStep((SteppedAnimation) animation, frameProfiler);
+        } else {
+            runEveryFrame(animation, frameProfiler);
+        }
+        this.depth--;
+    }
+
+    /**
+     * Runs an animation that draws and advances once every frame.
+     *
+     * @param animation     the animation.
+     * @param frameProfiler the profiler of the frames.
+     */
+    private void runEveryFrame(Animation animation,
+                               FrameProfiler frameProfiler) {
+        FramePacer pacer = this.framePacer;
+        pacer.start();
         // loops until it should stop.
         while (!animation.shouldStop()) {
-            long startTime = System.currentTimeMillis();
+            frameProfiler.beginFrame();
+            long frame = this.fence.beginFrame();
             DrawSurface d = gui.getDrawSurface();
             animation.doOneFrame(d);
+            frameProfiler.begin(FrameProfiler.SHOW);
             gui.show(d);
-            long usedTime = System.currentTimeMillis() - startTime;
-            long milliSecondLeftToSleep = millisecondsPerFrame - usedTime;
-            if (milliSecondLeftToSleep > 0) {
-                sleeper.sleepFor(milliSecondLeftToSleep);
+            this.fence.endFrame(frame);
+            this.fence.showLater(frame);
+            frameProfiler.end(FrameProfiler.SHOW);
+            frameProfiler.begin(FrameProfiler.SLEEP);
+            pacer.awaitNextFrame();
+            frameProfiler.end(FrameProfiler.SLEEP);
+            frameProfiler.endFrame();
+        }
+    }
+
+    /**
+     * Runs a stepped animation with a fixed timestep. The time that passed
+     * is added to an accumulator, as many fixed ticks as fit in it are
+     * simulated, and the frame is drawn in between the last two ticks by
+     * the time left in the accumulator. A frame that stalls (for example
+     * while a pause screen runs inside a tick) isn't caught up, so the
+     * simulation doesn't jump after it.
+     *
+     * @param animation     the animation.
+     * @param frameProfiler the profiler of the frames.
+     */
+    private void runFixedStep(SteppedAnimation animation,
+                              FrameProfiler frameProfiler) {
+        long tickNanos = NANOS_PER_SECOND / this.ticksPerSecond;
+        FramePacer pacer = this.framePacer;
+        pacer.start();
+        long accumulator = 0;
+        long previous = System.nanoTime();
+        // loops until it should stop.
+        while (!animation.shouldStop()) {
+            frameProfiler.beginFrame();
+            long frameStart = System.nanoTime();
+            accumulator += Math.min(frameStart - previous, MAX_FRAME_NANOS);
+            previous = frameStart;
+            // goes over the ticks that fit in the accumulated time.
+            while (accumulator >= tickNanos && !animation.shouldStop()) {
+                animation.tick();
+                accumulator -= tickNanos;
+            }
+            // checks if the ticks stalled, and drops the time they took.
+            if (System.nanoTime() - frameStart > MAX_FRAME_NANOS) {
+                accumulator = 0;
+                previous = System.nanoTime();
+            }
+            long frame = this.fence.beginFrame();
+            DrawSurface d = this.gui.getDrawSurface();
+            animation.render(d, (double) accumulator / tickNanos);
+            frameProfiler.begin(FrameProfiler.SHOW);
+            this.gui.show(d);
+            this.fence.endFrame(frame);
+            this.fence.showLater(frame);
+            frameProfiler.end(FrameProfiler.SHOW);
+            frameProfiler.begin(FrameProfiler.SLEEP);
+            pacer.awaitNextFrame();
+            frameProfiler.end(FrameProfiler.SLEEP);
+            frameProfiler.endFrame();
+        }
+    }
+
+    /**
+     * Runs an animation on the calling thread and publishes a recorded frame
+     * every step to the render thread. A stepped animation is ticked and
+     * then recorded, at the tick rate if there is one, so a screen that is
+     * run inside a tick (like the pause screen) publishes its own frames in
+     * between. A step that is more than a whole step late isn't caught up.
+     * The profiled frames are the steps, since the frames are shown on the
+     * render thread.
+     *
+     * @param animation     the animation.
+     * @param frameProfiler the profiler of the steps.
+     */
+    private void runWithRenderThread(Animation animation,
+                                     FrameProfiler frameProfiler) {
+        startRenderThread();
+        SteppedAnimation stepped = null;
+        int stepsPerSecond = this.framesPerSecond;
+        // checks if the animation is simulated in ticks.
+        if (animation instanceof SteppedAnimation) {
+            stepped = (SteppedAnimation) animation;
+            // checks if the ticks have their own rate.
+            if (this.ticksPerSecond > 0) {
+                stepsPerSecond = this.ticksPerSecond;
+            }
+        }
+        long stepNanos = NANOS_PER_SECOND / stepsPerSecond;
+        FramePacer pacer = new FramePacer(stepNanos);
+        // loops until it should stop.
+        while (!animation.shouldStop()) {
+            frameProfiler.beginFrame();
+            FrameRecording recording;
+            long frame;
+            // checks if the animation is ticked before it is recorded.
+            if (stepped != null) {
+                stepped.tick();
+                frame = this.fence.beginFrame();
+                recording = this.exchange.record();
+                stepped.render(recording, 1);
+            } else {
+                frame = this.fence.beginFrame();
+                recording = this.exchange.record();
+                animation.doOneFrame(recording);
+            }
+            this.exchange.publish(frame);
+            this.fence.endFrame(frame);
+            frameProfiler.begin(FrameProfiler.SLEEP);
+            pacer.awaitNextFrame();
+            frameProfiler.end(FrameProfiler.SLEEP);
+            frameProfiler.endFrame();
+        }
+    }
+
+    /**
+     * Starts the render thread if it isn't running. It is shared by all the
+     * animations this runner runs, until the runner is closed.
+     */
+    private void startRenderThread() {
+        // checks if the render thread is already running.
+        if (this.renderer != null) {
+            return;
+        }
+        DrawSurface d = this.gui.getDrawSurface();
+        this.exchange = new FrameExchange(d.getWidth(), d.getHeight());
+        this.renderLoop = new RenderLoop(this.gui, this.exchange,
+                                        this.framePacer, this.fence);
+        this.renderer = new Thread(this.renderLoop, "render");
+        this.renderer.setDaemon(true);
+        this.renderer.start();
+    }
+
+    /**
+     * Stops the render thread, if it was started, and closes the gui.
+     */
+    public void close() {
+        // checks if the render thread was started.
+        if (this.renderer != null) {
+            this.renderLoop.stop();
+            try {
+                this.renderer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            this.renderer = null;
         }
+        this.gui.close();
     }
 }
@@ -0,0 +1,57 @@
+package animation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The flight recorder event of a frame, which lasts from the start of the
+ * frame to its end and holds the time of every profiled phase in it. Like
+ * the game's other events it is disabled unless a recording enables it,
+ * as arkanoid.jfc does.
+ * @author Max Shabs
+ */
+@Name("arkanoid.Frame")
+@Label("Frame")
+@Category({"Arkanoid", "Animation"})
+@Description("A frame of the outermost animation and the times of its phases")
+@StackTrace(false)
+@Enabled(false)
+class FrameEvent extends Event {
+    @Label("Update")
+    @Description("Moving the sprites, including their collision queries")
+    @Timespan
+    long update;
+
+    @Label("Collision")
+    @Description("The collision queries made through the environment")
+    @Timespan
+    long collision;
+
+    @Label("Apply")
+    @Description("Applying the changes queued during the frame")
+    @Timespan
+    long apply;
+
+    @Label("Draw")
+    @Timespan
+    long draw;
+
+    @Label("Show")
+    @Timespan
+    long show;
+
+    @Label("Sleep")
+    @Description("Waiting for the next frame")
+    @Timespan
+    long sleep;
+
+    @Label("Discarded")
+    @Description("A nested animation, like the pause screen, ran in the frame")
+    boolean discarded;
+}
@@ -0,0 +1,71 @@
+package animation;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Represents a triple buffer of recorded frames, defined by the frame the
+ * simulation thread records, the frame the render thread draws and the
+ * latest published frame between them. Publishing and taking a frame each
+ * swap a single atomic reference, so neither thread ever waits for the
+ * other, and a frame is only changed by the thread that holds it. The
+ * frames are numbered by the frame fence, so the frames that are shown
+ * release the images of the earlier ones.
+ * @author Max Shabs
+ */
+class FrameExchange {
+    private final AtomicReference<FrameRecording> ready;
+    private FrameRecording back;
+    private FrameRecording front;
+    private long shown;
+
+    /**
+     * Instantiates a new exchange of frames of a surface's size.
+     *
+     * @param width  the width of the surface.
+     * @param height the height of the surface.
+     */
+    FrameExchange(int width, int height) {
+        this.back = new FrameRecording(width, height);
+        this.front = new FrameRecording(width, height);
+        this.ready = new AtomicReference<>(
+                new FrameRecording(width, height));
+        this.shown = 0;
+    }
+
+    /**
+     * Gets an empty frame to record, only called by the simulation thread.
+     *
+     * @return the back frame.
+     */
+    FrameRecording record() {
+        this.back.clear();
+        return this.back;
+    }
+
+    /**
+     * Publishes the recorded frame, only called by the simulation thread. A
+     * published frame the render thread hasn't taken yet is dropped.
+     *
+     * @param frame the number of the frame, larger than the last one.
+     */
+    void publish(long frame) {
+        this.back.setSequence(frame);
+        this.back = this.ready.getAndSet(this.back);
+    }
+
+    /**
+     * Takes the latest published frame, only called by the render thread.
+     * The frame is held until the next frame is taken.
+     *
+     * @return the frame, null if nothing was published since the last one.
+     */
+    FrameRecording take() {
+        // checks if the ready frame was already shown.
+        if (this.ready.get().getSequence() <= this.shown) {
+            return null;
+        }
+        this.front = this.ready.getAndSet(this.front);
+        this.shown = this.front.getSequence();
+        return this.front;
+    }
+}
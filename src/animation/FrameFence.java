@@ -0,0 +1,147 @@
+package animation;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Represents a fence of the frames shown on the gui, defined by the number
+ * of the frame being drawn and the number of the last frame the gui shows.
+ * The gui paints a shown frame later, on the event dispatch thread, and
+ * paints it again whenever the window is exposed, so the images a frame
+ * draws are read until a later frame has replaced it on the screen. A
+ * renderer marks every image with the frame it was last drawn in, and only
+ * draws into it again once the fence released that frame. Frames are
+ * numbered from 1, in the order they are drawn, and frames that are dropped
+ * before they are shown are released with the next frame that is shown.
+ * A frame may wait to be shown while a nested animation (like the pause
+ * screen) shows frames of its own, so no frame is released from the time
+ * it is drawn until it is given to the gui.
+ * @author Max Shabs
+ */
+public class FrameFence {
+    private final Object lock;
+    private long drawing;
+    private int pending;
+    private long given;
+    private volatile long oldestPending;
+    private volatile long shown;
+
+    /**
+     * Instantiates a new fence, before the first frame.
+     */
+    public FrameFence() {
+        this.lock = new Object();
+        this.drawing = 0;
+        this.pending = 0;
+        this.given = 0;
+        this.oldestPending = Long.MAX_VALUE;
+        this.shown = 1;
+    }
+
+    /**
+     * Starts drawing a new frame, only called by the thread that draws.
+     *
+     * @return the number of the frame.
+     */
+    long beginFrame() {
+        this.drawing++;
+        // checks if no other frame waits to be shown.
+        if (this.pending == 0) {
+            this.oldestPending = this.drawing;
+        }
+        this.pending++;
+        return this.drawing;
+    }
+
+    /**
+     * Ends the frame drawn last, once it was given to the gui or to the
+     * render thread, only called by the thread that draws.
+     *
+     * @param frame the number of the frame.
+     */
+    void endFrame(long frame) {
+        this.given = frame;
+        this.pending--;
+        // checks if no frame waits to be shown.
+        if (this.pending == 0) {
+            this.oldestPending = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Gets the number of the frame being drawn, only called by the thread
+     * that draws.
+     *
+     * @return the number of the frame, 0 before the first frame.
+     */
+    public long currentFrame() {
+        return this.drawing;
+    }
+
+    /**
+     * Checks if a frame is no longer shown or about to be shown, so the
+     * images drawn in it may be drawn into again.
+     *
+     * @param frame the number of the frame, 0 for an image never drawn.
+     * @return true if the frame was released, false otherwise.
+     */
+    public boolean isReleased(long frame) {
+        return frame < this.shown;
+    }
+
+    /**
+     * Waits until a frame is released, only called by the thread that
+     * draws. A frame is only released by a later frame, so the thread can't
+     * wait for a frame unless the frame given to the gui last is a later
+     * one, and not for a frame that waits to be shown itself.
+     *
+     * @param frame the number of the frame.
+     * @return true if the frame was released, false if it can't be waited
+     *         for.
+     */
+    public boolean awaitRelease(long frame) {
+        // checks if the frame is only released by a frame not given yet.
+        if (frame >= this.given || frame >= this.oldestPending) {
+            return isReleased(frame);
+        }
+        synchronized (this.lock) {
+            // waits until a later frame is shown.
+            while (!isReleased(frame)) {
+                try {
+                    this.lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the frames before a frame once the gui shows it. Called right
+     * after the frame is given to the gui, which paints it in a task on the
+     * event dispatch thread, so the task queued here runs after it.
+     *
+     * @param frame the number of the frame.
+     */
+    void showLater(long frame) {
+        SwingUtilities.invokeLater(() -> shown(frame));
+    }
+
+    /**
+     * Releases the frames before a frame, which the gui shows, but none from
+     * a frame that still waits to be shown.
+     *
+     * @param frame the number of the frame.
+     */
+    private void shown(long frame) {
+        synchronized (this.lock) {
+            long released = Math.min(frame, this.oldestPending);
+            // checks if the frame is later than the one shown.
+            if (released > this.shown) {
+                this.shown = released;
+            }
+            this.lock.notifyAll();
+        }
+    }
+}
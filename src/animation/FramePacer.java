@@ -0,0 +1,197 @@
+package animation;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Represents a frame pacer, defined by the time of a frame and the deadline
+ * of the next frame, measured with System.nanoTime. Waiting parks the
+ * thread until shortly before the deadline and spins the rest of the way,
+ * so frames keep sub-millisecond pacing without a busy core. The deadlines
+ * are kept on a grid of whole frames, so a frame that ends a little late
+ * is made up by the next one instead of drifting, and only a frame that is
+ * more than a whole frame late starts a new grid. The pacer also keeps
+ * statistics of the times between the frames and of how late they woke.
+ * @author Max Shabs
+ */
+public class FramePacer {
+    private static final long SPIN_NANOS = 250000L;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private final long frameNanos;
+    private long deadline;
+    private long lastWake;
+    private long frames;
+    private double sum;
+    private double sumOfSquares;
+    private long shortest;
+    private long longest;
+    private long latest;
+
+    /**
+     * Instantiates a new frame pacer.
+     *
+     * @param frameNanos the time of a frame, in nanoseconds.
+     */
+    public FramePacer(long frameNanos) {
+        this.frameNanos = frameNanos;
+        start();
+        resetStatistics();
+    }
+
+    /**
+     * Starts a new grid of deadlines, whose first frame starts now.
+     */
+    public void start() {
+        long now = System.nanoTime();
+        this.deadline = now + this.frameNanos;
+        this.lastWake = now;
+    }
+
+    /**
+     * Waits until the deadline of the current frame and moves the deadline
+     * to the next frame.
+     */
+    public void awaitNextFrame() {
+        long deadlineNow = this.deadline;
+        long left = deadlineNow - System.nanoTime();
+        // parks until shortly before the deadline, since parking may end
+        // early and usually ends late.
+        while (left > SPIN_NANOS) {
+            LockSupport.parkNanos(left - SPIN_NANOS);
+            left = deadlineNow - System.nanoTime();
+        }
+        // spins the rest of the way to the deadline.
+        while (left > 0) {
+            Thread.onSpinWait();
+            left = deadlineNow - System.nanoTime();
+        }
+        long now = System.nanoTime();
+        record(now - this.lastWake, now - deadlineNow);
+        this.lastWake = now;
+        this.deadline = deadlineNow + this.frameNanos;
+        // checks if the frame was more than a whole frame late.
+        if (now - deadlineNow > this.frameNanos) {
+            this.deadline = now + this.frameNanos;
+        }
+    }
+
+    /**
+     * Adds a frame to the statistics.
+     *
+     * @param interval the time since the previous frame woke.
+     * @param lateness how late the frame woke after its deadline.
+     */
+    private void record(long interval, long lateness) {
+        this.frames++;
+        this.sum += interval;
+        this.sumOfSquares += (double) interval * interval;
+        this.shortest = Math.min(this.shortest, interval);
+        this.longest = Math.max(this.longest, interval);
+        this.latest = Math.max(this.latest, lateness);
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public void resetStatistics() {
+        this.frames = 0;
+        this.sum = 0;
+        this.sumOfSquares = 0;
+        this.shortest = Long.MAX_VALUE;
+        this.longest = 0;
+        this.latest = 0;
+    }
+
+    /**
+     * Gets the time of a frame.
+     *
+     * @return the time of a frame, in nanoseconds.
+     */
+    public long getFrameNanos() {
+        return this.frameNanos;
+    }
+
+    /**
+     * Gets the number of frames in the statistics.
+     *
+     * @return the number of frames.
+     */
+    public long getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Gets the mean time between frames.
+     *
+     * @return the mean time, in nanoseconds, 0 if there were no frames.
+     */
+    public double getMeanFrameNanos() {
+        // checks if there were no frames.
+        if (this.frames == 0) {
+            return 0;
+        }
+        return this.sum / this.frames;
+    }
+
+    /**
+     * Gets the jitter, the standard deviation of the times between frames.
+     *
+     * @return the jitter, in nanoseconds, 0 if there were no frames.
+     */
+    public double getJitterNanos() {
+        // checks if there were no frames.
+        if (this.frames == 0) {
+            return 0;
+        }
+        double mean = this.sum / this.frames;
+        double variance = this.sumOfSquares / this.frames - mean * mean;
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    /**
+     * Gets the shortest time between frames.
+     *
+     * @return the shortest time, in nanoseconds, 0 if there were no frames.
+     */
+    public long getShortestFrameNanos() {
+        // checks if there were no frames.
+        if (this.frames == 0) {
+            return 0;
+        }
+        return this.shortest;
+    }
+
+    /**
+     * Gets the longest time between frames.
+     *
+     * @return the longest time, in nanoseconds.
+     */
+    public long getLongestFrameNanos() {
+        return this.longest;
+    }
+
+    /**
+     * Gets the latest a frame woke after its deadline.
+     *
+     * @return the largest lateness, in nanoseconds.
+     */
+    public long getLatestWakeNanos() {
+        return this.latest;
+    }
+
+    /**
+     * Prints the statistics of the frames, in milliseconds.
+     *
+     * @param out the stream to print to.
+     */
+    public void dump(PrintStream out) {
+        out.printf("pacing: %d frames of %.3f, mean %.3f, jitter %.3f,"
+                    + " %.3f to %.3f, latest wake %.3f%n", this.frames,
+                    this.frameNanos / NANOS_PER_MILLI,
+                    getMeanFrameNanos() / NANOS_PER_MILLI,
+                    getJitterNanos() / NANOS_PER_MILLI,
+                    getShortestFrameNanos() / NANOS_PER_MILLI,
+                    getLongestFrameNanos() / NANOS_PER_MILLI,
+                    getLatestWakeNanos() / NANOS_PER_MILLI);
+    }
+}
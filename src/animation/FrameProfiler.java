@@ -0,0 +1,302 @@
+package animation;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import java.io.PrintStream;
+
+/**
+ * Represents a profiler of the phases of a frame, defined by the time each
+ * phase took in the current frame and a histogram of those times for every
+ * phase. A phase may be entered many times in a frame (like the collision
+ * queries), and its times are summed until the frame ends, when the sums
+ * are recorded. The collision phase is a part of the update phase. Nothing
+ * is allocated while profiling, and a disabled profiler does nothing.
+ * While a flight recording with frame events runs, the phases are timed
+ * even if the profiler is disabled, and every frame of a recorded profiler
+ * is committed as an event, without being recorded in the histograms.
+ * @author Max Shabs
+ */
+public class FrameProfiler {
+    /**
+     * The phase of moving the sprites, including their collision queries.
+     */
+    public static final int UPDATE = 0;
+    /**
+     * The phase of the collision queries.
+     */
+    public static final int COLLISION = 1;
+    /**
+     * The phase of applying the changes queued during the frame.
+     */
+    public static final int APPLY = 2;
+    /**
+     * The phase of drawing the sprites.
+     */
+    public static final int DRAW = 3;
+    /**
+     * The phase of showing the drawn frame on the gui.
+     */
+    public static final int SHOW = 4;
+    /**
+     * The phase of waiting for the next frame.
+     */
+    public static final int SLEEP = 5;
+    /**
+     * The whole frame.
+     */
+    public static final int FRAME = 6;
+    private static final int PHASES = 7;
+    private static final String[] NAMES = {"update", "collision", "apply",
+                                            "draw", "show", "sleep", "frame"};
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static EventType frameType;
+    private boolean enabled;
+    private final boolean recorded;
+    private boolean active;
+    private FrameEvent event;
+    private final long[] started;
+    private final long[] sums;
+    private final LatencyHistogram[] histograms;
+    private long frameStart;
+    private boolean discarded;
+
+    /**
+     * Instantiates a new profiler, whose frames are committed to flight
+     * recordings that take frame events.
+     *
+     * @param enabled true if the profiler records the frames.
+     */
+    public FrameProfiler(boolean enabled) {
+        this(enabled, true);
+    }
+
+    /**
+     * Instantiates a new profiler.
+     *
+     * @param enabled  true if the profiler records the frames.
+     * @param recorded true if its frames are committed to flight recordings
+     *                 that take frame events.
+     */
+    public FrameProfiler(boolean enabled, boolean recorded) {
+        this.enabled = enabled;
+        this.recorded = recorded;
+        this.started = new long[PHASES];
+        this.sums = new long[PHASES];
+        this.histograms = new LatencyHistogram[PHASES];
+        // goes over the phases.
+        for (int i = 0; i < PHASES; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Checks if the profiler records the frames.
+     *
+     * @return true if it is enabled.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Enables or disables the profiler.
+     *
+     * @param isEnabled true to record the frames.
+     */
+    public void setEnabled(boolean isEnabled) {
+        this.enabled = isEnabled;
+    }
+
+    /**
+     * Starts a new frame.
+     */
+    public void beginFrame() {
+        this.event = null;
+        // checks if a flight recording may take this frame.
+        if (this.recorded && FlightRecorder.isInitialized()
+                && frameEventsEnabled()) {
+            FrameEvent frameEvent = new FrameEvent();
+            frameEvent.begin();
+            this.event = frameEvent;
+        }
+        this.active = this.enabled || this.event != null;
+        // checks if the frame isn't timed.
+        if (!this.active) {
+            return;
+        }
+        // goes over the phases.
+        for (int i = 0; i < PHASES; i++) {
+            this.sums[i] = 0;
+        }
+        this.discarded = false;
+        this.frameStart = System.nanoTime();
+    }
+
+    /**
+     * Checks if a running flight recording takes frame events, without
+     * creating an event. The event type is only looked up once the flight
+     * recorder was initialized.
+     *
+     * @return true if frame events are enabled.
+     */
+    private static boolean frameEventsEnabled() {
+        // checks if the event type wasn't looked up yet.
+        if (frameType == null) {
+            frameType = EventType.getEventType(FrameEvent.class);
+        }
+        return frameType.isEnabled();
+    }
+
+    /**
+     * Ends the frame, recording the time of every phase in its histogram.
+     */
+    public void endFrame() {
+        // checks if the frame isn't timed.
+        if (!this.active) {
+            return;
+        }
+        this.active = false;
+        this.sums[FRAME] = System.nanoTime() - this.frameStart;
+        // checks if the frame is committed to a flight recording.
+        if (this.event != null) {
+            commitEvent();
+        }
+        // checks if the profiler is disabled or the frame is discarded.
+        if (!this.enabled || this.discarded) {
+            return;
+        }
+        // goes over the phases.
+        for (int i = 0; i < PHASES; i++) {
+            this.histograms[i].record(this.sums[i]);
+        }
+    }
+
+    /**
+     * Commits the frame event with the times of the phases.
+     */
+    private void commitEvent() {
+        FrameEvent frameEvent = this.event;
+        frameEvent.end();
+        frameEvent.update = this.sums[UPDATE];
+        frameEvent.collision = this.sums[COLLISION];
+        frameEvent.apply = this.sums[APPLY];
+        frameEvent.draw = this.sums[DRAW];
+        frameEvent.show = this.sums[SHOW];
+        frameEvent.sleep = this.sums[SLEEP];
+        frameEvent.discarded = this.discarded;
+        frameEvent.commit();
+        this.event = null;
+    }
+
+    /**
+     * Discards the current frame, for example when a pause screen ran inside
+     * it, so its times aren't recorded.
+     */
+    public void discardFrame() {
+        this.discarded = true;
+    }
+
+    /**
+     * Enters a phase.
+     *
+     * @param phase the phase.
+     */
+    public void begin(int phase) {
+        // checks if the frame is timed.
+        if (this.active) {
+            this.started[phase] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Leaves a phase, adding the time since it was entered to the frame.
+     *
+     * @param phase the phase.
+     */
+    public void end(int phase) {
+        // checks if the frame is timed.
+        if (this.active) {
+            this.sums[phase] += System.nanoTime() - this.started[phase];
+        }
+    }
+
+    /**
+     * Gets a percentile of the times of a phase in the recorded frames.
+     *
+     * @param phase   the phase.
+     * @param percent the percentile, between 0 and 100.
+     * @return the percentile, in nanoseconds, to within an eighth.
+     */
+    public long percentile(int phase, double percent) {
+        return this.histograms[phase].percentile(percent);
+    }
+
+    /**
+     * Gets the longest time of a phase in the recorded frames.
+     *
+     * @param phase the phase.
+     * @return the longest time, in nanoseconds.
+     */
+    public long max(int phase) {
+        return this.histograms[phase].getMax();
+    }
+
+    /**
+     * Gets the number of recorded frames.
+     *
+     * @return the number of frames.
+     */
+    public long getFrameCount() {
+        return this.histograms[FRAME].getCount();
+    }
+
+    /**
+     * Gets the name of a phase.
+     *
+     * @param phase the phase.
+     * @return the name.
+     */
+    public static String nameOf(int phase) {
+        return NAMES[phase];
+    }
+
+    /**
+     * Gets the number of phases, which are numbered from 0.
+     *
+     * @return the number of phases.
+     */
+    public static int phaseCount() {
+        return PHASES;
+    }
+
+    /**
+     * Removes the recorded frames.
+     */
+    public void reset() {
+        // goes over the phases.
+        for (int i = 0; i < PHASES; i++) {
+            this.histograms[i].reset();
+        }
+    }
+
+    /**
+     * Prints the percentiles of every phase, in milliseconds.
+     *
+     * @param out   the stream to print to.
+     * @param title the title of the table, like the name of the level.
+     */
+    public void dump(PrintStream out, String title) {
+        out.printf("%s: %d frames%n", title, getFrameCount());
+        out.printf("%-10s %9s %9s %9s %9s%n", "phase", "p50", "p90", "p99",
+                    "max");
+        // goes over the phases.
+        for (int i = 0; i < PHASES; i++) {
+            out.printf("%-10s %9.3f %9.3f %9.3f %9.3f%n", NAMES[i],
+                    percentile(i, 50) / NANOS_PER_MILLI,
+                    percentile(i, 90) / NANOS_PER_MILLI,
+                    percentile(i, 99) / NANOS_PER_MILLI,
+                    max(i) / NANOS_PER_MILLI);
+        }
+    }
+}
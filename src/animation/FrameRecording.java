@@ -0,0 +1,44 @@
+package animation;
+
+import sprites.DrawCommands;
+
+/**
+ * Represents a recorded frame, defined by the drawing commands made on it
+ * and the number of the frame. A frame is recorded on the simulation thread
+ * and replayed on the render thread, and it isn't changed while the render
+ * thread holds it. The commands are reused by the next recording, so
+ * recording doesn't allocate once they are large enough.
+ * @author Max Shabs
+ */
+class FrameRecording extends DrawCommands {
+    private long sequence;
+
+    /**
+     * Instantiates a new empty recording of a surface's size.
+     *
+     * @param width  the width of the surface.
+     * @param height the height of the surface.
+     */
+    FrameRecording(int width, int height) {
+        super(width, height);
+        this.sequence = 0;
+    }
+
+    /**
+     * Gets the number of the frame, which grows with every published frame.
+     *
+     * @return the sequence number.
+     */
+    long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Sets the number of the frame before it is published.
+     *
+     * @param number the sequence number.
+     */
+    void setSequence(long number) {
+        this.sequence = number;
+    }
+}
@@ -0,0 +1,121 @@
+package animation;
+
+import java.util.Arrays;
+
+/**
+ * Represents a histogram of durations in nanoseconds, defined by the counts
+ * of log-linear buckets: every power of two is split into eight buckets, so
+ * a percentile is known to within an eighth of its value, and recording a
+ * duration only increments a count in a fixed array.
+ * @author Max Shabs
+ */
+class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1)
+                                        * SUB_BUCKETS;
+    private final long[] counts;
+    private long count;
+    private long max;
+
+    /**
+     * Instantiates a new empty histogram.
+     */
+    LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+    }
+
+    /**
+     * Gets the bucket of a duration.
+     *
+     * @param nanos the duration, not negative.
+     * @return the bucket.
+     */
+    private static int bucketOf(long nanos) {
+        // checks if the duration is small enough to have its own bucket.
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Gets the largest duration of a bucket.
+     *
+     * @param bucket the bucket.
+     * @return the largest duration in the bucket.
+     */
+    private static long upperBound(int bucket) {
+        // checks if the bucket holds a single duration.
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub + 1) * width - 1;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, negative durations count as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.counts[bucketOf(value)]++;
+        this.count++;
+        this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * Gets a percentile of the recorded durations, as the largest duration
+     * of the bucket it falls in, but never more than the largest duration.
+     *
+     * @param percent the percentile, between 0 and 100.
+     * @return the percentile, 0 if nothing was recorded.
+     */
+    long percentile(double percent) {
+        long rank = (long) Math.ceil(percent / 100 * this.count);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        // goes over the buckets until the rank is reached.
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            // checks if the rank is in this bucket.
+            if (seen >= rank) {
+                return Math.min(upperBound(i), this.max);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return the count.
+     */
+    long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the largest recorded duration.
+     *
+     * @return the largest duration, 0 if nothing was recorded.
+     */
+    long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Removes all the recorded durations.
+     */
+    void reset() {
+        Arrays.fill(this.counts, 0);
+        this.count = 0;
+        this.max = 0;
+    }
+}
@@ -0,0 +1,61 @@
+package animation;
+
+import biuoop.DrawSurface;
+import biuoop.GUI;
+
+/**
+ * The loop of the render thread, defined by the gui, the exchange it takes
+ * the frames from and the pacer of the frames. Every frame it draws the latest
+ * published frame on the gui, and it only shows frames, so a slow show
+ * doesn't delay the simulation. The frames it shows release the earlier
+ * ones through the frame fence.
+ * @author Max Shabs
+ */
+class RenderLoop implements Runnable {
+    private final GUI gui;
+    private final FrameExchange exchange;
+    private final FramePacer pacer;
+    private final FrameFence fence;
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new render loop.
+     *
+     * @param gui      the gui.
+     * @param exchange the exchange of the frames.
+     * @param pacer    the pacer of the frames.
+     * @param fence    the fence of the shown frames.
+     */
+    RenderLoop(GUI gui, FrameExchange exchange, FramePacer pacer,
+               FrameFence fence) {
+        this.gui = gui;
+        this.exchange = exchange;
+        this.pacer = pacer;
+        this.fence = fence;
+        this.running = true;
+    }
+
+    /**
+     * Stops the loop after the frame it draws.
+     */
+    void stop() {
+        this.running = false;
+    }
+
+    @Override
+    public void run() {
+        this.pacer.start();
+        // loops until it is stopped.
+        while (this.running) {
+            FrameRecording frame = this.exchange.take();
+            // checks if a new frame was published.
+            if (frame != null) {
+                DrawSurface d = this.gui.getDrawSurface();
+                frame.replay(d);
+                this.gui.show(d);
+                this.fence.showLater(frame.getSequence());
+            }
+            this.pacer.awaitNextFrame();
+        }
+    }
+}
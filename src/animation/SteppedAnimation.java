@@ -0,0 +1,25 @@
+package animation;
+
+import biuoop.DrawSurface;
+
+/**
+ * The interface Stepped animation, an animation whose simulation can be
+ * advanced in fixed ticks apart from its drawing, so the animation runner
+ * can tick it at a fixed rate and draw it at any rate in between ticks.
+ * @author Max Shabs
+ */
+public interface SteppedAnimation extends Animation {
+    /**
+     * Advances the simulation by a single fixed tick, without drawing.
+     */
+    void tick();
+
+    /**
+     * Draws the animation between its last two ticks.
+     *
+     * @param d     the draw surface.
+     * @param alpha how far the drawing is from the previous tick (0) to the
+     *              last tick (1).
+     */
+    void render(DrawSurface d, double alpha);
+}
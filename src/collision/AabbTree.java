@@ -0,0 +1,444 @@
+package collision;
+
+import geometry.Line;
+import geometry.RayHit;
+import geometry.Rectangle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents a dynamic bounding volume tree of collidables, defined by the
+ * root node and the leaves of the collidables. Every leaf keeps a fattened
+ * box around its collision rectangle, so a collidable that moves a little
+ * (like the paddle) doesn't change the tree at all, and the tree is kept
+ * balanced by rotations so inserting, removing and querying are O(log n).
+ * Every node also keeps the union of the collision categories under it, so
+ * a query skips the subtrees that have none of its layers.
+ * @author Max Shabs
+ */
+public class AabbTree implements CollisionIndex {
+    private static final double FAT_MARGIN = 10;
+    private static final double DISPLACEMENT_MULTIPLIER = 2;
+    private static final double PADDING = 0.001;
+    private static final double TIME_EPSILON = 0.0000001;
+    private static final int INITIAL_STACK_SIZE = 64;
+    private Node root;
+    private Map<Collidable, Node> leaves;
+    private int nextOrder;
+    private ClosestHitSearch search;
+    private Node[] stack;
+
+    /**
+     * Instantiates a new empty tree.
+     */
+    public AabbTree() {
+        this.root = null;
+        this.leaves = new HashMap<>();
+        this.nextOrder = 0;
+        this.search = new ClosestHitSearch();
+        this.stack = new Node[INITIAL_STACK_SIZE];
+    }
+
+    /**
+     * Adds a collidable to the tree.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void insert(Collidable c) {
+        Node leaf = new Node();
+        leaf.c = c;
+        leaf.order = this.nextOrder;
+        this.nextOrder++;
+        leaf.rect = c.getCollisionRectangle();
+        leaf.categories = c.getCollisionCategory();
+        leaf.fatten(leaf.rect, 0, 0);
+        this.leaves.put(c, leaf);
+        insertLeaf(leaf);
+    }
+
+    /**
+     * Removes a collidable from the tree.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void remove(Collidable c) {
+        Node leaf = this.leaves.remove(c);
+        // checks if the collidable was never added.
+        if (leaf == null) {
+            return;
+        }
+        removeLeaf(leaf);
+    }
+
+    /**
+     * Moves a collidable in the tree. If the new rectangle is still inside
+     * the fattened box of the leaf nothing is changed, otherwise the leaf is
+     * re-inserted with a box enlarged in the direction of the movement. A
+     * changed category is carried up to the root.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void update(Collidable c) {
+        Node leaf = this.leaves.get(c);
+        // checks if the collidable was never added.
+        if (leaf == null) {
+            return;
+        }
+        int category = c.getCollisionCategory();
+        // checks if the category of the collidable changed.
+        if (category != leaf.categories) {
+            leaf.categories = category;
+            refitUpwards(leaf.parent);
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        // checks if the rectangle didn't change.
+        if (rect == leaf.rect) {
+            return;
+        }
+        double moveX = rect.getLeftX() - leaf.rect.getLeftX();
+        double moveY = rect.getUpperY() - leaf.rect.getUpperY();
+        leaf.rect = rect;
+        // checks if the fattened box still contains the new rectangle.
+        if (leaf.contains(rect)) {
+            return;
+        }
+        removeLeaf(leaf);
+        leaf.fatten(rect, moveX * DISPLACEMENT_MULTIPLIER,
+                    moveY * DISPLACEMENT_MULTIPLIER);
+        insertLeaf(leaf);
+    }
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * Subtrees whose boxes (grown by the radius) the trajectory misses, or
+     * enters after the closest collision found so far, are skipped, and so
+     * are subtrees with none of the layers of the mask.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param mask       the collision layers the query tests.
+     * @return the closest collision info.
+     */
+    @Override
+    public CollisionInfo closestCollision(Line trajectory, double radius,
+                                          int mask) {
+        ClosestHitSearch curSearch = this.search;
+        curSearch.reset(trajectory, radius, mask);
+        // checks if the tree is empty.
+        if (this.root == null) {
+            return null;
+        }
+        double x0 = trajectory.start().getX();
+        double y0 = trajectory.start().getY();
+        double dx = trajectory.end().getX() - x0;
+        double dy = trajectory.end().getY() - y0;
+        double margin = radius + PADDING;
+        int top = 0;
+        this.stack[top++] = this.root;
+        // goes over the nodes whose boxes the trajectory crosses.
+        while (top > 0) {
+            Node node = this.stack[--top];
+            // checks if the subtree has none of the layers of the query.
+            if ((node.categories & mask) == 0) {
+                continue;
+            }
+            double tEnter = RayHit.entryTime(x0, y0, dx, dy,
+                    node.minX - margin, node.minY - margin,
+                    node.maxX + margin, node.maxY + margin);
+            // checks if the box is missed or entered after the closest hit.
+            if (tEnter > 1 || tEnter > curSearch.minTime() + TIME_EPSILON) {
+                continue;
+            }
+            // checks if the node is a leaf.
+            if (node.isLeaf()) {
+                curSearch.test(node.c, node.order);
+            } else {
+                // checks if the stack has to grow.
+                if (top + 2 > this.stack.length) {
+                    this.stack = Arrays.copyOf(this.stack,
+                                                    2 * this.stack.length);
+                }
+                this.stack[top++] = node.left;
+                this.stack[top++] = node.right;
+            }
+        }
+        return curSearch.result();
+    }
+
+    /**
+     * Inserts a leaf next to the sibling that enlarges the tree the least.
+     *
+     * @param leaf the leaf.
+     */
+    private void insertLeaf(Node leaf) {
+        // checks if the tree is empty.
+        if (this.root == null) {
+            this.root = leaf;
+            leaf.parent = null;
+            return;
+        }
+        Node sibling = this.root;
+        // descends while it is cheaper to insert below the current node.
+        while (!sibling.isLeaf()) {
+            double area = sibling.perimeter();
+            double combined = Node.unionPerimeter(sibling, leaf);
+            double cost = 2 * combined;
+            double inheritance = 2 * (combined - area);
+            double leftCost = descendCost(sibling.left, leaf, inheritance);
+            double rightCost = descendCost(sibling.right, leaf, inheritance);
+            // checks if a new parent here is cheaper than going down.
+            if (cost < leftCost && cost < rightCost) {
+                break;
+            }
+            sibling = (leftCost < rightCost) ? sibling.left : sibling.right;
+        }
+        Node oldParent = sibling.parent;
+        Node newParent = new Node();
+        newParent.parent = oldParent;
+        newParent.left = sibling;
+        newParent.right = leaf;
+        sibling.parent = newParent;
+        leaf.parent = newParent;
+        newParent.refit();
+        // checks if the sibling was the root.
+        if (oldParent == null) {
+            this.root = newParent;
+        } else if (oldParent.left == sibling) {
+            oldParent.left = newParent;
+        } else {
+            oldParent.right = newParent;
+        }
+        refitUpwards(oldParent);
+    }
+
+    /**
+     * Calculates the cost of inserting a leaf somewhere below a child.
+     *
+     * @param child       the child.
+     * @param leaf        the leaf.
+     * @param inheritance the cost of enlarging the ancestors.
+     * @return the cost.
+     */
+    private double descendCost(Node child, Node leaf, double inheritance) {
+        double combined = Node.unionPerimeter(child, leaf);
+        // checks if the child is a leaf.
+        if (child.isLeaf()) {
+            return combined + inheritance;
+        }
+        return combined - child.perimeter() + inheritance;
+    }
+
+    /**
+     * Removes a leaf, replacing its parent with its sibling.
+     *
+     * @param leaf the leaf.
+     */
+    private void removeLeaf(Node leaf) {
+        // checks if the leaf is the only node.
+        if (leaf == this.root) {
+            this.root = null;
+            return;
+        }
+        Node parent = leaf.parent;
+        Node grandParent = parent.parent;
+        Node sibling = (parent.left == leaf) ? parent.right : parent.left;
+        leaf.parent = null;
+        // checks if the parent was the root.
+        if (grandParent == null) {
+            this.root = sibling;
+            sibling.parent = null;
+            return;
+        }
+        // replaces the parent with the sibling.
+        if (grandParent.left == parent) {
+            grandParent.left = sibling;
+        } else {
+            grandParent.right = sibling;
+        }
+        sibling.parent = grandParent;
+        refitUpwards(grandParent);
+    }
+
+    /**
+     * Balances and recalculates the boxes and heights up to the root.
+     *
+     * @param start the first node to fix.
+     */
+    private void refitUpwards(Node start) {
+        Node node = start;
+        // walks up to the root.
+        while (node != null) {
+            node = balance(node);
+            node.refit();
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the node is unbalanced.
+     *
+     * @param a the node.
+     * @return the new root of the subtree.
+     */
+    private Node balance(Node a) {
+        // checks if the node is a leaf.
+        if (a.isLeaf()) {
+            return a;
+        }
+        Node b = a.left;
+        Node c = a.right;
+        int difference = c.height - b.height;
+        // checks if the right subtree is too high.
+        if (difference > 1) {
+            return rotate(a, c, b, false);
+        }
+        // checks if the left subtree is too high.
+        if (difference < -1) {
+            return rotate(a, b, c, true);
+        }
+        return a;
+    }
+
+    /**
+     * Rotates the high child of a node above it.
+     *
+     * @param a       the unbalanced node.
+     * @param high    the higher child, which becomes the new subtree root.
+     * @param low     the lower child.
+     * @param highIsLeft whether the higher child is the left one.
+     * @return the new root of the subtree.
+     */
+    private Node rotate(Node a, Node high, Node low, boolean highIsLeft) {
+        Node f = high.left;
+        Node g = high.right;
+        high.left = a;
+        high.parent = a.parent;
+        a.parent = high;
+        // checks where the high child should be linked.
+        if (high.parent == null) {
+            this.root = high;
+        } else if (high.parent.left == a) {
+            high.parent.left = high;
+        } else {
+            high.parent.right = high;
+        }
+        Node keep = (f.height > g.height) ? f : g;
+        Node move = (f.height > g.height) ? g : f;
+        high.right = keep;
+        // gives the lower grandchild to the unbalanced node.
+        if (highIsLeft) {
+            a.left = move;
+        } else {
+            a.right = move;
+        }
+        move.parent = a;
+        a.refit();
+        high.refit();
+        return high;
+    }
+
+    /**
+     * A node in the tree, an internal node or a leaf with a collidable.
+     */
+    private static class Node {
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+        private Node parent;
+        private Node left;
+        private Node right;
+        private int height;
+        private int categories;
+        private Collidable c;
+        private int order;
+        private Rectangle rect;
+
+        /**
+         * Checks if the node is a leaf.
+         *
+         * @return true if it is a leaf, false otherwise.
+         */
+        boolean isLeaf() {
+            return this.left == null;
+        }
+
+        /**
+         * Sets the box of a leaf to the rectangle with a margin around it,
+         * stretched by the predicted movement.
+         *
+         * @param r     the rectangle.
+         * @param moveX the predicted movement on the x-axis.
+         * @param moveY the predicted movement on the y-axis.
+         */
+        void fatten(Rectangle r, double moveX, double moveY) {
+            this.minX = r.getLeftX() - FAT_MARGIN + Math.min(moveX, 0);
+            this.minY = r.getUpperY() - FAT_MARGIN + Math.min(moveY, 0);
+            this.maxX = r.getRightX() + FAT_MARGIN + Math.max(moveX, 0);
+            this.maxY = r.getLowerY() + FAT_MARGIN + Math.max(moveY, 0);
+        }
+
+        /**
+         * Checks if the box contains a rectangle.
+         *
+         * @param r the rectangle.
+         * @return true if it is contained, false otherwise.
+         */
+        boolean contains(Rectangle r) {
+            return r.getLeftX() >= this.minX && r.getUpperY() >= this.minY
+                    && r.getRightX() <= this.maxX
+                    && r.getLowerY() <= this.maxY;
+        }
+
+        /**
+         * Recalculates the box, categories and height of an internal node.
+         */
+        void refit() {
+            this.minX = Math.min(this.left.minX, this.right.minX);
+            this.minY = Math.min(this.left.minY, this.right.minY);
+            this.maxX = Math.max(this.left.maxX, this.right.maxX);
+            this.maxY = Math.max(this.left.maxY, this.right.maxY);
+            this.categories = this.left.categories | this.right.categories;
+            this.height = 1 + Math.max(this.left.height, this.right.height);
+        }
+
+        /**
+         * Calculates the perimeter of the box.
+         *
+         * @return the perimeter.
+         */
+        double perimeter() {
+            return 2 * ((this.maxX - this.minX) + (this.maxY - this.minY));
+        }
+
+        /**
+         * Calculates the perimeter of the box containing two nodes.
+         *
+         * @param a the first node.
+         * @param b the second node.
+         * @return the perimeter.
+         */
+        static double unionPerimeter(Node a, Node b) {
+            double width = Math.max(a.maxX, b.maxX) - Math.min(a.minX, b.minX);
+            double height = Math.max(a.maxY, b.maxY)
+                            - Math.min(a.minY, b.minY);
+            return 2 * (width + height);
+        }
+    }
+
+    /**
+     * Gets the number of collidables whose geometry was tested by the last
+     * closest collision query.
+     *
+     * @return the number of tested collidables.
+     */
+    @Override
+    public int lastTestedCount() {
+        return this.search.tested();
+    }
+}
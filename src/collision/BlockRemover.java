@@ -33,7 +33,7 @@ public class BlockRemover implements HitListener {
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
         beingHit.removeFromGame(this.game);
-        beingHit.removeHitListener(this);
+        this.game.removeHitListener(beingHit, this);
         this.remainingBlocks.decrease(1);
     }
 }
@@ -0,0 +1,145 @@
+package collision;
+
+/**
+ * A hash table from packed cell keys to values, defined by open addressed
+ * arrays of keys and values. Unlike a map with boxed Long keys, looking up
+ * a cell doesn't allocate.
+ *
+ * @param <V> the type of the values.
+ * @author Max Shabs
+ */
+class CellTable<V> {
+    private static final int INITIAL_CAPACITY = 64;
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Instantiates a new empty table.
+     */
+    CellTable() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Object[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key the key.
+     * @return the value, null if the key isn't in the table.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        // goes over the slots until an empty one.
+        while (this.values[slot] != null) {
+            // checks if this is the slot of the key.
+            if (this.keys[slot] == key) {
+                return (V) this.values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Puts a value for a key, replacing the old value.
+     *
+     * @param key   the key.
+     * @param value the value, not null.
+     */
+    void put(long key, V value) {
+        // checks if the table is more than half full.
+        if (2 * (this.size + 1) > this.keys.length) {
+            resize(2 * this.keys.length);
+        }
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        // goes over the slots until the key or an empty slot.
+        while (this.values[slot] != null) {
+            // checks if this is the slot of the key.
+            if (this.keys[slot] == key) {
+                this.values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+    }
+
+    /**
+     * Removes a key, moving back the keys that collided with it.
+     *
+     * @param key the key.
+     */
+    void remove(long key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        // goes over the slots until the key.
+        while (this.values[slot] != null && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        // checks if the key isn't in the table.
+        if (this.values[slot] == null) {
+            return;
+        }
+        this.values[slot] = null;
+        this.size--;
+        int next = (slot + 1) & mask;
+        // re-inserts the keys after the removed one until an empty slot.
+        while (this.values[next] != null) {
+            long movedKey = this.keys[next];
+            Object movedValue = this.values[next];
+            this.values[next] = null;
+            int target = hash(movedKey) & mask;
+            // goes over the slots until an empty one.
+            while (this.values[target] != null) {
+                target = (target + 1) & mask;
+            }
+            this.keys[target] = movedKey;
+            this.values[target] = movedValue;
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Moves all the entries into larger arrays.
+     *
+     * @param capacity the new capacity, a power of two.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        int mask = capacity - 1;
+        // goes over the old slots.
+        for (int i = 0; i < oldKeys.length; i++) {
+            // checks if the old slot is used.
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                // goes over the slots until an empty one.
+                while (this.values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Mixes the bits of a key.
+     *
+     * @param key the key.
+     * @return the hash.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
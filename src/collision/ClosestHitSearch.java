@@ -0,0 +1,335 @@
+package collision;
+
+import geometry.Line;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+
+/**
+ * The state of a closest collision query, defined by the trajectory, the
+ * radius of the moving object and the closest collision found so far. A
+ * search is reused by its index for every query, and tests the collidables
+ * with the slab method so that nothing is allocated unless a collision is
+ * found. With a radius of 0 the trajectory is a ray, otherwise it is swept
+ * by a circle. Collidables whose category doesn't share a bit with the mask
+ * of the query are skipped before their geometry is tested.
+ * @author Max Shabs
+ */
+class ClosestHitSearch {
+    private static final double SLAB_MARGIN = 0.001;
+    private RayHit rayHit;
+    private double x0;
+    private double y0;
+    private double dx;
+    private double dy;
+    private double radius;
+    private int mask;
+    private int tested;
+    private Collidable closest;
+    private int closestPart;
+    private int closestOrder;
+    private int closestFace;
+    private double closestMinX;
+    private double closestMinY;
+    private double closestMaxX;
+    private double closestMaxY;
+    private double closestNormalX;
+    private double closestNormalY;
+    private double minTime;
+    private int[] candidates;
+    private double[] partBounds;
+
+    /**
+     * Instantiates a new search.
+     */
+    ClosestHitSearch() {
+        this.rayHit = new RayHit();
+        this.candidates = new int[0];
+        this.partBounds = new double[4];
+    }
+
+    /**
+     * Starts a new query along a trajectory.
+     *
+     * @param trajectory the trajectory.
+     * @param r          the radius of the moving object, 0 for a ray.
+     * @param layers     the collision layers the query tests.
+     */
+    void reset(Line trajectory, double r, int layers) {
+        reset(trajectory.start().getX(), trajectory.start().getY(),
+                trajectory.end().getX(), trajectory.end().getY(), r,
+                layers);
+    }
+
+    /**
+     * Starts a new query along a trajectory given by its ends.
+     *
+     * @param startX the x coordinate of the start of the trajectory.
+     * @param startY the y coordinate of the start of the trajectory.
+     * @param endX   the x coordinate of the end of the trajectory.
+     * @param endY   the y coordinate of the end of the trajectory.
+     * @param r      the radius of the moving object, 0 for a ray.
+     * @param layers the collision layers the query tests.
+     */
+    void reset(double startX, double startY, double endX, double endY,
+               double r, int layers) {
+        this.radius = r;
+        this.mask = layers;
+        this.x0 = startX;
+        this.y0 = startY;
+        this.dx = endX - startX;
+        this.dy = endY - startY;
+        this.closest = null;
+        this.minTime = Double.POSITIVE_INFINITY;
+        this.tested = 0;
+    }
+
+    /**
+     * Tests a collidable, keeping it if it is the closest collision so far.
+     * Ties are broken by the order the collidables were added in, so the
+     * result is the same as scanning all the collidables in order.
+     *
+     * @param c     the collidable.
+     * @param order the order in which the collidable was added.
+     */
+    void test(Collidable c, int order) {
+        // checks if the collidable isn't in the layers of the query.
+        if (!accepts(c.getCollisionCategory())) {
+            return;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        testBounds(c, order, rect.getLeftX(), rect.getUpperY(),
+                    rect.getRightX(), rect.getLowerY());
+    }
+
+    /**
+     * Tests a collidable whose rectangle is given by its sides, keeping it if
+     * it is the closest collision so far.
+     *
+     * @param c     the collidable.
+     * @param order the order in which the collidable was added.
+     * @param minX  the left side of the collidable's rectangle.
+     * @param minY  the upper side of the collidable's rectangle.
+     * @param maxX  the right side of the collidable's rectangle.
+     * @param maxY  the lower side of the collidable's rectangle.
+     */
+    void testBounds(Collidable c, int order, double minX, double minY,
+                    double maxX, double maxY) {
+        this.tested++;
+        // checks if the collidable is made of parts that are hit one by one.
+        if (c instanceof CompositeCollidable) {
+            testParts((CompositeCollidable) c, order);
+            return;
+        }
+        boolean isHit;
+        // checks if the trajectory is a ray or swept by a circle.
+        if (this.radius == 0) {
+            isHit = this.rayHit.intersect(this.x0, this.y0, this.dx, this.dy,
+                    minX, minY, maxX, maxY);
+        } else {
+            isHit = this.rayHit.sweepCircle(this.x0, this.y0, this.dx,
+                    this.dy, this.radius, minX, minY, maxX, maxY);
+        }
+        // checks if the trajectory misses the rectangle.
+        if (!isHit) {
+            return;
+        }
+        double time = this.rayHit.getTime();
+        // checks if the intersection is closer than the closest one.
+        if (time < this.minTime
+                || (time == this.minTime && order < this.closestOrder)) {
+            this.closest = c;
+            this.closestPart = -1;
+            this.closestOrder = order;
+            this.closestFace = this.rayHit.getFace();
+            this.closestMinX = minX;
+            this.closestMinY = minY;
+            this.closestMaxX = maxX;
+            this.closestMaxY = maxY;
+            this.closestNormalX = this.rayHit.getNormalX();
+            this.closestNormalY = this.rayHit.getNormalY();
+            this.minTime = time;
+        }
+    }
+
+    /**
+     * Tests the parts of a composite collidable, keeping the part that was
+     * hit first if it is the closest collision so far.
+     *
+     * @param c     the composite collidable.
+     * @param order the order in which the collidable was added.
+     */
+    private void testParts(CompositeCollidable c, int order) {
+        int part = c.castParts(this.x0, this.y0, this.dx, this.dy,
+                                this.radius, this.rayHit, this.partBounds);
+        // checks if no part was hit.
+        if (part < 0) {
+            return;
+        }
+        double time = this.rayHit.getTime();
+        // checks if the intersection is closer than the closest one.
+        if (time < this.minTime
+                || (time == this.minTime && order < this.closestOrder)) {
+            this.closest = c;
+            this.closestPart = part;
+            this.closestOrder = order;
+            this.closestFace = this.rayHit.getFace();
+            this.closestMinX = this.partBounds[0];
+            this.closestMinY = this.partBounds[1];
+            this.closestMaxX = this.partBounds[2];
+            this.closestMaxY = this.partBounds[3];
+            this.closestNormalX = this.rayHit.getNormalX();
+            this.closestNormalY = this.rayHit.getNormalY();
+            this.minTime = time;
+        }
+    }
+
+    /**
+     * Tests the collidables of a range of slots, whose rectangles are given
+     * by arrays of their sides and whose order is their slot. A slab kernel
+     * first picks the slots the trajectory may hit, and only those are
+     * tested exactly. Empty slots (null collidables) and slots that aren't
+     * in the layers of the query are skipped.
+     *
+     * @param kernel     the slab kernel.
+     * @param objects    the collidables of the slots.
+     * @param categories the collision categories of the slots.
+     * @param minX       the left sides of the rectangles.
+     * @param minY       the upper sides of the rectangles.
+     * @param maxX       the right sides of the rectangles.
+     * @param maxY       the lower sides of the rectangles.
+     * @param from       the first slot of the range.
+     * @param to         the end of the range, exclusive.
+     */
+    void testSlots(SlabKernel kernel, Collidable[] objects, int[] categories,
+                   double[] minX, double[] minY, double[] maxX, double[] maxY,
+                   int from, int to) {
+        // checks if the candidates array is too small.
+        if (this.candidates.length < to - from) {
+            this.candidates = new int[Math.max(to - from,
+                                            2 * this.candidates.length)];
+        }
+        int found = kernel.candidates(this.x0, this.y0, this.dx, this.dy,
+                this.radius + SLAB_MARGIN, minX, minY, maxX, maxY, from, to,
+                this.candidates);
+        // goes over the picked slots.
+        for (int k = 0; k < found; k++) {
+            int i = this.candidates[k];
+            // checks if the slot isn't empty and is in the query's layers.
+            if (objects[i] != null && accepts(categories[i])) {
+                testBounds(objects[i], i, minX[i], minY[i], maxX[i], maxY[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks if a collision category is in the layers of the query.
+     *
+     * @param category the collision category.
+     * @return true if the category shares a bit with the mask.
+     */
+    boolean accepts(int category) {
+        return (category & this.mask) != 0;
+    }
+
+    /**
+     * Gets the number of collidables whose geometry was tested since the
+     * query started.
+     *
+     * @return the number of tested collidables.
+     */
+    int tested() {
+        return this.tested;
+    }
+
+    /**
+     * Gets the smallest x coordinate the trajectory reaches.
+     *
+     * @return the smallest x coordinate, not counting the radius.
+     */
+    double minX() {
+        return Math.min(this.x0, this.x0 + this.dx);
+    }
+
+    /**
+     * Gets the smallest y coordinate the trajectory reaches.
+     *
+     * @return the smallest y coordinate, not counting the radius.
+     */
+    double minY() {
+        return Math.min(this.y0, this.y0 + this.dy);
+    }
+
+    /**
+     * Gets the largest x coordinate the trajectory reaches.
+     *
+     * @return the largest x coordinate, not counting the radius.
+     */
+    double maxX() {
+        return Math.max(this.x0, this.x0 + this.dx);
+    }
+
+    /**
+     * Gets the largest y coordinate the trajectory reaches.
+     *
+     * @return the largest y coordinate, not counting the radius.
+     */
+    double maxY() {
+        return Math.max(this.y0, this.y0 + this.dy);
+    }
+
+    /**
+     * Gets the radius of the moving object.
+     *
+     * @return the radius, 0 for a ray.
+     */
+    double radius() {
+        return this.radius;
+    }
+
+    /**
+     * Gets the time of the closest collision, as a fraction of the
+     * trajectory.
+     *
+     * @return the time, infinity if there wasn't a collision.
+     */
+    double minTime() {
+        return this.minTime;
+    }
+
+    /**
+     * Gets the closest collision info. The collision point is the contact
+     * point on the collidable, placed exactly on the side that was hit, and
+     * if a part of a composite collidable was hit the part is the object.
+     *
+     * @return the collision info, null if there wasn't a collision.
+     */
+    CollisionInfo result() {
+        // checks if there was a collision.
+        if (this.closest == null) {
+            return null;
+        }
+        double x = this.x0 + this.minTime * this.dx
+                    - this.closestNormalX * this.radius;
+        double y = this.y0 + this.minTime * this.dy
+                    - this.closestNormalY * this.radius;
+        // snaps the point to the side that was hit.
+        if (this.closestFace == RayHit.LEFT) {
+            x = this.closestMinX;
+        } else if (this.closestFace == RayHit.RIGHT) {
+            x = this.closestMaxX;
+        } else if (this.closestFace == RayHit.TOP) {
+            y = this.closestMinY;
+        } else if (this.closestFace == RayHit.BOTTOM) {
+            y = this.closestMaxY;
+        }
+        Collidable hitObject = this.closest;
+        // checks if a part of a composite collidable was hit.
+        if (this.closestPart >= 0) {
+            hitObject = ((CompositeCollidable) this.closest).part(
+                                                            this.closestPart);
+        }
+        return new CollisionInfo(new Point(x, y), hitObject, this.minTime,
+                                this.closestNormalX, this.closestNormalY);
+    }
+}
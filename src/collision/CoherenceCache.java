@@ -0,0 +1,127 @@
+package collision;
+
+import geometry.Line;
+import geometry.Rectangle;
+
+import java.util.List;
+
+/**
+ * Represents the collision candidates of a single moving object between
+ * frames, defined by a bound around its last trajectory and the collidables
+ * that overlap the bound. The trajectory of a ball barely changes between
+ * frames, so while it stays inside the bound only the candidates are
+ * tested, and the broad phase is skipped. The bound is grown ahead of the
+ * trajectory, and the cache is invalidated when a collidable is added to,
+ * removed from or moved into the bound.
+ * @author Max Shabs
+ */
+public class CoherenceCache {
+    private static final double LOOKAHEAD = 8;
+    private static final double MIN_MARGIN = 10;
+    private static final double PADDING = 0.001;
+    private CollidableStore store;
+    private ClosestHitSearch search;
+    private Collidable[] candidates;
+    private boolean valid;
+    private int mask;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+
+    /**
+     * Instantiates a new empty cache over a store of collidables.
+     *
+     * @param store the store the candidates are gathered from.
+     */
+    public CoherenceCache(CollidableStore store) {
+        this.store = store;
+        this.search = new ClosestHitSearch();
+        this.candidates = new Collidable[0];
+        this.valid = false;
+    }
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * The result is the same as the one of the store, and the candidates are
+     * gathered again only if the trajectory leaves the bound, the layers
+     * changed or the cache was invalidated.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param layers     the collision layers the query tests.
+     * @return the closest collision info.
+     */
+    public CollisionInfo closestCollision(Line trajectory, double radius,
+                                          int layers) {
+        ClosestHitSearch curSearch = this.search;
+        curSearch.reset(trajectory, radius, layers);
+        double reach = radius + PADDING;
+        double fromX = curSearch.minX() - reach;
+        double fromY = curSearch.minY() - reach;
+        double toX = curSearch.maxX() + reach;
+        double toY = curSearch.maxY() + reach;
+        // checks if the candidates can't be reused for this trajectory.
+        if (!this.valid || layers != this.mask || fromX < this.minX
+                || fromY < this.minY || toX > this.maxX || toY > this.maxY) {
+            double margin = Math.max(MIN_MARGIN, LOOKAHEAD
+                                * Math.max(toX - fromX, toY - fromY));
+            gather(fromX - margin, fromY - margin, toX + margin,
+                    toY + margin, layers);
+        }
+        Collidable[] curCandidates = this.candidates;
+        // goes over the candidates, in the order they were added.
+        for (int i = 0; i < curCandidates.length; i++) {
+            curSearch.test(curCandidates[i], i);
+        }
+        return curSearch.result();
+    }
+
+    /**
+     * Invalidates the cache if a rectangle overlaps the bound, for example
+     * the rectangle of a collidable that was removed or moved.
+     *
+     * @param rect the rectangle.
+     */
+    public void invalidate(Rectangle rect) {
+        // checks if the rectangle overlaps the bound.
+        if (this.valid && rect.getRightX() >= this.minX
+                && rect.getLeftX() <= this.maxX
+                && rect.getLowerY() >= this.minY
+                && rect.getUpperY() <= this.maxY) {
+            this.valid = false;
+        }
+    }
+
+    /**
+     * Gathers the candidates of a new bound from the store.
+     *
+     * @param fromX  the left side of the bound.
+     * @param fromY  the upper side of the bound.
+     * @param toX    the right side of the bound.
+     * @param toY    the lower side of the bound.
+     * @param layers the collision layers of the candidates.
+     */
+    private void gather(double fromX, double fromY, double toX, double toY,
+                        int layers) {
+        List<Collidable> found = this.store.overlapping(fromX, fromY, toX,
+                                                        toY, layers);
+        this.candidates = found.toArray(new Collidable[found.size()]);
+        this.minX = fromX;
+        this.minY = fromY;
+        this.maxX = toX;
+        this.maxY = toY;
+        this.mask = layers;
+        this.valid = true;
+    }
+
+    /**
+     * Gets the number of collidables whose geometry was tested by the last
+     * closest collision query.
+     *
+     * @return the number of tested collidables.
+     */
+    public int lastTestedCount() {
+        return this.search.tested();
+    }
+}
@@ -17,6 +17,16 @@ public interface Collidable {
      */
     Rectangle getCollisionRectangle();
 
+    /**
+     * Gets the collision category of the collidable, as bits of the
+     * collision layers. A query only tests the collidables whose category
+     * shares a bit with its mask, so a category of CollisionLayers.NONE is
+     * never hit.
+     *
+     * @return the collision category.
+     */
+    int getCollisionCategory();
+
     /**
      * Changes the direction of the hit object after the hit with a collidable.
      *
@@ -0,0 +1,324 @@
+package collision;
+
+import geometry.Line;
+import geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a store of collidables in a structure of arrays, defined by
+ * the sides of their rectangles and their collision categories in
+ * primitive arrays and a bit set of the slots that are alive. Removing a
+ * collidable only clears its bit, and a query is a linear sweep over the
+ * arrays, which doesn't chase pointers from a collidable to its rectangle
+ * and corner points and can test several rectangles at once with the vector
+ * kernel.
+ * Slots are given in the order the collidables are added, and compacting
+ * keeps that order, so the slot is also the order used to break ties
+ * between collisions. The version of the store changes whenever a
+ * collidable is added, removed or moved, so a snapshot is only copied again
+ * once it is out of date.
+ * @author Max Shabs
+ */
+public class CollidableStore implements CollisionIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private Collidable[] objects;
+    private int[] categories;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private BitSet alive;
+    private Map<Collidable, Integer> slots;
+    private int size;
+    private long version;
+    private ClosestHitSearch search;
+    private RayBatchQuery batch;
+    private SlabKernel kernel;
+
+    /**
+     * Instantiates a new empty store.
+     */
+    public CollidableStore() {
+        this.objects = new Collidable[INITIAL_CAPACITY];
+        this.categories = new int[INITIAL_CAPACITY];
+        this.minX = new double[INITIAL_CAPACITY];
+        this.minY = new double[INITIAL_CAPACITY];
+        this.maxX = new double[INITIAL_CAPACITY];
+        this.maxY = new double[INITIAL_CAPACITY];
+        this.alive = new BitSet(INITIAL_CAPACITY);
+        this.slots = new IdentityHashMap<>();
+        this.size = 0;
+        this.version = 0;
+        this.search = new ClosestHitSearch();
+        this.batch = new RayBatchQuery();
+        this.kernel = SlabKernels.best();
+    }
+
+    /**
+     * Adds a collidable in a new slot at the end of the store.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void insert(Collidable c) {
+        // checks if the arrays are full.
+        if (this.size == this.objects.length) {
+            grow();
+        }
+        int slot = this.size;
+        this.size++;
+        this.objects[slot] = c;
+        this.slots.put(c, slot);
+        this.alive.set(slot);
+        copyBounds(slot, c);
+        this.version++;
+    }
+
+    /**
+     * Removes a collidable by clearing the alive bit of its slot.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void remove(Collidable c) {
+        Integer slot = this.slots.remove(c);
+        // checks if the collidable is in the store.
+        if (slot != null) {
+            this.alive.clear(slot);
+            this.objects[slot] = null;
+            this.version++;
+        }
+    }
+
+    /**
+     * Copies the new sides of a collidable's rectangle and its category into
+     * the arrays.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void update(Collidable c) {
+        Integer slot = this.slots.get(c);
+        // checks if the collidable is in the store.
+        if (slot == null) {
+            return;
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        // checks if the collidable really changed.
+        if (this.categories[slot] != c.getCollisionCategory()
+                || this.minX[slot] != rect.getLeftX()
+                || this.minY[slot] != rect.getUpperY()
+                || this.maxX[slot] != rect.getRightX()
+                || this.maxY[slot] != rect.getLowerY()) {
+            copyBounds(slot, c);
+            this.version++;
+        }
+    }
+
+    /**
+     * Moves the alive slots over the removed ones, keeping their order, so
+     * the sweeps don't skip over removed slots. Removing only clears bits,
+     * so this is meant to run once a frame after all the removals.
+     */
+    public void compact() {
+        int count = this.slots.size();
+        // checks if no slot was removed since the last compaction.
+        if (count == this.size) {
+            return;
+        }
+        int next = 0;
+        // goes over the alive slots.
+        for (int i = this.alive.nextSetBit(0); i >= 0;
+                i = this.alive.nextSetBit(i + 1)) {
+            // checks if the collidable moves to a new slot.
+            if (next != i) {
+                Collidable c = this.objects[i];
+                this.objects[next] = c;
+                this.categories[next] = this.categories[i];
+                this.minX[next] = this.minX[i];
+                this.minY[next] = this.minY[i];
+                this.maxX[next] = this.maxX[i];
+                this.maxY[next] = this.maxY[i];
+                this.slots.put(c, next);
+            }
+            next++;
+        }
+        Arrays.fill(this.objects, next, this.size, null);
+        this.alive.clear();
+        this.alive.set(0, next);
+        this.size = next;
+    }
+
+    /**
+     * Copies the alive slots, in their order, into a read-only snapshot, in
+     * place. Nothing is copied if the snapshot already has the version of
+     * the store.
+     *
+     * @param snapshot the snapshot.
+     */
+    public void snapshot(CollisionSnapshot snapshot) {
+        // checks if the snapshot is up to date.
+        if (snapshot.getVersion() == this.version) {
+            return;
+        }
+        snapshot.refill(this.slots.size(), this.version);
+        int next = 0;
+        // goes over the alive slots.
+        for (int i = this.alive.nextSetBit(0); i >= 0;
+                i = this.alive.nextSetBit(i + 1)) {
+            snapshot.set(next, this.objects[i], this.categories[i],
+                        this.minX[i], this.minY[i], this.maxX[i],
+                        this.maxY[i]);
+            next++;
+        }
+    }
+
+    /**
+     * Checks if a collidable is in the store.
+     *
+     * @param c the collidable.
+     * @return true if it is in the store, false otherwise.
+     */
+    public boolean contains(Collidable c) {
+        return this.slots.containsKey(c);
+    }
+
+    /**
+     * Gets the collidables in the store, in the order they were added.
+     *
+     * @return a new list of the collidables.
+     */
+    public List<Collidable> toList() {
+        List<Collidable> list = new ArrayList<>(this.slots.size());
+        // goes over the alive slots.
+        for (int i = this.alive.nextSetBit(0); i >= 0;
+                i = this.alive.nextSetBit(i + 1)) {
+            list.add(this.objects[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Gets the collidables of some layers whose rectangles overlap an area.
+     *
+     * @param fromX  the left side of the area.
+     * @param fromY  the upper side of the area.
+     * @param toX    the right side of the area.
+     * @param toY    the lower side of the area.
+     * @param layers the collision layers.
+     * @return a new list of the collidables, in the order they were added.
+     */
+    public List<Collidable> overlapping(double fromX, double fromY,
+                                        double toX, double toY, int layers) {
+        List<Collidable> list = new ArrayList<>();
+        // goes over the alive slots.
+        for (int i = this.alive.nextSetBit(0); i >= 0;
+                i = this.alive.nextSetBit(i + 1)) {
+            // checks if the slot is in the layers and overlaps the area.
+            if ((this.categories[i] & layers) != 0 && this.maxX[i] >= fromX
+                    && this.minX[i] <= toX && this.maxY[i] >= fromY
+                    && this.minY[i] <= toY) {
+                list.add(this.objects[i]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * The slots are filtered by their slab entry and exit times, many at
+     * once when the vector kernel is available, and only the slots the
+     * trajectory may hit are tested exactly.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param mask       the collision layers the query tests.
+     * @return the closest collision info.
+     */
+    @Override
+    public CollisionInfo closestCollision(Line trajectory, double radius,
+                                          int mask) {
+        ClosestHitSearch curSearch = this.search;
+        curSearch.reset(trajectory, radius, mask);
+        curSearch.testSlots(this.kernel, this.objects, this.categories,
+                            this.minX, this.minY, this.maxX, this.maxY, 0,
+                            this.size);
+        return curSearch.result();
+    }
+
+    /**
+     * Gets the closest collision of every ray in a batch, walking the alive
+     * slots once. Ray i goes from (x0[i], y0[i]) to (x1[i], y1[i]), is swept
+     * by a circle of radius[i] and tests the collision layers of mask[i],
+     * and its result is the same as the one of closestCollision.
+     *
+     * @param x0      the x coordinates of the starts of the rays.
+     * @param y0      the y coordinates of the starts of the rays.
+     * @param x1      the x coordinates of the ends of the rays.
+     * @param y1      the y coordinates of the ends of the rays.
+     * @param radius  the radiuses of the rays, 0 for a point.
+     * @param mask    the collision layers of the rays.
+     * @param count   the number of rays.
+     * @param results the closest collision of every ray, null for a miss.
+     */
+    public void closestCollisions(double[] x0, double[] y0, double[] x1,
+                                  double[] y1, double[] radius, int[] mask,
+                                  int count, CollisionInfo[] results) {
+        RayBatchQuery curBatch = this.batch;
+        curBatch.begin(x0, y0, x1, y1, radius, mask, 0, count);
+        // goes over the alive slots.
+        for (int i = this.alive.nextSetBit(0); i >= 0;
+                i = this.alive.nextSetBit(i + 1)) {
+            curBatch.testAll(this.objects[i], i, this.categories[i],
+                            this.minX[i], this.minY[i], this.maxX[i],
+                            this.maxY[i]);
+        }
+        curBatch.finish(results, 0);
+    }
+
+    /**
+     * Copies the sides of a collidable's rectangle and its category into a
+     * slot.
+     *
+     * @param slot the slot.
+     * @param c    the collidable.
+     */
+    private void copyBounds(int slot, Collidable c) {
+        Rectangle rect = c.getCollisionRectangle();
+        this.categories[slot] = c.getCollisionCategory();
+        this.minX[slot] = rect.getLeftX();
+        this.minY[slot] = rect.getUpperY();
+        this.maxX[slot] = rect.getRightX();
+        this.maxY[slot] = rect.getLowerY();
+    }
+
+    /**
+     * Doubles the capacity of the arrays.
+     */
+    private void grow() {
+        int capacity = 2 * this.objects.length;
+        this.objects = Arrays.copyOf(this.objects, capacity);
+        this.categories = Arrays.copyOf(this.categories, capacity);
+        this.minX = Arrays.copyOf(this.minX, capacity);
+        this.minY = Arrays.copyOf(this.minY, capacity);
+        this.maxX = Arrays.copyOf(this.maxX, capacity);
+        this.maxY = Arrays.copyOf(this.maxY, capacity);
+    }
+
+    /**
+     * Gets the number of collidables whose geometry was tested by the last
+     * closest collision query.
+     *
+     * @return the number of tested collidables.
+     */
+    @Override
+    public int lastTestedCount() {
+        return this.search.tested();
+    }
+}
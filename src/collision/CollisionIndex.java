@@ -0,0 +1,53 @@
+package collision;
+
+import geometry.Line;
+
+/**
+ * The interface Collision index, a spatial structure over the collidables of
+ * the game that answers the closest collision queries.
+ * @author Max Shabs
+ */
+public interface CollisionIndex {
+    /**
+     * Adds a collidable to the index.
+     *
+     * @param c the collidable.
+     */
+    void insert(Collidable c);
+
+    /**
+     * Removes a collidable from the index.
+     *
+     * @param c the collidable.
+     */
+    void remove(Collidable c);
+
+    /**
+     * Updates the index after the collision rectangle of a collidable moved.
+     *
+     * @param c the collidable.
+     */
+    void update(Collidable c);
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * When two collidables are hit at the same distance, the one that was
+     * inserted first is returned. With a radius the trajectory is swept by
+     * a circle, and only collidables the circle moves into are hit. Only
+     * the collidables whose category shares a bit with the mask are tested.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param mask       the collision layers the query tests.
+     * @return the closest collision info.
+     */
+    CollisionInfo closestCollision(Line trajectory, double radius, int mask);
+
+    /**
+     * Gets the number of collidables whose geometry was tested by the last
+     * closest collision query, not counting the ones the index skipped.
+     *
+     * @return the number of tested collidables.
+     */
+    int lastTestedCount();
+}
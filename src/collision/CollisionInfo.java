@@ -3,12 +3,16 @@ package collision;
 import geometry.Point;
 
 /**
- * Represents collision info, defined by the collision point and object.
+ * Represents collision info, defined by the collision point and object, the
+ * time of the collision and the normal of the collision object's surface.
  * @author Max Shabs
  */
 public class CollisionInfo {
     private Point colPoint;
     private Collidable colObject;
+    private double colTime;
+    private double normalX;
+    private double normalY;
 
     /**
      * Instantiates a new Collision info.
@@ -17,8 +21,26 @@ public class CollisionInfo {
      * @param colObject the collision object.
      */
     public CollisionInfo(Point colPoint, Collidable colObject) {
+        this(colPoint, colObject, 0, 0, 0);
+    }
+
+    /**
+     * Instantiates a new Collision info with the time and normal.
+     *
+     * @param colPoint  the collision point.
+     * @param colObject the collision object.
+     * @param colTime   the time of the collision, as a fraction of the
+     *                  trajectory.
+     * @param normalX   the x-axis part of the surface normal.
+     * @param normalY   the y-axis part of the surface normal.
+     */
+    public CollisionInfo(Point colPoint, Collidable colObject, double colTime,
+                         double normalX, double normalY) {
         this.colPoint = colPoint;
         this.colObject = colObject;
+        this.colTime = colTime;
+        this.normalX = normalX;
+        this.normalY = normalY;
     }
 
     /**
@@ -38,4 +60,31 @@ public class CollisionInfo {
     public Collidable collisionObject() {
         return this.colObject;
     }
+
+    /**
+     * Gets the time of the collision, as a fraction of the trajectory.
+     *
+     * @return the collision time.
+     */
+    public double collisionTime() {
+        return this.colTime;
+    }
+
+    /**
+     * Gets the x-axis part of the outward normal of the collision surface.
+     *
+     * @return the x-axis part of the normal.
+     */
+    public double normalX() {
+        return this.normalX;
+    }
+
+    /**
+     * Gets the y-axis part of the outward normal of the collision surface.
+     *
+     * @return the y-axis part of the normal.
+     */
+    public double normalY() {
+        return this.normalY;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package collision;
+
+/**
+ * The collision layers of the game, as bits of a category or of a mask. A
+ * collidable has a category, a query has a mask, and the query only tests
+ * the collidables whose category shares a bit with the mask, before any
+ * geometry is tested. A collidable with no category is never hit, so an
+ * inactive collidable can keep its place in the indexes.
+ * @author Max Shabs
+ */
+public final class CollisionLayers {
+    /**
+     * No layer, the category of an inactive collidable.
+     */
+    public static final int NONE = 0;
+    /**
+     * The walls around the screen.
+     */
+    public static final int WALLS = 1;
+    /**
+     * The area under the paddle that removes the balls.
+     */
+    public static final int DEATH_ZONE = 1 << 1;
+    /**
+     * The paddle.
+     */
+    public static final int PADDLE = 1 << 2;
+    /**
+     * The bricks of the level.
+     */
+    public static final int BRICKS = 1 << 3;
+    /**
+     * All the layers, the mask of a query that tests every collidable.
+     */
+    public static final int ALL = ~0;
+
+    /**
+     * The layers can't be instantiated.
+     */
+    private CollisionLayers() {
+    }
+}
@@ -0,0 +1,174 @@
+package collision;
+
+import geometry.Line;
+
+import java.util.Arrays;
+
+/**
+ * Represents a read-only copy of the collidables' rectangles at one moment,
+ * defined by the collidables, their categories, the sides of their
+ * rectangles and the version of the store they were copied from. A snapshot
+ * is refilled in place by its store, and only when the store changed since,
+ * so it is kept for the whole level. Nothing in it changes while it is
+ * queried, so it can be queried from several threads at once, every worker
+ * using its own closest hit search and batch, which are kept with the
+ * snapshot and reused for every frame.
+ * @author Max Shabs
+ */
+public class CollisionSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+    private Collidable[] objects;
+    private int[] categories;
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int size;
+    private long version;
+    private ClosestHitSearch[] searches;
+    private RayBatchQuery[] batches;
+    private SlabKernel kernel;
+
+    /**
+     * Instantiates a new empty snapshot, which no store was copied into yet.
+     */
+    public CollisionSnapshot() {
+        this.objects = new Collidable[INITIAL_CAPACITY];
+        this.categories = new int[INITIAL_CAPACITY];
+        this.minX = new double[INITIAL_CAPACITY];
+        this.minY = new double[INITIAL_CAPACITY];
+        this.maxX = new double[INITIAL_CAPACITY];
+        this.maxY = new double[INITIAL_CAPACITY];
+        this.size = 0;
+        this.version = -1;
+        this.searches = new ClosestHitSearch[0];
+        this.batches = new RayBatchQuery[0];
+        this.kernel = SlabKernels.best();
+    }
+
+    /**
+     * Makes sure there is a search and a batch for a number of workers. Only
+     * called while the snapshot isn't queried.
+     *
+     * @param workers the number of workers.
+     */
+    public void setWorkers(int workers) {
+        int old = this.batches.length;
+        // checks if there are searches for all the workers.
+        if (workers <= old) {
+            return;
+        }
+        this.searches = Arrays.copyOf(this.searches, workers);
+        this.batches = Arrays.copyOf(this.batches, workers);
+        // goes over the new workers.
+        for (int i = old; i < workers; i++) {
+            this.searches[i] = new ClosestHitSearch();
+            this.batches[i] = new RayBatchQuery();
+        }
+    }
+
+    /**
+     * Gets the version of the store the snapshot was copied from.
+     *
+     * @return the version, -1 if nothing was copied yet.
+     */
+    long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Starts copying a new version of a store, making room for its
+     * collidables. The old contents may be overwritten after this.
+     *
+     * @param count      the number of collidables.
+     * @param newVersion the version of the store.
+     */
+    void refill(int count, long newVersion) {
+        // checks if the arrays are too small.
+        if (count > this.objects.length) {
+            int capacity = Math.max(count, 2 * this.objects.length);
+            this.objects = new Collidable[capacity];
+            this.categories = new int[capacity];
+            this.minX = new double[capacity];
+            this.minY = new double[capacity];
+            this.maxX = new double[capacity];
+            this.maxY = new double[capacity];
+        } else if (count < this.size) {
+            Arrays.fill(this.objects, count, this.size, null);
+        }
+        this.size = count;
+        this.version = newVersion;
+    }
+
+    /**
+     * Copies a collidable into a slot of the snapshot.
+     *
+     * @param slot     the slot.
+     * @param c        the collidable.
+     * @param category its collision category.
+     * @param fromX    the left side of its rectangle.
+     * @param fromY    the upper side of its rectangle.
+     * @param toX      the right side of its rectangle.
+     * @param toY      the lower side of its rectangle.
+     */
+    void set(int slot, Collidable c, int category, double fromX, double fromY,
+             double toX, double toY) {
+        this.objects[slot] = c;
+        this.categories[slot] = category;
+        this.minX[slot] = fromX;
+        this.minY[slot] = fromY;
+        this.maxX[slot] = toX;
+        this.maxY[slot] = toY;
+    }
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * Ties are broken by the order of the collidables, like in the indexes.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param mask       the collision layers the query tests.
+     * @param worker     the worker that queries, below the number of workers.
+     * @return the closest collision info.
+     */
+    public CollisionInfo closestCollision(Line trajectory, double radius,
+                                          int mask, int worker) {
+        ClosestHitSearch curSearch = this.searches[worker];
+        curSearch.reset(trajectory, radius, mask);
+        curSearch.testSlots(this.kernel, this.objects, this.categories,
+                            this.minX, this.minY, this.maxX, this.maxY, 0,
+                            this.size);
+        return curSearch.result();
+    }
+
+    /**
+     * Gets the closest collision of every ray in a range of a batch, walking
+     * the collidables once. Ray i goes from (x0[i], y0[i]) to (x1[i], y1[i]),
+     * is swept by a circle of radius[i] and tests the layers of mask[i].
+     *
+     * @param x0      the x coordinates of the starts of the rays.
+     * @param y0      the y coordinates of the starts of the rays.
+     * @param x1      the x coordinates of the ends of the rays.
+     * @param y1      the y coordinates of the ends of the rays.
+     * @param radius  the radiuses of the rays, 0 for a point.
+     * @param mask    the collision layers of the rays.
+     * @param from    the first ray of the range.
+     * @param to      the end of the range, exclusive.
+     * @param worker  the worker that queries, below the number of workers.
+     * @param results the closest collision of every ray, null for a miss.
+     */
+    public void closestCollisions(double[] x0, double[] y0, double[] x1,
+                                  double[] y1, double[] radius, int[] mask,
+                                  int from, int to, int worker,
+                                  CollisionInfo[] results) {
+        RayBatchQuery curBatch = this.batches[worker];
+        curBatch.begin(x0, y0, x1, y1, radius, mask, from, to);
+        // goes over the collidables.
+        for (int i = 0; i < this.size; i++) {
+            curBatch.testAll(this.objects[i], i, this.categories[i],
+                            this.minX[i], this.minY[i], this.maxX[i],
+                            this.maxY[i]);
+        }
+        curBatch.finish(results, from);
+    }
+}
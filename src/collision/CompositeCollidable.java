@@ -0,0 +1,46 @@
+package collision;
+
+import geometry.RayHit;
+
+/**
+ * The interface Composite collidable, a collidable made of parts (like the
+ * tiles of a tile map) that are hit one by one. The collision rectangle
+ * bounds all the parts, and a trajectory that enters it is cast against the
+ * parts to find the first one it hits.
+ * @author Max Shabs
+ */
+public interface CompositeCollidable extends Collidable {
+    /**
+     * Casts a trajectory against the parts, finding the first part it hits.
+     * This doesn't change the collidable, so it may be called from several
+     * threads at once.
+     *
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param radius the radius of the moving object, 0 for a ray.
+     * @param hit    receives the time, side and normal of the hit.
+     * @param bounds receives the left, upper, right and lower sides of the
+     *               part that was hit.
+     * @return the index of the part that was hit, -1 if none was hit.
+     */
+    int castParts(double x0, double y0, double dx, double dy, double radius,
+                  RayHit hit, double[] bounds);
+
+    /**
+     * Gets the smallest width or height of a part.
+     *
+     * @return the thinnest side of a part.
+     */
+    double thinnestPart();
+
+    /**
+     * Gets a part as a collidable of its own, which is what a ball that hit
+     * the part is told it collided with.
+     *
+     * @param index the index of the part.
+     * @return the part.
+     */
+    Collidable part(int index);
+}
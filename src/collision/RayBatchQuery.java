@@ -0,0 +1,137 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * The state of a batch of closest collision queries, defined by a search
+ * and the bounding box of every ray. The rectangles are walked once, and
+ * every rectangle is tested against all the rays while it is in the cache,
+ * instead of walking all the rectangles once for every ray. A batch is
+ * reused for every frame, so nothing is allocated unless the batch grows or
+ * a collision is found.
+ * @author Max Shabs
+ */
+class RayBatchQuery {
+    private static final int INITIAL_CAPACITY = 64;
+    private ClosestHitSearch[] searches;
+    private double[] fromX;
+    private double[] fromY;
+    private double[] toX;
+    private double[] toY;
+    private int count;
+
+    /**
+     * Instantiates a new empty batch.
+     */
+    RayBatchQuery() {
+        this.searches = new ClosestHitSearch[0];
+        this.fromX = new double[INITIAL_CAPACITY];
+        this.fromY = new double[INITIAL_CAPACITY];
+        this.toX = new double[INITIAL_CAPACITY];
+        this.toY = new double[INITIAL_CAPACITY];
+        this.count = 0;
+    }
+
+    /**
+     * Starts the queries of a range of rays. Ray i goes from (x0[i], y0[i])
+     * to (x1[i], y1[i]), is swept by a circle of radius[i] and tests the
+     * collision layers of mask[i].
+     *
+     * @param x0     the x coordinates of the starts of the rays.
+     * @param y0     the y coordinates of the starts of the rays.
+     * @param x1     the x coordinates of the ends of the rays.
+     * @param y1     the y coordinates of the ends of the rays.
+     * @param radius the radiuses of the rays, 0 for a point.
+     * @param mask   the collision layers of the rays.
+     * @param from   the first ray of the range.
+     * @param to     the end of the range, exclusive.
+     */
+    void begin(double[] x0, double[] y0, double[] x1, double[] y1,
+               double[] radius, int[] mask, int from, int to) {
+        int n = to - from;
+        ensureCapacity(n);
+        // goes over the rays of the range.
+        for (int i = 0; i < n; i++) {
+            int ray = from + i;
+            double r = radius[ray];
+            ClosestHitSearch curSearch = this.searches[i];
+            curSearch.reset(x0[ray], y0[ray], x1[ray], y1[ray], r,
+                            mask[ray]);
+            this.fromX[i] = curSearch.minX() - r;
+            this.fromY[i] = curSearch.minY() - r;
+            this.toX[i] = curSearch.maxX() + r;
+            this.toY[i] = curSearch.maxY() + r;
+        }
+        this.count = n;
+    }
+
+    /**
+     * Tests all the rays of the batch against one collidable.
+     *
+     * @param c        the collidable.
+     * @param order    the order in which the collidable was added.
+     * @param category the collision category of the collidable.
+     * @param minX     the left side of the collidable's rectangle.
+     * @param minY     the upper side of the collidable's rectangle.
+     * @param maxX     the right side of the collidable's rectangle.
+     * @param maxY     the lower side of the collidable's rectangle.
+     */
+    void testAll(Collidable c, int order, int category, double minX,
+                 double minY, double maxX, double maxY) {
+        double[] lowX = this.fromX;
+        double[] lowY = this.fromY;
+        double[] highX = this.toX;
+        double[] highY = this.toY;
+        // goes over the rays.
+        for (int i = 0; i < this.count; i++) {
+            // checks if the rectangle is outside of the ray's box.
+            if (maxX < lowX[i] | minX > highX[i]
+                    | maxY < lowY[i] | minY > highY[i]) {
+                continue;
+            }
+            ClosestHitSearch curSearch = this.searches[i];
+            // checks if the collidable is in the layers of the ray.
+            if (curSearch.accepts(category)) {
+                curSearch.testBounds(c, order, minX, minY, maxX, maxY);
+            }
+        }
+    }
+
+    /**
+     * Writes the closest collision of every ray of the range.
+     *
+     * @param results the results, by the indexes of the rays.
+     * @param from    the first ray of the range.
+     */
+    void finish(CollisionInfo[] results, int from) {
+        // goes over the rays.
+        for (int i = 0; i < this.count; i++) {
+            results[from + i] = this.searches[i].result();
+        }
+    }
+
+    /**
+     * Makes room for a number of rays.
+     *
+     * @param n the number of rays.
+     */
+    private void ensureCapacity(int n) {
+        // checks if the bounding box arrays are too small.
+        if (n > this.fromX.length) {
+            int capacity = Math.max(n, 2 * this.fromX.length);
+            this.fromX = Arrays.copyOf(this.fromX, capacity);
+            this.fromY = Arrays.copyOf(this.fromY, capacity);
+            this.toX = Arrays.copyOf(this.toX, capacity);
+            this.toY = Arrays.copyOf(this.toY, capacity);
+        }
+        // checks if there are too few searches.
+        if (n > this.searches.length) {
+            int old = this.searches.length;
+            this.searches = Arrays.copyOf(this.searches, n);
+            // goes over the new searches.
+            for (int i = old; i < n; i++) {
+                this.searches[i] = new ClosestHitSearch();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package collision;
+
+/**
+ * A slab kernel that tests one rectangle at a time.
+ * @author Max Shabs
+ */
+class ScalarSlabKernel implements SlabKernel {
+    /**
+     * Writes the indexes of the rectangles in a range whose slabs, grown by
+     * a margin, the trajectory crosses between its start and its end.
+     *
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param margin the margin added to every side of the rectangles.
+     * @param minX   the left sides of the rectangles.
+     * @param minY   the upper sides of the rectangles.
+     * @param maxX   the right sides of the rectangles.
+     * @param maxY   the lower sides of the rectangles.
+     * @param from   the first rectangle of the range.
+     * @param to     the end of the range, exclusive.
+     * @param out    the indexes of the picked rectangles.
+     * @return the number of picked rectangles.
+     */
+    @Override
+    public int candidates(double x0, double y0, double dx, double dy,
+                          double margin, double[] minX, double[] minY,
+                          double[] maxX, double[] maxY, int from, int to,
+                          int[] out) {
+        return scan(x0, y0, dx, dy, margin, minX, minY, maxX, maxY, from, to,
+                    out, 0);
+    }
+
+    /**
+     * Tests the rectangles of a range one at a time, appending the picked
+     * indexes after the ones already in the output.
+     *
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param margin the margin added to every side of the rectangles.
+     * @param minX   the left sides of the rectangles.
+     * @param minY   the upper sides of the rectangles.
+     * @param maxX   the right sides of the rectangles.
+     * @param maxY   the lower sides of the rectangles.
+     * @param from   the first rectangle of the range.
+     * @param to     the end of the range, exclusive.
+     * @param out    the indexes of the picked rectangles.
+     * @param count  the number of indexes already in the output.
+     * @return the number of indexes in the output.
+     */
+    static int scan(double x0, double y0, double dx, double dy, double margin,
+                    double[] minX, double[] minY, double[] maxX,
+                    double[] maxY, int from, int to, int[] out, int count) {
+        int found = count;
+        // goes over the rectangles of the range.
+        for (int i = from; i < to; i++) {
+            double lowX = minX[i] - margin;
+            double highX = maxX[i] + margin;
+            double lowY = minY[i] - margin;
+            double highY = maxY[i] + margin;
+            double enter = Double.NEGATIVE_INFINITY;
+            double exit = Double.POSITIVE_INFINITY;
+            // checks if the trajectory is parallel to the x slab.
+            if (dx == 0) {
+                // checks if the trajectory is outside of the x slab.
+                if (x0 < lowX || x0 > highX) {
+                    continue;
+                }
+            } else if (dx > 0) {
+                enter = (lowX - x0) / dx;
+                exit = (highX - x0) / dx;
+            } else {
+                enter = (highX - x0) / dx;
+                exit = (lowX - x0) / dx;
+            }
+            // checks if the trajectory is parallel to the y slab.
+            if (dy == 0) {
+                // checks if the trajectory is outside of the y slab.
+                if (y0 < lowY || y0 > highY) {
+                    continue;
+                }
+            } else if (dy > 0) {
+                enter = Math.max(enter, (lowY - y0) / dy);
+                exit = Math.min(exit, (highY - y0) / dy);
+            } else {
+                enter = Math.max(enter, (highY - y0) / dy);
+                exit = Math.min(exit, (lowY - y0) / dy);
+            }
+            // checks if the slabs overlap on the trajectory.
+            if (enter <= exit && exit >= 0 && enter <= 1) {
+                out[found] = i;
+                found++;
+            }
+        }
+        return found;
+    }
+}
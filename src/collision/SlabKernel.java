@@ -0,0 +1,33 @@
+package collision;
+
+/**
+ * The interface Slab kernel, a filter that finds which rectangles of a
+ * range a trajectory may hit, by the slab entry and exit times of the
+ * rectangles grown by a margin. The filter never misses a hit of the exact
+ * tests, so only the rectangles it picks have to be tested exactly.
+ * @author Max Shabs
+ */
+interface SlabKernel {
+    /**
+     * Writes the indexes of the rectangles in a range whose slabs, grown by
+     * a margin, the trajectory crosses between its start and its end.
+     *
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param margin the margin added to every side of the rectangles.
+     * @param minX   the left sides of the rectangles.
+     * @param minY   the upper sides of the rectangles.
+     * @param maxX   the right sides of the rectangles.
+     * @param maxY   the lower sides of the rectangles.
+     * @param from   the first rectangle of the range.
+     * @param to     the end of the range, exclusive.
+     * @param out    the indexes of the picked rectangles, at least as long as
+     *               the range.
+     * @return the number of picked rectangles.
+     */
+    int candidates(double x0, double y0, double dx, double dy, double margin,
+                   double[] minX, double[] minY, double[] maxX,
+                   double[] maxY, int from, int to, int[] out);
+}
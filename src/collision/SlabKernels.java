@@ -0,0 +1,43 @@
+package collision;
+
+/**
+ * Chooses the slab kernel once, the vector kernel if it was compiled from
+ * src-vector and the jdk.incubator.vector module is available, and the
+ * scalar kernel otherwise.
+ * @author Max Shabs
+ */
+final class SlabKernels {
+    private static final String VECTOR_KERNEL = "collision.VectorSlabKernel";
+    private static final SlabKernel BEST = load();
+
+    /**
+     * The kernels can't be instantiated.
+     */
+    private SlabKernels() {
+    }
+
+    /**
+     * Gets the fastest slab kernel that can run.
+     *
+     * @return the kernel.
+     */
+    static SlabKernel best() {
+        return BEST;
+    }
+
+    /**
+     * Loads the vector kernel by its name, so the default build doesn't
+     * depend on the vector API and this class doesn't link to it when the
+     * kernel wasn't compiled or the module wasn't added.
+     *
+     * @return the vector kernel, or the scalar kernel if it can't be loaded.
+     */
+    private static SlabKernel load() {
+        try {
+            return (SlabKernel) Class.forName(VECTOR_KERNEL)
+                                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarSlabKernel();
+        }
+    }
+}
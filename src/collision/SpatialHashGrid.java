@@ -0,0 +1,331 @@
+package collision;
+
+import geometry.Line;
+import geometry.Rectangle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a uniform grid spatial hash of collidables, defined by the cell
+ * size, the hashed cells and the collidables that are too big to be hashed.
+ * @author Max Shabs
+ */
+public class SpatialHashGrid implements CollisionIndex {
+    private static final int MAX_CELLS_PER_ENTRY = 256;
+    private static final double PADDING = 0.001;
+    private static final double TIME_EPSILON = 0.0000001;
+    private double cellSize;
+    private CellTable<List<Entry>> cells;
+    private ClosestHitSearch search;
+    private Map<Collidable, Entry> entries;
+    private List<Entry> oversized;
+    private int nextOrder;
+    private int queryStamp;
+
+    /**
+     * Instantiates a new spatial hash grid.
+     *
+     * @param cellSize the width and height of every cell.
+     */
+    public SpatialHashGrid(double cellSize) {
+        this.cellSize = cellSize;
+        this.cells = new CellTable<>();
+        this.search = new ClosestHitSearch();
+        this.entries = new HashMap<>();
+        this.oversized = new ArrayList<>();
+        this.nextOrder = 0;
+        this.queryStamp = 0;
+    }
+
+    /**
+     * Adds a collidable to the grid.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void insert(Collidable c) {
+        Entry entry = new Entry(c, this.nextOrder);
+        this.nextOrder++;
+        this.entries.put(c, entry);
+        bucket(entry);
+    }
+
+    /**
+     * Removes a collidable from the grid.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void remove(Collidable c) {
+        Entry entry = this.entries.remove(c);
+        // checks if the collidable was never added.
+        if (entry == null) {
+            return;
+        }
+        unbucket(entry);
+    }
+
+    /**
+     * Re-buckets a collidable whose collision rectangle has changed.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void update(Collidable c) {
+        Entry entry = this.entries.get(c);
+        // checks if the collidable was never added.
+        if (entry == null) {
+            return;
+        }
+        // checks if the rectangle is still the one that was hashed.
+        if (entry.rect == c.getCollisionRectangle()) {
+            return;
+        }
+        unbucket(entry);
+        bucket(entry);
+    }
+
+    /**
+     * Gets the closest collision with the trajectory, if there isn't null.
+     * Only the cells the trajectory crosses are visited, in order, and the
+     * walk stops once the closest hit is before the end of the current cell.
+     * For a swept circle the cells around each of them, up to the radius,
+     * are visited as well.
+     *
+     * @param trajectory the trajectory of the center of an object.
+     * @param radius     the radius of the object, 0 for a ray.
+     * @param mask       the collision layers the query tests.
+     * @return the closest collision info.
+     */
+    @Override
+    public CollisionInfo closestCollision(Line trajectory, double radius,
+                                          int mask) {
+        ClosestHitSearch curSearch = this.search;
+        curSearch.reset(trajectory, radius, mask);
+        int stamp = nextStamp();
+        // goes over the collidables that are not hashed.
+        for (int i = 0; i < this.oversized.size(); i++) {
+            Entry entry = this.oversized.get(i);
+            entry.stamp = stamp;
+            curSearch.test(entry.c, entry.order);
+        }
+        double x0 = trajectory.start().getX();
+        double y0 = trajectory.start().getY();
+        double dx = trajectory.end().getX() - x0;
+        double dy = trajectory.end().getY() - y0;
+        int cellX = cellOf(x0);
+        int cellY = cellOf(y0);
+        int endX = cellOf(trajectory.end().getX());
+        int endY = cellOf(trajectory.end().getY());
+        int stepX = (dx > 0) ? 1 : -1;
+        int stepY = (dy > 0) ? 1 : -1;
+        double tDeltaX = (dx == 0) ? Double.POSITIVE_INFINITY
+                                    : this.cellSize / Math.abs(dx);
+        double tDeltaY = (dy == 0) ? Double.POSITIVE_INFINITY
+                                    : this.cellSize / Math.abs(dy);
+        double tMaxX = firstBoundary(x0, dx, cellX);
+        double tMaxY = firstBoundary(y0, dy, cellY);
+        int reach = (int) Math.ceil(radius / this.cellSize);
+        // walks over the cells the trajectory crosses.
+        while (true) {
+            // goes over the cells around the current cell within the radius.
+            for (int x = cellX - reach; x <= cellX + reach; x++) {
+                for (int y = cellY - reach; y <= cellY + reach; y++) {
+                    testCell(x, y, stamp);
+                }
+            }
+            // checks if this is the last cell of the trajectory.
+            if (cellX == endX && cellY == endY) {
+                break;
+            }
+            double tExit = Math.min(tMaxX, tMaxY);
+            // checks if the trajectory leaves the current cell at all.
+            if (tExit > 1) {
+                break;
+            }
+            // checks if the closest hit is before the end of this cell.
+            if (curSearch.minTime() < tExit - TIME_EPSILON) {
+                break;
+            }
+            // checks which cell border is crossed first.
+            if (tMaxX < tMaxY) {
+                cellX += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cellY += stepY;
+                tMaxY += tDeltaY;
+            }
+        }
+        return curSearch.result();
+    }
+
+    /**
+     * Tests the entries of a cell that weren't tested in this query yet.
+     *
+     * @param x     the x index of the cell.
+     * @param y     the y index of the cell.
+     * @param stamp the stamp of this query.
+     */
+    private void testCell(int x, int y, int stamp) {
+        List<Entry> cell = this.cells.get(key(x, y));
+        // checks if there are no collidables in this cell.
+        if (cell == null) {
+            return;
+        }
+        for (int i = 0; i < cell.size(); i++) {
+            Entry entry = cell.get(i);
+            // checks if the entry wasn't tested in this query yet.
+            if (entry.stamp != stamp) {
+                entry.stamp = stamp;
+                this.search.test(entry.c, entry.order);
+            }
+        }
+    }
+
+    /**
+     * Calculates the parametric distance to the first cell border on an axis.
+     *
+     * @param origin the coordinate of the start of the trajectory.
+     * @param delta  the length of the trajectory on that axis.
+     * @param cell   the index of the starting cell on that axis.
+     * @return the parametric distance to the first border.
+     */
+    private double firstBoundary(double origin, double delta, int cell) {
+        // checks if the trajectory doesn't move on this axis.
+        if (delta == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double border = (delta > 0) ? (cell + 1) * this.cellSize
+                                    : cell * this.cellSize;
+        return (border - origin) / delta;
+    }
+
+    /**
+     * Adds an entry to all the cells that its rectangle overlaps.
+     *
+     * @param entry the entry.
+     */
+    private void bucket(Entry entry) {
+        Rectangle rect = entry.c.getCollisionRectangle();
+        entry.rect = rect;
+        entry.minCellX = cellOf(rect.getLeftX() - PADDING);
+        entry.minCellY = cellOf(rect.getUpperY() - PADDING);
+        entry.maxCellX = cellOf(rect.getRightX() + PADDING);
+        entry.maxCellY = cellOf(rect.getLowerY() + PADDING);
+        long numOfCells = (long) (entry.maxCellX - entry.minCellX + 1)
+                            * (entry.maxCellY - entry.minCellY + 1);
+        // checks if the rectangle covers too many cells to be hashed.
+        if (numOfCells > MAX_CELLS_PER_ENTRY) {
+            entry.isOversized = true;
+            this.oversized.add(entry);
+            return;
+        }
+        entry.isOversized = false;
+        for (int x = entry.minCellX; x <= entry.maxCellX; x++) {
+            for (int y = entry.minCellY; y <= entry.maxCellY; y++) {
+                List<Entry> cell = this.cells.get(key(x, y));
+                // checks if the cell doesn't exist yet.
+                if (cell == null) {
+                    cell = new ArrayList<>();
+                    this.cells.put(key(x, y), cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from all the cells it was added to.
+     *
+     * @param entry the entry.
+     */
+    private void unbucket(Entry entry) {
+        // checks if the entry is kept outside of the cells.
+        if (entry.isOversized) {
+            this.oversized.remove(entry);
+            return;
+        }
+        for (int x = entry.minCellX; x <= entry.maxCellX; x++) {
+            for (int y = entry.minCellY; y <= entry.maxCellY; y++) {
+                long cellKey = key(x, y);
+                List<Entry> cell = this.cells.get(cellKey);
+                cell.remove(entry);
+                // checks if the cell is left empty.
+                if (cell.isEmpty()) {
+                    this.cells.remove(cellKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the cell containing a coordinate.
+     *
+     * @param coordinate the coordinate.
+     * @return the index of the cell.
+     */
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / this.cellSize);
+    }
+
+    /**
+     * Packs the indexes of a cell into a single hash key.
+     *
+     * @param x the x index of the cell.
+     * @param y the y index of the cell.
+     * @return the key of the cell.
+     */
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    /**
+     * Gets a new stamp that marks the entries tested by a single query.
+     *
+     * @return the stamp.
+     */
+    private int nextStamp() {
+        this.queryStamp++;
+        return this.queryStamp;
+    }
+
+    /**
+     * A collidable in the grid, with the cells it was hashed into.
+     */
+    private static class Entry {
+        private Collidable c;
+        private int order;
+        private int stamp;
+        private Rectangle rect;
+        private boolean isOversized;
+        private int minCellX;
+        private int minCellY;
+        private int maxCellX;
+        private int maxCellY;
+
+        /**
+         * Instantiates a new entry.
+         *
+         * @param c     the collidable.
+         * @param order the order in which the collidable was added.
+         */
+        Entry(Collidable c, int order) {
+            this.c = c;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Gets the number of collidables whose geometry was tested by the last
+     * closest collision query.
+     *
+     * @return the number of tested collidables.
+     */
+    @Override
+    public int lastTestedCount() {
+        return this.search.tested();
+    }
+}
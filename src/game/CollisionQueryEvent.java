@@ -0,0 +1,43 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The flight recorder event of a closest collision query made through the
+ * game environment.
+ * @author Max Shabs
+ */
+@Name("arkanoid.CollisionQuery")
+@Label("Collision Query")
+@Category({"Arkanoid", "Collision"})
+@Description("A closest collision query of a trajectory")
+@StackTrace(false)
+@Enabled(false)
+@Threshold("20 us")
+class CollisionQueryEvent extends Event {
+    @Label("Radius")
+    @Description("The radius swept along the trajectory, 0 for a ray")
+    double radius;
+
+    @Label("Mask")
+    @Description("The collision layers the query tests")
+    int mask;
+
+    @Label("Cached")
+    @Description("The query went through a coherence cache")
+    boolean cached;
+
+    @Label("Candidates Tested")
+    @Description("The collidables whose geometry was tested")
+    int candidates;
+
+    @Label("Hit")
+    boolean hit;
+}
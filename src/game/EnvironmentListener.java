@@ -0,0 +1,33 @@
+package game;
+
+import collision.Collidable;
+
+/**
+ * The interface Environment listener, notified when the collidables of the
+ * game environment change.
+ * @author Max Shabs
+ */
+public interface EnvironmentListener {
+    /**
+     * This method is called after a collidable is added to the environment.
+     *
+     * @param c the collidable.
+     */
+    void collidableAdded(Collidable c);
+
+    /**
+     * This method is called after a collidable is removed from the
+     * environment.
+     *
+     * @param c the collidable.
+     */
+    void collidableRemoved(Collidable c);
+
+    /**
+     * This method is called after the collision rectangle of a collidable
+     * in the environment has changed.
+     *
+     * @param c the collidable.
+     */
+    void collidableMoved(Collidable c);
+}
@@ -0,0 +1,121 @@
+package game;
+
+import collision.HitListener;
+import collision.HitNotifier;
+import sprites.DrawLayers;
+import sprites.Sprite;
+import sprites.SpriteCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a buffer of changes made during a frame, defined by the
+ * commands in the order they were queued. Listeners like the block and ball
+ * removers queue their changes here instead of changing the sprites or the
+ * hit listeners while those are being iterated, and the game level applies
+ * them at one point of the frame, so the iterations don't need copies.
+ * @author Max Shabs
+ */
+public class FrameCommandBuffer {
+    private static final int ADD_SPRITE = 0;
+    private static final int REMOVE_SPRITE = 1;
+    private static final int REMOVE_HIT_LISTENER = 2;
+    private List<Command> commands;
+
+    /**
+     * Instantiates a new empty buffer.
+     */
+    public FrameCommandBuffer() {
+        this.commands = new ArrayList<>();
+    }
+
+    /**
+     * Queues adding a sprite, in the draw layer of its kind, which is the
+     * texts layer for a sprite that isn't one of the game's own kinds.
+     *
+     * @param s the sprite.
+     */
+    public void addSprite(Sprite s) {
+        addSprite(s, DrawLayers.of(s));
+    }
+
+    /**
+     * Queues adding a sprite in a draw layer.
+     *
+     * @param s     the sprite.
+     * @param layer the draw layer, as one of DrawLayers.
+     */
+    public void addSprite(Sprite s, int layer) {
+        this.commands.add(new Command(ADD_SPRITE, s, layer, null, null));
+    }
+
+    /**
+     * Queues removing a sprite.
+     *
+     * @param s the sprite.
+     */
+    public void removeSprite(Sprite s) {
+        this.commands.add(new Command(REMOVE_SPRITE, s, 0, null, null));
+    }
+
+    /**
+     * Queues removing a hit listener from a notifier.
+     *
+     * @param notifier the hit notifier.
+     * @param hl       the hit listener.
+     */
+    public void removeHitListener(HitNotifier notifier, HitListener hl) {
+        this.commands.add(new Command(REMOVE_HIT_LISTENER, null, 0,
+                                        notifier, hl));
+    }
+
+    /**
+     * Applies the queued commands in their order and empties the buffer.
+     *
+     * @param sprites the sprite collection the sprite commands apply to.
+     */
+    public void apply(SpriteCollection sprites) {
+        // goes over the queued commands.
+        for (Command command : this.commands) {
+            // checks which change the command makes.
+            if (command.kind == ADD_SPRITE) {
+                sprites.addSprite(command.sprite, command.layer);
+            } else if (command.kind == REMOVE_SPRITE) {
+                sprites.removeSprite(command.sprite);
+            } else {
+                command.notifier.removeHitListener(command.listener);
+            }
+        }
+        this.commands.clear();
+    }
+
+    /**
+     * A queued change.
+     */
+    private static class Command {
+        private int kind;
+        private Sprite sprite;
+        private int layer;
+        private HitNotifier notifier;
+        private HitListener listener;
+
+        /**
+         * Instantiates a new command.
+         *
+         * @param kind     the kind of the change.
+         * @param sprite   the sprite, for the sprite commands.
+         * @param layer    the draw layer, for adding a sprite.
+         * @param notifier the notifier, for the hit listener commands.
+         * @param listener the listener, for the hit listener commands.
+         */
+        Command(int kind, Sprite sprite, int layer, HitNotifier notifier,
+                HitListener listener) {
+            this.kind = kind;
+            this.sprite = sprite;
+            this.layer = layer;
+            this.notifier = notifier;
+            this.listener = listener;
+        }
+    }
+}
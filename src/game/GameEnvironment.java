@@ -1,25 +1,147 @@
 package game;
 
+import animation.FrameProfiler;
+import collision.AabbTree;
 import collision.Collidable;
+import collision.CoherenceCache;
+import collision.CollidableStore;
+import collision.CollisionIndex;
 import collision.CollisionInfo;
+import collision.CollisionLayers;
+import collision.CompositeCollidable;
+import collision.CollisionSnapshot;
+import collision.SpatialHashGrid;
 import geometry.Line;
-import geometry.Point;
+import geometry.Rectangle;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Represents the game environment, defined by a collidables list.
+ * Represents the game environment, defined by a store of the collidables
+ * and a collision index of the collidables used for the collision queries.
+ * The store keeps the collidables in primitive arrays with alive bits, so
+ * removing a collidable is O(1), and it can also be the index itself. The
+ * coherence caches of the balls are invalidated here, since every change
+ * of the collidables goes through the environment. The collision queries
+ * made through the environment may be timed by a frame profiler, and are
+ * committed as flight recorder events while a recording takes them.
  * @author Max Shabs
  */
 public class GameEnvironment {
-    private List<Collidable> collideObjects;
+    private static final double CELL_SIZE = 50;
+    private static EventType queryType;
+    private CollidableStore store;
+    private CollisionIndex index;
+    private List<EnvironmentListener> listeners;
+    private List<CoherenceCache> caches;
+    private double thinnest;
+    private FrameProfiler profiler;
 
     /**
-     * Instantiates a new game environment.
+     * Instantiates a new game environment, with the collision index chosen
+     * in the game settings.
      */
     public GameEnvironment() {
-        collideObjects = new ArrayList<>();
+        this.store = new CollidableStore();
+        this.index = createIndex(GameSettings.collisionIndex(), this.store);
+        this.listeners = new ArrayList<>();
+        this.caches = new ArrayList<>();
+        this.thinnest = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Instantiates a new game environment with a given collision index.
+     *
+     * @param index the collision index.
+     */
+    public GameEnvironment(CollisionIndex index) {
+        this.store = new CollidableStore();
+        this.index = index;
+        this.listeners = new ArrayList<>();
+        this.caches = new ArrayList<>();
+        this.thinnest = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Adds a listener that is notified when the collidables change.
+     *
+     * @param l the listener.
+     */
+    public void addEnvironmentListener(EnvironmentListener l) {
+        this.listeners.add(l);
+    }
+
+    /**
+     * Sets the frame profiler that times the collision queries.
+     *
+     * @param frameProfiler the profiler, null to stop timing the queries.
+     */
+    public void setProfiler(FrameProfiler frameProfiler) {
+        this.profiler = frameProfiler;
+    }
+
+    /**
+     * Creates a coherence cache over the collidables, which is invalidated
+     * by the environment whenever a collidable changes inside its bound.
+     *
+     * @return the cache.
+     */
+    public CoherenceCache createCoherenceCache() {
+        CoherenceCache cache = new CoherenceCache(this.store);
+        this.caches.add(cache);
+        return cache;
+    }
+
+    /**
+     * Releases a coherence cache that is no longer used, for example the
+     * cache of a removed ball.
+     *
+     * @param cache the cache.
+     */
+    public void releaseCoherenceCache(CoherenceCache cache) {
+        int i = this.caches.indexOf(cache);
+        // checks if the cache was created by this environment.
+        if (i >= 0) {
+            int last = this.caches.size() - 1;
+            this.caches.set(i, this.caches.get(last));
+            this.caches.remove(last);
+        }
+    }
+
+    /**
+     * Invalidates the coherence caches whose bounds a rectangle overlaps.
+     *
+     * @param rect the rectangle of the collidable that changed.
+     */
+    private void invalidateCaches(Rectangle rect) {
+        // goes over the caches.
+        for (int i = 0; i < this.caches.size(); i++) {
+            this.caches.get(i).invalidate(rect);
+        }
+    }
+
+    /**
+     * Creates a collision index by its name.
+     *
+     * @param name  the name of the index, "tree", "scan" or "grid".
+     * @param store the store of the collidables, which is the "scan" index.
+     * @return the collision index, a grid if the name is unknown.
+     */
+    private static CollisionIndex createIndex(String name,
+                                              CollidableStore store) {
+        // checks if the dynamic tree was chosen.
+        if (name.equals("tree")) {
+            return new AabbTree();
+        }
+        // checks if the linear scan of the store was chosen.
+        if (name.equals("scan")) {
+            return store;
+        }
+        return new SpatialHashGrid(CELL_SIZE);
     }
 
     /**
@@ -28,16 +150,164 @@ public class GameEnvironment {
      * @param c is the collidable we want to add.
      */
     public void addCollidable(Collidable c) {
-        this.collideObjects.add(c);
+        this.store.insert(c);
+        // checks if the index is separate from the store.
+        if (this.index != this.store) {
+            this.index.insert(c);
+        }
+        invalidateCaches(c.getCollisionRectangle());
+        fitThinnest(c);
+        // notifies the listeners about the new collidable.
+        for (EnvironmentListener l : this.listeners) {
+            l.collidableAdded(c);
+        }
+    }
+
+    /**
+     * Removes a collidable from the environment.
+     *
+     * @param c is the collidable we want to remove.
+     */
+    public void removeCollidable(Collidable c) {
+        // checks if the collidable isn't in the environment.
+        if (!this.store.contains(c)) {
+            return;
+        }
+        this.store.remove(c);
+        // checks if the index is separate from the store.
+        if (this.index != this.store) {
+            this.index.remove(c);
+        }
+        invalidateCaches(c.getCollisionRectangle());
+        // notifies the listeners about the removed collidable.
+        for (EnvironmentListener l : this.listeners) {
+            l.collidableRemoved(c);
+        }
+    }
+
+    /**
+     * Notifies the environment that the collision rectangle of a collidable
+     * has changed, for example after the paddle moved.
+     *
+     * @param c is the collidable that moved.
+     */
+    public void updateCollidable(Collidable c) {
+        this.store.update(c);
+        // checks if the index is separate from the store.
+        if (this.index != this.store) {
+            this.index.update(c);
+        }
+        invalidateCaches(c.getCollisionRectangle());
+        fitThinnest(c);
+        // notifies the listeners about the moved collidable.
+        for (EnvironmentListener l : this.listeners) {
+            l.collidableMoved(c);
+        }
+    }
+
+    /**
+     * Notifies the listeners that a part of a composite collidable changed,
+     * for example a tile that was removed from a tile map. The collidable
+     * itself stays in the index, and the listeners are given the part, so
+     * only the area of the part is affected.
+     *
+     * @param part the part that changed.
+     */
+    public void updatePart(Collidable part) {
+        invalidateCaches(part.getCollisionRectangle());
+        // notifies the listeners about the changed part.
+        for (EnvironmentListener l : this.listeners) {
+            l.collidableMoved(part);
+        }
+    }
+
+    /**
+     * Gets the smallest width or height of the collidables (or of their
+     * parts) that were in the environment. It never grows when collidables
+     * are removed, so it may be smaller than the thinnest one left.
+     *
+     * @return the thinnest side, infinity if nothing was added.
+     */
+    public double getThinnestSide() {
+        return this.thinnest;
+    }
+
+    /**
+     * Shrinks the thinnest side to the one of a collidable if it is thinner.
+     *
+     * @param c the collidable.
+     */
+    private void fitThinnest(Collidable c) {
+        double side;
+        // checks if the collidable is made of parts.
+        if (c instanceof CompositeCollidable) {
+            side = ((CompositeCollidable) c).thinnestPart();
+        } else {
+            Rectangle rect = c.getCollisionRectangle();
+            side = Math.min(rect.getWidth(), rect.getHeight());
+        }
+        this.thinnest = Math.min(this.thinnest, side);
+    }
+
+    /**
+     * Compacts the slots of the collidables removed since the last call.
+     * Removing a collidable is O(1), and this runs once a frame.
+     */
+    public void compact() {
+        this.store.compact();
+    }
+
+    /**
+     * Gets the closest collision of every trajectory in a batch, testing all
+     * the trajectories against each collidable while it is in the cache.
+     * Trajectory i goes from (x0[i], y0[i]) to (x1[i], y1[i]) and is swept
+     * by a circle of radius[i], and its result is the same as the one of
+     * getClosestCollision with the layers of mask[i].
+     *
+     * @param x0      the x coordinates of the starts of the trajectories.
+     * @param y0      the y coordinates of the starts of the trajectories.
+     * @param x1      the x coordinates of the ends of the trajectories.
+     * @param y1      the y coordinates of the ends of the trajectories.
+     * @param radius  the radiuses of the moving objects, 0 for a point.
+     * @param mask    the collision layers of the trajectories.
+     * @param count   the number of trajectories.
+     * @param results the closest collision of every trajectory, null if
+     *                there isn't one.
+     */
+    public void getClosestCollisions(double[] x0, double[] y0, double[] x1,
+                                     double[] y1, double[] radius, int[] mask,
+                                     int count, CollisionInfo[] results) {
+        FrameProfiler p = this.profiler;
+        // checks if the queries are timed.
+        if (p != null) {
+            p.begin(FrameProfiler.COLLISION);
+        }
+        this.store.closestCollisions(x0, y0, x1, y1, radius, mask, count,
+                                    results);
+        // checks if the queries are timed.
+        if (p != null) {
+            p.end(FrameProfiler.COLLISION);
+        }
+    }
+
+    /**
+     * Brings a read-only snapshot of the collidables up to date, in place,
+     * so it can be queried from several threads while the environment isn't
+     * changed.
+     *
+     * @param snapshot the snapshot.
+     */
+    public void snapshot(CollisionSnapshot snapshot) {
+        this.store.snapshot(snapshot);
     }
 
     /**
      * Gets a lis of the collidable objects.
      *
-     * @return the collidable objects list.
+     * @return the collidable objects list, which can't be modified.
      */
     public List<Collidable> getCollideObjects() {
-        return this.collideObjects;
+        return Collections.unmodifiableList(this.store.toList());
     }
 
     /**
@@ -47,37 +317,104 @@ public class GameEnvironment {
      * @return the closest collision info.
      */
     public CollisionInfo getClosestCollision(Line trajectory) {
-        List<Point> colPoints = new ArrayList<>();
-        List<Collidable> colObjects = new ArrayList<>();
-        List<Collidable> collideObjectsCopy =
-                                        new ArrayList<>(this.collideObjects);
-        Point curInter;
-        // goes over all the collidable objects.
-        for (Collidable col: collideObjectsCopy) {
-            curInter = trajectory.closestIntersectionToStartOfLine(
-                                            col.getCollisionRectangle());
-            // checks if there is an intersection.
-            if (curInter != null) {
-                colPoints.add(curInter);
-                colObjects.add(col);
-            }
+        return getClosestCollision(trajectory, 0, CollisionLayers.ALL);
+    }
+
+    /**
+     * Gets the closest collision of a circle moving along a trajectory, if
+     * there isn't returns null. The collision point is the contact point on
+     * the collidable, and the info holds the time of impact and the normal.
+     *
+     * @param trajectory the trajectory of the center of the circle.
+     * @param radius     the radius of the circle.
+     * @return the closest collision info.
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, double radius) {
+        return getClosestCollision(trajectory, radius, CollisionLayers.ALL);
+    }
+
+    /**
+     * Gets the closest collision of a circle moving along a trajectory with
+     * the collidables of some collision layers, if there isn't returns null.
+     * The other collidables are skipped before their geometry is tested.
+     *
+     * @param trajectory the trajectory of the center of the circle.
+     * @param radius     the radius of the circle, 0 for a point.
+     * @param mask       the collision layers, as bits of CollisionLayers.
+     * @return the closest collision info.
+     */
+    public CollisionInfo getClosestCollision(Line trajectory, double radius,
+                                             int mask) {
+        return getClosestCollision(null, trajectory, radius, mask);
+    }
+
+    /**
+     * Gets the closest collision of a circle moving along a trajectory with
+     * the collidables of some collision layers, through a coherence cache
+     * created by this environment, if there isn't returns null.
+     *
+     * @param cache      the coherence cache, null to query the index.
+     * @param trajectory the trajectory of the center of the circle.
+     * @param radius     the radius of the circle, 0 for a point.
+     * @param mask       the collision layers, as bits of CollisionLayers.
+     * @return the closest collision info.
+     */
+    public CollisionInfo getClosestCollision(CoherenceCache cache,
+                                             Line trajectory, double radius,
+                                             int mask) {
+        FrameProfiler p = this.profiler;
+        // checks if the query is timed.
+        if (p != null) {
+            p.begin(FrameProfiler.COLLISION);
+        }
+        CollisionQueryEvent event = null;
+        // checks if a flight recording may take the query.
+        if (FlightRecorder.isInitialized() && queryEventsEnabled()) {
+            event = new CollisionQueryEvent();
+            event.begin();
+        }
+        CollisionInfo info;
+        int tested;
+        // checks if the query goes through a coherence cache.
+        if (cache != null) {
+            info = cache.closestCollision(trajectory, radius, mask);
+            tested = cache.lastTestedCount();
+        } else {
+            info = this.index.closestCollision(trajectory, radius, mask);
+            tested = this.index.lastTestedCount();
         }
-        // checks if there were any collisions.
-        if (colPoints.isEmpty()) {
-            return null;
-        }
-        Point closestPoint = colPoints.get(0);
-        Collidable closestCol = colObjects.get(0);
-        double minDistance = trajectory.start().distance(closestPoint);
-        // goes over the rest of the list.
-        for (int i = 1; i < colPoints.size(); i++) {
-            // checks if the current collision point is closer to the trajectory
-            if (minDistance > trajectory.start().distance(colPoints.get(i))) {
-                closestPoint = colPoints.get(i);
-                closestCol = colObjects.get(i);
-                minDistance = trajectory.start().distance(closestPoint);
+        // checks if the query is committed to a flight recording.
+        if (event != null) {
+            event.end();
+            // checks if the query was slow enough to be recorded.
+            if (event.shouldCommit()) {
+                event.radius = radius;
+                event.mask = mask;
+                event.cached = cache != null;
+                event.candidates = tested;
+                event.hit = info != null;
+                event.commit();
             }
         }
-        return new CollisionInfo(closestPoint, closestCol);
+        // checks if the query is timed.
+        if (p != null) {
+            p.end(FrameProfiler.COLLISION);
+        }
+        return info;
+    }
+
+    /**
+     * Checks if a running flight recording takes collision query events,
+     * without creating an event. The event type is only looked up once the
+     * flight recorder was initialized.
+     *
+     * @return true if collision query events are enabled.
+     */
+    private static boolean queryEventsEnabled() {
+        // checks if the event type wasn't looked up yet.
+        if (queryType == null) {
+            queryType = EventType.getEventType(CollisionQueryEvent.class);
+        }
+        return queryType.isEnabled();
     }
 }
\ No newline at end of file
@@ -40,9 +40,19 @@ public class GameFlow {
         // goes over all the levels
         for (LevelInformation levelInfo : levels) {
 
+            LevelLoadEvent event = new LevelLoadEvent();
+            event.begin();
             GameLevel level = new GameLevel(levelInfo, this.keyboardSensor,
                                             this.animationRunner, this.score);
             level.initialize();
+            event.end();
+            // checks if the load is committed to a flight recording.
+            if (event.shouldCommit()) {
+                event.level = levelInfo.levelName();
+                event.blocks = level.getNumOfBlocks().getValue();
+                event.balls = level.getNumOfBalls().getValue();
+                event.commit();
+            }
             // runs the level until there are no blocks or balls.
             while (level.getNumOfBalls().getValue() > 0
                     && level.getNumOfBlocks().getValue() > 0) {
@@ -61,14 +71,14 @@ public class GameFlow {
                     new KeyPressStoppableAnimation(this.keyboardSensor,
                             KeyboardSensor.SPACE_KEY, winScreen);
             this.animationRunner.run(keyPressStoppable);
-            this.animationRunner.getGui().close();
+            this.animationRunner.close();
         } else {
             Animation loseScreen = new LoseScreen(this.score);
             keyPressStoppable =
                     new KeyPressStoppableAnimation(this.keyboardSensor,
                             KeyboardSensor.SPACE_KEY, loseScreen);
             this.animationRunner.run(keyPressStoppable);
-            this.animationRunner.getGui().close();
+            this.animationRunner.close();
         }
     }
 }
@@ -3,31 +3,47 @@ package game;
 import animation.Animation;
 import animation.AnimationRunner;
 import animation.CountdownAnimation;
+import animation.FrameProfiler;
 import animation.KeyPressStoppableAnimation;
 import animation.PauseScreen;
+import animation.SteppedAnimation;
 import biuoop.DrawSurface;
 import biuoop.GUI;
 import biuoop.KeyboardSensor;
 import collision.BallRemover;
 import collision.BlockRemover;
 import collision.Collidable;
+import collision.CollisionLayers;
+import collision.HitListener;
+import collision.HitNotifier;
 import geometry.Point;
 import geometry.Rectangle;
 import sprites.Ball;
 import sprites.Block;
+import sprites.DirtyRegionRenderer;
+import sprites.DrawLayers;
+import sprites.FramebufferRenderer;
 import sprites.LevelName;
 import sprites.Paddle;
+import sprites.ProfilerOverlay;
 import sprites.ScoreIndicator;
 import sprites.Sprite;
 import sprites.SpriteCollection;
+import sprites.StaticLayer;
+import sprites.StaticSprite;
+import sprites.TileMap;
+import sprites.TiledRenderer;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Represents the game, defined by sprites, collidable objects counters and gui.
  * @author Max Shabs
  */
-public class GameLevel implements Animation {
+public class GameLevel implements SteppedAnimation {
     private static final int BALL_RADIUS = 6;
     private static final double UPPER_BOUNDARY_WIDTH = 800;
     private static final double WIDE_BOUNDARY_HEIGHT = 40;
@@ -44,6 +60,10 @@ public class GameLevel implements Animation {
     private static final int CLEAR_LEVEL_BONUS = 100;
     private static final int STARTING_BALL_X = 397;
     private static final int STARTING_BALL_Y = 550;
+    private static final int SCREEN_WIDTH = 800;
+    private static final int SCREEN_HEIGHT = 600;
+    private static final int SHOWN_FRAMES = 3;
+    private static final int RENDER_THREAD_FRAMES = 4;
     private SpriteCollection sprites;
     private GameEnvironment environment;
     private GUI gui;
@@ -54,6 +74,16 @@ public class GameLevel implements Animation {
     private KeyboardSensor keyboard;
     private boolean running;
     private LevelInformation levelInfo;
+    private ImpactScheduler scheduler;
+    private FrameCommandBuffer commands;
+    private ParallelPhysics physics;
+    private List<Ball> frameBalls;
+    private Substepper substepper;
+    private FrameProfiler profiler;
+    private StaticLayer staticLayer;
+    private DirtyRegionRenderer renderer;
+    private FramebufferRenderer framebuffer;
+    private TiledRenderer tiled;
 
     /**
      * Instantiates a new game.
@@ -67,6 +97,7 @@ public class GameLevel implements Animation {
                      AnimationRunner runner, Counter score) {
         this.sprites = new SpriteCollection();
         this.environment = new GameEnvironment();
+        this.commands = new FrameCommandBuffer();
         this.levelInfo = levelInfo;
         this.gui = runner.getGui();
         this.runner = runner;
@@ -74,6 +105,57 @@ public class GameLevel implements Animation {
         this.numOfBlocks = new Counter();
         this.numOfBalls = new Counter();
         this.score = score;
+        this.sprites.setDrawBatching(GameSettings.drawBatching());
+        this.profiler = runner.getProfiler();
+        this.environment.setProfiler(this.profiler);
+        // checks if the balls should use the event driven scheduler.
+        if (GameSettings.eventPhysics()) {
+            this.scheduler = new ImpactScheduler(this.environment);
+        }
+        // checks if the balls' collisions should be found in parallel.
+        if (GameSettings.parallelBalls()) {
+            this.physics = new ParallelPhysics(this.environment,
+                                                ForkJoinPool.commonPool());
+            this.frameBalls = new ArrayList<>();
+        }
+        int buffers = SHOWN_FRAMES;
+        // checks if more frames are held by the render thread.
+        if (GameSettings.renderThread()) {
+            buffers = RENDER_THREAD_FRAMES;
+        }
+        // checks if the sprites that don't move are drawn into an image.
+        if (GameSettings.staticLayer()) {
+            this.staticLayer = new StaticLayer(SCREEN_WIDTH, SCREEN_HEIGHT,
+                                        runner.getFrameFence(), buffers);
+        }
+        // checks if only the changed regions of the frames are drawn.
+        if (GameSettings.dirtyRegions()) {
+            this.renderer = new DirtyRegionRenderer(SCREEN_WIDTH,
+                                    SCREEN_HEIGHT, runner.getFrameFence(),
+                                    buffers, GameSettings.softwareRaster());
+        } else if (GameSettings.tiledRaster()) {
+            this.tiled = new TiledRenderer(SCREEN_WIDTH, SCREEN_HEIGHT,
+                                    runner.getFrameFence(), buffers);
+        } else if (GameSettings.softwareRaster()) {
+            this.framebuffer = new FramebufferRenderer(SCREEN_WIDTH,
+                                    SCREEN_HEIGHT, runner.getFrameFence(),
+                                    buffers);
+        }
+        // checks if the balls' steps should be split into substeps.
+        if (GameSettings.maxSubsteps() > 1) {
+            this.substepper = new Substepper(this.environment,
+                                            GameSettings.maxSubsteps());
+        }
+    }
+
+    /**
+     * Gets the substepper of the balls, whose metrics show the substeps the
+     * balls take in every frame.
+     *
+     * @return the substepper, null if the balls aren't substepped.
+     */
+    public Substepper getSubstepper() {
+        return this.substepper;
     }
 
     /**
@@ -104,25 +186,55 @@ public class GameLevel implements Animation {
     }
 
     /**
-     * Adds a sprite.
+     * Adds a sprite, which is queued until the end of the frame. A static
+     * sprite is drawn into the static layer instead, if there is one. When
+     * only the changed regions are drawn, the area of the sprite is drawn
+     * in the next frame. The sprite is drawn in the layer of its kind, and
+     * a sprite of any other kind is drawn in the texts layer, over the
+     * balls, so such a sprite should be added with its layer instead.
      *
      * @param s is the sprite.
      */
     public void addSprite(Sprite s) {
-        sprites.addSprite(s);
+        addSprite(s, DrawLayers.of(s));
+    }
+
+    /**
+     * Adds a sprite in a draw layer, like addSprite. The layer only orders
+     * the sprite when the draws are batched.
+     *
+     * @param s     is the sprite.
+     * @param layer the draw layer, as one of DrawLayers.
+     */
+    public void addSprite(Sprite s, int layer) {
+        // checks if the sprite is drawn into the static layer.
+        if (this.staticLayer != null && s instanceof StaticSprite) {
+            this.staticLayer.add((StaticSprite) s);
+            return;
+        }
+        // checks if the area of the sprite is drawn again in the next frame.
+        if (this.renderer != null) {
+            this.renderer.invalidate(s);
+        }
+        commands.addSprite(s, layer);
     }
 
     /**
      * Initializes a new game, creates blocks and ball and adds them to game.
      */
     public void initialize() {
-        this.addSprite(levelInfo.getBackground());
+        // checks if the static sprites are drawn in a layer under the rest.
+        if (this.staticLayer != null) {
+            this.addSprite(this.staticLayer);
+        }
+        this.addSprite(levelInfo.getBackground(), DrawLayers.BACKGROUND);
         ScoreTrackingListener scoreListener = new ScoreTrackingListener(
-                                                            this.score);
+                                                        this.score, this);
         BlockRemover blockRemover = new BlockRemover(this, this.numOfBlocks);
         ScoreIndicator scoreIndicator = new ScoreIndicator(this.score);
         Paddle paddle = new Paddle(gui.getKeyboardSensor(),
                         levelInfo.paddleSpeed(), levelInfo.paddleWidth());
+        paddle.setStepScale(GameSettings.stepScale());
         paddle.addToGame(this);
         // creates the balls and adds them to the game.
         for (int i = 0; i < this.levelInfo.numberOfBalls(); i++) {
@@ -130,6 +242,15 @@ public class GameLevel implements Animation {
                                 STARTING_BALL_Y), BALL_RADIUS, Color.WHITE);
             thisBall.setVelocity(levelInfo.initialBallVelocities().get(i));
             thisBall.setGameEnvironment(environment);
+            thisBall.setSweptCollision(GameSettings.sweptBalls());
+            thisBall.setImpactScheduler(this.scheduler);
+            thisBall.setSubstepper(this.substepper);
+            thisBall.setStepScale(GameSettings.stepScale());
+            // checks if the ball keeps its candidates between frames.
+            if (GameSettings.coherenceCache()) {
+                thisBall.setCoherenceCache(
+                                        environment.createCoherenceCache());
+            }
             thisBall.addToGame(this);
         }
         Rectangle upperRect = new Rectangle(new Point(MINIMAL_X, MINIMAL_Y),
@@ -151,48 +272,140 @@ public class GameLevel implements Animation {
                                             SIDE_BOUNDARY_HEIGHT);
         Block leftBoundary = new Block(leftRect, Color.GRAY);
         Block rightBoundary = new Block(rightRect, Color.GRAY);
+        upperBoundary.setCollisionCategory(CollisionLayers.WALLS);
+        deathBoundary.setCollisionCategory(CollisionLayers.DEATH_ZONE);
+        leftBoundary.setCollisionCategory(CollisionLayers.WALLS);
+        rightBoundary.setCollisionCategory(CollisionLayers.WALLS);
         upperBoundary.addToGame(this);
         deathBoundary.addToGame(this);
         deathBoundary.addHitListener(new BallRemover(this, this.numOfBalls));
         leftBoundary.addToGame(this);
         rightBoundary.addToGame(this);
-        sprites.addSprite(scoreIndicator);
+        this.addSprite(scoreIndicator);
+        List<Block> blocks = levelInfo.blocks();
+        // checks if the blocks should be packed into a tile map.
+        if (GameSettings.tileMaps()) {
+            TileMap map = TileMap.pack(blocks);
+            // checks if the blocks lie on a grid.
+            if (map != null) {
+                map.addToGame(this);
+                map.addHitListener(blockRemover);
+                map.addHitListener(scoreListener);
+                this.numOfBlocks.increase(map.getTileCount());
+                blocks = new ArrayList<>();
+            }
+        }
         // adds the blocks to the game.
-        for (Block block : levelInfo.blocks()) {
+        for (Block block : blocks) {
             block.addToGame(this);
             block.addHitListener(blockRemover);
             block.addHitListener(scoreListener);
             this.numOfBlocks.increase(1);
         }
         this.addSprite(new LevelName(levelInfo));
+        // checks if the profiled phases should be shown.
+        if (this.profiler.isEnabled() && GameSettings.profileOverlay()) {
+            this.addSprite(new ProfilerOverlay(this.profiler,
+                                               this.substepper));
+        }
+        this.commands.apply(this.sprites);
     }
 
     /**
-     * Runs the game, starts the animation loop.
+     * Runs the game, starts the animation loop. If the frames are profiled,
+     * only the frames of the level itself are recorded, and their phases
+     * are printed when the level ends, along with the pacing of the shown
+     * frames and the substeps of the balls if they are substepped.
      */
     public void run() {
         this.runner.run(new CountdownAnimation(2, 3, this.sprites));
         this.running = true;
+        this.profiler.reset();
+        this.runner.getFramePacer().resetStatistics();
+        // checks if the substeps of the countdown should be dropped.
+        if (this.substepper != null) {
+            this.substepper.reset();
+        }
         this.runner.run(this);
+        // checks if the frames were profiled.
+        if (this.profiler.isEnabled()) {
+            this.profiler.dump(System.out, this.levelInfo.levelName());
+            this.runner.getFramePacer().dump(System.out);
+            // checks if the substeps were counted.
+            if (this.substepper != null) {
+                this.substepper.dump(System.out);
+            }
+        }
     }
 
     /**
-     * Removes collidable from the game.
+     * Removes collidable from the game. This isn't queued, so a removed block
+     * can't be hit again in the same frame.
      *
      * @param c the collidable.
      */
     public void removeCollidable(Collidable c) {
-        environment.getCollideObjects().remove(c);
+        environment.removeCollidable(c);
+    }
+
+    /**
+     * Notifies the game that the collision rectangle of a collidable moved.
+     *
+     * @param c the collidable.
+     */
+    public void updateCollidable(Collidable c) {
+        environment.updateCollidable(c);
+    }
+
+    /**
+     * Notifies the game that a part of a composite collidable changed, like
+     * a tile that was removed from a tile map.
+     *
+     * @param part the part.
+     */
+    public void updatePart(Collidable part) {
+        environment.updatePart(part);
+        // checks if the part may be drawn in the static layer.
+        if (this.staticLayer != null) {
+            this.staticLayer.invalidate(part.getCollisionRectangle());
+        }
+        // checks if only the changed regions of the frames are drawn.
+        if (this.renderer != null) {
+            this.renderer.invalidate(part.getCollisionRectangle());
+        }
     }
 
     /**
-     * Removes sprite from the game.
+     * Removes sprite from the game, which is queued until the end of the
+     * frame. A sprite in the static layer is removed from it at once, and
+     * its area is drawn again before the next frame.
      *
      * @param s the sprite.
      */
     public void removeSprite(Sprite s) {
-        sprites.getSpritesList().remove(s);
+        // checks if the area the sprite was drawn in is drawn again.
+        if (this.renderer != null) {
+            this.renderer.invalidate(s);
+        }
+        // checks if the sprite was drawn in the static layer.
+        if (this.staticLayer != null && s instanceof StaticSprite
+                && this.staticLayer.remove((StaticSprite) s)) {
+            return;
+        }
+        commands.removeSprite(s);
     }
+
+    /**
+     * Removes a hit listener from a notifier, which is queued until the end
+     * of the frame so the notifier can keep iterating its listeners.
+     *
+     * @param notifier the hit notifier.
+     * @param hl       the hit listener.
+     */
+    public void removeHitListener(HitNotifier notifier, HitListener hl) {
+        commands.removeHitListener(notifier, hl);
+    }
+
     /**
      * Plays one frame.
      *
@@ -200,8 +413,73 @@ public class GameLevel implements Animation {
      */
     @Override
     public void doOneFrame(DrawSurface d) {
-        this.sprites.drawAllOn(d);
-        this.sprites.notifyAllTimePassed();
+        this.profiler.begin(FrameProfiler.DRAW);
+        // checks if only the changed regions are drawn.
+        if (this.renderer != null) {
+            this.renderer.render(d, this.sprites, 1);
+        } else if (this.tiled != null) {
+            this.tiled.render(d, this.sprites, 1);
+        } else if (this.framebuffer != null) {
+            this.framebuffer.render(d, this.sprites, 1);
+        } else {
+            this.sprites.drawAllOn(d);
+        }
+        this.profiler.end(FrameProfiler.DRAW);
+        tick();
+    }
+
+    /**
+     * Draws the game between its last two ticks.
+     *
+     * @param d     the draw surface
+     * @param alpha how far from the previous tick (0) to the last one (1).
+     */
+    @Override
+    public void render(DrawSurface d, double alpha) {
+        this.profiler.begin(FrameProfiler.DRAW);
+        // checks if only the changed regions are drawn.
+        if (this.renderer != null) {
+            this.renderer.render(d, this.sprites, alpha);
+        } else if (this.tiled != null) {
+            this.tiled.render(d, this.sprites, alpha);
+        } else if (this.framebuffer != null) {
+            this.framebuffer.render(d, this.sprites, alpha);
+        } else {
+            this.sprites.drawAllOn(d, alpha);
+        }
+        this.profiler.end(FrameProfiler.DRAW);
+    }
+
+    /**
+     * Advances the game by a single tick, moving the sprites and applying
+     * the changes of the tick, without drawing.
+     */
+    @Override
+    public void tick() {
+        // checks if the event driven scheduler is used.
+        if (this.scheduler != null) {
+            this.scheduler.beginFrame();
+        }
+        // checks if the substeps of this frame are counted.
+        if (this.substepper != null) {
+            this.substepper.beginFrame();
+        }
+        this.profiler.begin(FrameProfiler.UPDATE);
+        // checks if the balls are moved by the parallel physics phase.
+        if (this.physics != null) {
+            this.frameBalls.clear();
+            this.sprites.notifyAllTimePassed(this.frameBalls);
+            this.physics.step(this.frameBalls);
+        } else {
+            this.sprites.notifyAllTimePassed();
+        }
+        this.profiler.end(FrameProfiler.UPDATE);
+        this.profiler.begin(FrameProfiler.APPLY);
+        // applies the changes queued during this frame and compacts.
+        this.commands.apply(this.sprites);
+        this.sprites.compact();
+        this.environment.compact();
+        this.profiler.end(FrameProfiler.APPLY);
         Animation keyPressStoppable;
         // checks if the user pressed the key p.
         if (this.keyboard.isPressed("p")) {
@@ -0,0 +1,223 @@
+package game;
+
+/**
+ * The game settings, read once from the java system properties so they can
+ * be given on the command line (for example -Darkanoid.collision=tree).
+ * @author Max Shabs
+ */
+public final class GameSettings {
+    private static final double REFERENCE_TICK_RATE = 60;
+    private static final String COLLISION_INDEX =
+            System.getProperty("arkanoid.collision", "grid");
+    private static final boolean SWEPT_BALLS =
+            Boolean.getBoolean("arkanoid.sweptBalls");
+    private static final boolean EVENT_PHYSICS =
+            Boolean.getBoolean("arkanoid.eventPhysics");
+    private static final boolean PARALLEL_BALLS =
+            Boolean.getBoolean("arkanoid.parallelBalls");
+    private static final boolean TILE_MAPS =
+            Boolean.getBoolean("arkanoid.tileMaps");
+    private static final boolean COHERENCE_CACHE =
+            Boolean.getBoolean("arkanoid.coherenceCache");
+    private static final int MAX_SUBSTEPS =
+            Integer.getInteger("arkanoid.maxSubsteps", 1);
+    private static final int TICK_RATE =
+            Integer.getInteger("arkanoid.tickRate", 0);
+    private static final boolean RENDER_THREAD =
+            Boolean.getBoolean("arkanoid.renderThread");
+    private static final boolean STATIC_LAYER =
+            Boolean.getBoolean("arkanoid.staticLayer");
+    private static final boolean DIRTY_REGIONS =
+            Boolean.getBoolean("arkanoid.dirtyRegions");
+    private static final boolean DRAW_BATCHING =
+            Boolean.getBoolean("arkanoid.drawBatching");
+    private static final boolean SOFTWARE_RASTER =
+            Boolean.getBoolean("arkanoid.softwareRaster");
+    private static final boolean TILED_RASTER =
+            Boolean.getBoolean("arkanoid.tiledRaster");
+    private static final boolean PROFILE =
+            Boolean.getBoolean("arkanoid.profile");
+    private static final boolean PROFILE_OVERLAY =
+            Boolean.getBoolean("arkanoid.profileOverlay");
+
+    /**
+     * The settings can't be instantiated.
+     */
+    private GameSettings() {
+    }
+
+    /**
+     * Gets the name of the collision index the game environment uses, "grid"
+     * for the spatial hash grid, "tree" for the dynamic AABB tree or "scan"
+     * for a linear sweep over the collidable store.
+     *
+     * @return the name of the collision index.
+     */
+    public static String collisionIndex() {
+        return COLLISION_INDEX;
+    }
+
+    /**
+     * Checks if the balls collide as swept circles instead of as points.
+     *
+     * @return true if the balls use swept circle collisions.
+     */
+    public static boolean sweptBalls() {
+        return SWEPT_BALLS;
+    }
+
+    /**
+     * Checks if the balls skip the collision queries between impacts, using
+     * the event driven impact scheduler.
+     *
+     * @return true if the impact scheduler is used.
+     */
+    public static boolean eventPhysics() {
+        return EVENT_PHYSICS;
+    }
+
+    /**
+     * Checks if the collision queries of the balls are made in parallel,
+     * before the balls are moved in their order.
+     *
+     * @return true if the parallel physics phase is used.
+     */
+    public static boolean parallelBalls() {
+        return PARALLEL_BALLS;
+    }
+
+    /**
+     * Checks if the blocks of a level that lie on a grid are packed into a
+     * tile map instead of being added one by one.
+     *
+     * @return true if the levels use tile maps.
+     */
+    public static boolean tileMaps() {
+        return TILE_MAPS;
+    }
+
+    /**
+     * Checks if every ball keeps the collision candidates around its
+     * trajectory between frames, instead of querying the whole index.
+     *
+     * @return true if the balls use coherence caches.
+     */
+    public static boolean coherenceCache() {
+        return COHERENCE_CACHE;
+    }
+
+    /**
+     * Gets the most substeps a ball may split its step into in a frame. A
+     * cap of 1 keeps a single step, and a bounce ends it.
+     *
+     * @return the cap of substeps per frame.
+     */
+    public static int maxSubsteps() {
+        return MAX_SUBSTEPS;
+    }
+
+    /**
+     * Gets the number of fixed simulation ticks per second, which are
+     * independent of the frames drawn per second.
+     *
+     * @return the tick rate, 0 to tick once every frame.
+     */
+    public static int tickRate() {
+        return TICK_RATE;
+    }
+
+    /**
+     * Checks if the frames are drawn and shown on a render thread, while the
+     * game is simulated on the main thread.
+     *
+     * @return true if a render thread is used.
+     */
+    public static boolean renderThread() {
+        return RENDER_THREAD;
+    }
+
+    /**
+     * Checks if the sprites that don't move, like the background and the
+     * blocks, are drawn once into an image that is drawn every frame.
+     *
+     * @return true if the static layer is used.
+     */
+    public static boolean staticLayer() {
+        return STATIC_LAYER;
+    }
+
+    /**
+     * Checks if only the regions of the screen that changed since the last
+     * frame are drawn again, into a canvas that keeps the rest.
+     *
+     * @return true if the dirty region renderer is used.
+     */
+    public static boolean dirtyRegions() {
+        return DIRTY_REGIONS;
+    }
+
+    /**
+     * Checks if the draws of a frame are batched and sorted by their layers
+     * and colors, so the color is set as few times as possible.
+     *
+     * @return true if the draws are batched.
+     */
+    public static boolean drawBatching() {
+        return DRAW_BATCHING;
+    }
+
+    /**
+     * Checks if the frames are rasterized in software into the pixels of an
+     * image, which is shown with a single draw.
+     *
+     * @return true if the frames are rasterized in software.
+     */
+    public static boolean softwareRaster() {
+        return SOFTWARE_RASTER;
+    }
+
+    /**
+     * Checks if the frames are rasterized in software by tiles, in parallel
+     * on the common fork join pool.
+     *
+     * @return true if the tiles of the frames are rasterized in parallel.
+     */
+    public static boolean tiledRaster() {
+        return TILED_RASTER;
+    }
+
+    /**
+     * Checks if the phases of the frames are profiled, and printed when a
+     * level ends.
+     *
+     * @return true if the frames are profiled.
+     */
+    public static boolean profile() {
+        return PROFILE;
+    }
+
+    /**
+     * Checks if the profiled phases are shown on the screen while a level
+     * runs, which only applies when the frames are profiled.
+     *
+     * @return true if the profiler overlay is shown.
+     */
+    public static boolean profileOverlay() {
+        return PROFILE_OVERLAY;
+    }
+
+    /**
+     * Gets the part of a velocity that is moved in a single tick. The
+     * velocities are in pixels per frame at 60 frames per second, so the
+     * game has the same speed at every tick rate.
+     *
+     * @return the step scale, 1 when ticking once every frame.
+     */
+    public static double stepScale() {
+        // checks if the game ticks once every frame.
+        if (TICK_RATE <= 0) {
+            return 1;
+        }
+        return REFERENCE_TICK_RATE / TICK_RATE;
+    }
+}
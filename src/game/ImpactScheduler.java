@@ -0,0 +1,250 @@
+package game;
+
+import collision.Collidable;
+import collision.CollisionInfo;
+import geometry.Line;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import geometry.Velocity;
+import sprites.Ball;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Represents an event driven impact scheduler, defined by the environment,
+ * the current frame and a priority queue of the next impact of every ball.
+ * The next impact of a ball is found once, by casting its trajectory far
+ * ahead, and until that frame the ball moves without querying the
+ * environment. A ball's impact is found again only when its velocity
+ * changes, or when a collidable on its path is added, removed or moved.
+ * @author Max Shabs
+ */
+public class ImpactScheduler implements EnvironmentListener {
+    private static final int HORIZON = 120;
+    private static final double DUE_MARGIN = 0.01;
+    private GameEnvironment environment;
+    private PriorityQueue<Event> events;
+    private Map<Ball, Track> tracks;
+    private long frame;
+
+    /**
+     * Instantiates a new impact scheduler and registers it as a listener of
+     * the environment.
+     *
+     * @param environment the game environment.
+     */
+    public ImpactScheduler(GameEnvironment environment) {
+        this.environment = environment;
+        this.events = new PriorityQueue<>();
+        this.tracks = new IdentityHashMap<>();
+        this.frame = 0;
+        environment.addEnvironmentListener(this);
+    }
+
+    /**
+     * Starts a new frame, marking the balls whose impact is in this frame.
+     */
+    public void beginFrame() {
+        this.frame++;
+        // goes over the events that are due until this frame.
+        while (!this.events.isEmpty()
+                && this.events.peek().time <= this.frame + DUE_MARGIN) {
+            Event event = this.events.poll();
+            // checks if the event wasn't replaced by a newer one.
+            if (event.version == event.track.version) {
+                event.track.due = true;
+            }
+        }
+    }
+
+    /**
+     * Checks if a ball may hit something in its step of this frame, so it
+     * has to query the environment.
+     *
+     * @param ball the ball.
+     * @return true if the ball has to query, false if it can just move.
+     */
+    public boolean isImpactDue(Ball ball) {
+        Track track = this.tracks.get(ball);
+        return track == null || track.due;
+    }
+
+    /**
+     * Finds the next impact of a ball from its current position and velocity
+     * and schedules it. This is called after the ball made a full step.
+     *
+     * @param ball the ball.
+     */
+    public void schedule(Ball ball) {
+        Track track = this.tracks.get(ball);
+        // checks if the ball is new to the scheduler.
+        if (track == null) {
+            track = new Track();
+            this.tracks.put(ball, track);
+        }
+        track.version++;
+        track.due = false;
+        Point center = ball.getCenter();
+        Velocity v = ball.getVelocity();
+        track.x0 = center.getX();
+        track.y0 = center.getY();
+        track.dx = v.getDx() * ball.getStepScale() * HORIZON;
+        track.dy = v.getDy() * ball.getStepScale() * HORIZON;
+        track.radius = ball.isSweptCollision() ? ball.getSize() : 0;
+        Line path = new Line(center, new Point(track.x0 + track.dx,
+                                                track.y0 + track.dy));
+        CollisionInfo impact = this.environment.getClosestCollision(path,
+                                        track.radius, ball.getCollisionMask());
+        double impactTime = HORIZON;
+        track.target = null;
+        // checks if there is an impact within the horizon.
+        if (impact != null) {
+            impactTime = impact.collisionTime() * HORIZON;
+            track.target = impact.collisionObject();
+        }
+        this.events.add(new Event(track, this.frame + impactTime));
+    }
+
+    /**
+     * Marks a ball as due, for example after its velocity changed.
+     *
+     * @param ball the ball.
+     */
+    public void invalidate(Ball ball) {
+        Track track = this.tracks.get(ball);
+        // checks if the ball is scheduled.
+        if (track != null) {
+            track.version++;
+            track.due = true;
+        }
+    }
+
+    /**
+     * Stops scheduling a ball that was removed from the game.
+     *
+     * @param ball the ball.
+     */
+    public void remove(Ball ball) {
+        Track track = this.tracks.remove(ball);
+        // checks if the ball was scheduled.
+        if (track != null) {
+            track.version++;
+        }
+    }
+
+    /**
+     * Marks the balls whose path crosses a new collidable as due.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableAdded(Collidable c) {
+        invalidateCrossing(c, false);
+    }
+
+    /**
+     * Marks the balls that were going to hit a removed collidable as due.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableRemoved(Collidable c) {
+        // goes over the scheduled balls.
+        for (Track track : this.tracks.values()) {
+            // checks if the ball was going to hit the collidable.
+            if (!track.due && track.target == c) {
+                track.version++;
+                track.due = true;
+            }
+        }
+    }
+
+    /**
+     * Marks the balls that were going to hit a moved collidable, or whose
+     * path crosses its new position, as due.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableMoved(Collidable c) {
+        invalidateCrossing(c, true);
+    }
+
+    /**
+     * Marks the balls whose path crosses a collidable as due.
+     *
+     * @param c               the collidable.
+     * @param includeTargeted whether to also mark the balls that were going
+     *                        to hit the collidable.
+     */
+    private void invalidateCrossing(Collidable c, boolean includeTargeted) {
+        Rectangle rect = c.getCollisionRectangle();
+        // goes over the scheduled balls.
+        for (Track track : this.tracks.values()) {
+            // checks if the ball is already going to query.
+            if (track.due) {
+                continue;
+            }
+            double entry = RayHit.entryTime(track.x0, track.y0, track.dx,
+                    track.dy, rect.getLeftX() - track.radius,
+                    rect.getUpperY() - track.radius,
+                    rect.getRightX() + track.radius,
+                    rect.getLowerY() + track.radius);
+            // checks if the path crosses the collidable or targeted it.
+            if (entry <= 1 || (includeTargeted && track.target == c)) {
+                track.version++;
+                track.due = true;
+            }
+        }
+    }
+
+    /**
+     * The scheduling state of a ball, with the path its impact was found on.
+     */
+    private static class Track {
+        private int version;
+        private boolean due;
+        private Collidable target;
+        private double x0;
+        private double y0;
+        private double dx;
+        private double dy;
+        private double radius;
+    }
+
+    /**
+     * A scheduled impact of a ball, which is stale if the ball's track has a
+     * newer version.
+     */
+    private static class Event implements Comparable<Event> {
+        private Track track;
+        private int version;
+        private double time;
+
+        /**
+         * Instantiates a new event.
+         *
+         * @param track the track of the ball.
+         * @param time  the frame of the impact.
+         */
+        Event(Track track, double time) {
+            this.track = track;
+            this.version = track.version;
+            this.time = time;
+        }
+
+        /**
+         * Compares the events by their impact frame.
+         *
+         * @param other the other event.
+         * @return a negative number if this event is earlier.
+         */
+        @Override
+        public int compareTo(Event other) {
+            return Double.compare(this.time, other.time);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The flight recorder event of creating and initializing a level.
+ * @author Max Shabs
+ */
+@Name("arkanoid.LevelLoad")
+@Label("Level Load")
+@Category({"Arkanoid", "Game"})
+@Enabled(false)
+class LevelLoadEvent extends Event {
+    @Label("Level")
+    String level;
+
+    @Label("Blocks")
+    int blocks;
+
+    @Label("Balls")
+    int balls;
+}
@@ -0,0 +1,340 @@
+package game;
+
+import collision.Collidable;
+import collision.CollisionInfo;
+import collision.CollisionSnapshot;
+import geometry.Line;
+import geometry.Rectangle;
+import sprites.Ball;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents a parallel physics phase for the balls, defined by the
+ * environment, a fork join pool, a snapshot of the environment and the
+ * changes made to the environment while the balls are moved. The collision
+ * queries of all the balls are made in parallel against the read-only
+ * snapshot, which is only copied again when the environment changed, as
+ * batches of rays so every chunk of balls walks the snapshot once with its
+ * own batch, and then the balls are moved one by one in their order, like
+ * in the serial loop. A ball whose trajectory crosses a collidable that an
+ * earlier ball removed or moved in this frame queries the environment
+ * again, so the hits, scores and positions are exactly the ones of the
+ * serial loop.
+ * @author Max Shabs
+ */
+public class ParallelPhysics implements EnvironmentListener {
+    private static final int MIN_PARALLEL_BALLS = 16;
+    private static final int SPLIT_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final double DIRTY_MARGIN = 1;
+    private GameEnvironment environment;
+    private ForkJoinPool pool;
+    private CollisionSnapshot snapshot;
+    private boolean tracking;
+    private List<Collidable> changed;
+    private double[] dirty;
+    private int dirtyCount;
+    private double[] x0;
+    private double[] y0;
+    private double[] x1;
+    private double[] y1;
+    private double[] radius;
+    private int[] mask;
+    private int[] rayBall;
+
+    /**
+     * Instantiates a new parallel physics phase and registers it as a
+     * listener of the environment.
+     *
+     * @param environment the game environment.
+     * @param pool        the pool the collision queries run on.
+     */
+    public ParallelPhysics(GameEnvironment environment, ForkJoinPool pool) {
+        this.environment = environment;
+        this.pool = pool;
+        this.snapshot = new CollisionSnapshot();
+        this.tracking = false;
+        this.changed = new ArrayList<>();
+        this.dirty = new double[INITIAL_CAPACITY];
+        this.dirtyCount = 0;
+        this.x0 = new double[INITIAL_CAPACITY];
+        this.y0 = new double[INITIAL_CAPACITY];
+        this.x1 = new double[INITIAL_CAPACITY];
+        this.y1 = new double[INITIAL_CAPACITY];
+        this.radius = new double[INITIAL_CAPACITY];
+        this.mask = new int[INITIAL_CAPACITY];
+        this.rayBall = new int[INITIAL_CAPACITY];
+        environment.addEnvironmentListener(this);
+    }
+
+    /**
+     * Moves the balls one step, in their order. The other sprites must
+     * already have been notified that time passed in this frame.
+     *
+     * @param balls the balls, in the order of the sprite collection.
+     */
+    public void step(List<Ball> balls) {
+        int n = balls.size();
+        // checks if there are too few balls to be worth the fork join.
+        if (n < MIN_PARALLEL_BALLS) {
+            // goes over the balls.
+            for (Ball ball : balls) {
+                ball.timePassed();
+            }
+            return;
+        }
+        int rays = gatherRays(balls);
+        CollisionInfo[] plans = new CollisionInfo[rays];
+        int chunks = (rays + SPLIT_SIZE - 1) / SPLIT_SIZE;
+        this.environment.snapshot(this.snapshot);
+        this.snapshot.setWorkers(chunks);
+        // checks if any ball queries the environment.
+        if (chunks > 0) {
+            this.pool.invoke(new PlanTask(this.snapshot, this.x0, this.y0,
+                    this.x1, this.y1, this.radius, this.mask, plans, rays, 0,
+                    chunks));
+        }
+        this.changed.clear();
+        this.dirtyCount = 0;
+        this.tracking = true;
+        try {
+            int ray = 0;
+            // goes over the balls in their order.
+            for (int i = 0; i < n; i++) {
+                Ball ball = balls.get(i);
+                // checks if the ball's collision was planned.
+                if (ray < rays && this.rayBall[ray] == i) {
+                    // checks if the planned collision is still the right one.
+                    if (ball.needsCollisionQuery()
+                            && isStillValid(ball, plans[ray])) {
+                        ball.setPlannedCollision(plans[ray]);
+                    }
+                    ray++;
+                }
+                ball.timePassed();
+            }
+        } finally {
+            this.tracking = false;
+        }
+    }
+
+    /**
+     * Writes the next trajectories of the balls that query the environment
+     * into the rays arrays.
+     *
+     * @param balls the balls.
+     * @return the number of rays.
+     */
+    private int gatherRays(List<Ball> balls) {
+        int n = balls.size();
+        // checks if the rays arrays are too small.
+        if (n > this.x0.length) {
+            this.x0 = new double[n];
+            this.y0 = new double[n];
+            this.x1 = new double[n];
+            this.y1 = new double[n];
+            this.radius = new double[n];
+            this.mask = new int[n];
+            this.rayBall = new int[n];
+        }
+        int rays = 0;
+        // goes over the balls.
+        for (int i = 0; i < n; i++) {
+            Ball ball = balls.get(i);
+            // checks if the ball's step queries the environment.
+            if (ball.needsCollisionQuery()) {
+                Line trajectory = ball.nextTrajectory();
+                this.x0[rays] = trajectory.start().getX();
+                this.y0[rays] = trajectory.start().getY();
+                this.x1[rays] = trajectory.end().getX();
+                this.y1[rays] = trajectory.end().getY();
+                this.radius[rays] = ball.collisionRadius();
+                this.mask[rays] = ball.getCollisionMask();
+                this.rayBall[rays] = i;
+                rays++;
+            }
+        }
+        return rays;
+    }
+
+    /**
+     * Records a collidable added while the balls are moved.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableAdded(Collidable c) {
+        record(c);
+    }
+
+    /**
+     * Records a collidable removed while the balls are moved.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableRemoved(Collidable c) {
+        record(c);
+    }
+
+    /**
+     * Records a collidable moved while the balls are moved.
+     *
+     * @param c the collidable.
+     */
+    @Override
+    public void collidableMoved(Collidable c) {
+        record(c);
+    }
+
+    /**
+     * Checks if a collision planned on the snapshot is still the one the
+     * environment gives, meaning no changed collidable was planned to be hit
+     * and no changed rectangle is near the ball's trajectory.
+     *
+     * @param ball the ball.
+     * @param plan the planned collision, or null.
+     * @return true if the plan can be used.
+     */
+    private boolean isStillValid(Ball ball, CollisionInfo plan) {
+        // checks if nothing changed since the snapshot.
+        if (this.dirtyCount == 0) {
+            return true;
+        }
+        // checks if the planned collidable itself was changed.
+        if (plan != null && this.changed.contains(plan.collisionObject())) {
+            return false;
+        }
+        Line trajectory = ball.nextTrajectory();
+        double margin = ball.collisionRadius() + DIRTY_MARGIN;
+        double x0 = trajectory.start().getX();
+        double y0 = trajectory.start().getY();
+        double x1 = trajectory.end().getX();
+        double y1 = trajectory.end().getY();
+        double fromX = Math.min(x0, x1) - margin;
+        double fromY = Math.min(y0, y1) - margin;
+        double toX = Math.max(x0, x1) + margin;
+        double toY = Math.max(y0, y1) + margin;
+        // goes over the changed rectangles.
+        for (int i = 0; i < 4 * this.dirtyCount; i += 4) {
+            // checks if the rectangle overlaps the trajectory's box.
+            if (this.dirty[i] <= toX && this.dirty[i + 2] >= fromX
+                    && this.dirty[i + 1] <= toY && this.dirty[i + 3] >= fromY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a changed collidable and its rectangle, if the balls are being
+     * moved.
+     *
+     * @param c the collidable.
+     */
+    private void record(Collidable c) {
+        // checks if the change happened outside of the balls' moves.
+        if (!this.tracking) {
+            return;
+        }
+        // checks if the rectangles array is full.
+        if (4 * (this.dirtyCount + 1) > this.dirty.length) {
+            this.dirty = Arrays.copyOf(this.dirty, 2 * this.dirty.length);
+        }
+        Rectangle rect = c.getCollisionRectangle();
+        int i = 4 * this.dirtyCount;
+        this.dirty[i] = rect.getLeftX();
+        this.dirty[i + 1] = rect.getUpperY();
+        this.dirty[i + 2] = rect.getRightX();
+        this.dirty[i + 3] = rect.getLowerY();
+        this.dirtyCount++;
+        this.changed.add(c);
+    }
+
+    /**
+     * A task that plans the collisions of a range of chunks of rays,
+     * splitting it between the pool's threads. Every chunk is a batch query
+     * made by the snapshot's worker of the same number.
+     */
+    private static class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private transient CollisionSnapshot snapshot;
+        private double[] x0;
+        private double[] y0;
+        private double[] x1;
+        private double[] y1;
+        private double[] radius;
+        private int[] mask;
+        private transient CollisionInfo[] plans;
+        private int rays;
+        private int from;
+        private int to;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param snapshot the snapshot of the environment.
+         * @param x0       the x coordinates of the starts of the rays.
+         * @param y0       the y coordinates of the starts of the rays.
+         * @param x1       the x coordinates of the ends of the rays.
+         * @param y1       the y coordinates of the ends of the rays.
+         * @param radius   the radiuses of the rays.
+         * @param mask     the collision layers of the rays.
+         * @param plans    the planned collisions, by the rays' indexes.
+         * @param rays     the number of rays.
+         * @param from     the first chunk of the range.
+         * @param to       the end of the range, exclusive.
+         */
+        PlanTask(CollisionSnapshot snapshot, double[] x0, double[] y0,
+                 double[] x1, double[] y1, double[] radius, int[] mask,
+                 CollisionInfo[] plans, int rays, int from, int to) {
+            this.snapshot = snapshot;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.radius = radius;
+            this.mask = mask;
+            this.plans = plans;
+            this.rays = rays;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Plans the range, or splits it in two halves.
+         */
+        @Override
+        protected void compute() {
+            // checks if the range is a single chunk.
+            if (this.to - this.from == 1) {
+                int start = this.from * SPLIT_SIZE;
+                int end = Math.min(start + SPLIT_SIZE, this.rays);
+                this.snapshot.closestCollisions(this.x0, this.y0, this.x1,
+                        this.y1, this.radius, this.mask, start, end,
+                        this.from, this.plans);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(split(this.from, middle), split(middle, this.to));
+        }
+
+        /**
+         * Creates a task for a part of the range.
+         *
+         * @param start the first chunk of the part.
+         * @param end   the end of the part, exclusive.
+         * @return the task.
+         */
+        private PlanTask split(int start, int end) {
+            return new PlanTask(this.snapshot, this.x0, this.y0, this.x1,
+                                this.y1, this.radius, this.mask, this.plans,
+                                this.rays, start, end);
+        }
+    }
+}
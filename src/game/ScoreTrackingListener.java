@@ -5,20 +5,24 @@ import sprites.Ball;
 import sprites.Block;
 
 /**
- * The type Score tracking listener, defined by the score of the game.
+ * The type Score tracking listener, defined by the score of the game and the
+ * game, which queues the removal of the listener from a hit block.
  * @author Max Shabs
  */
 public class ScoreTrackingListener implements HitListener {
     private static final int POINTS_PER_BLOCK = 5;
     private Counter currentScore;
+    private GameLevel game;
 
     /**
      * Instantiates a new Score tracking listener.
      *
      * @param scoreCounter the score counter of the game.
+     * @param game         the game.
      */
-    public ScoreTrackingListener(Counter scoreCounter) {
+    public ScoreTrackingListener(Counter scoreCounter, GameLevel game) {
         this.currentScore = scoreCounter;
+        this.game = game;
     }
     /**
      * This method is called whenever the beingHit object is hit.
@@ -28,7 +32,7 @@ public class ScoreTrackingListener implements HitListener {
      */
     @Override
     public void hitEvent(Block beingHit, Ball hitter) {
-        beingHit.removeHitListener(this);
+        this.game.removeHitListener(beingHit, this);
         this.currentScore.increase(POINTS_PER_BLOCK);
     }
 }
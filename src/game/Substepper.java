@@ -0,0 +1,166 @@
+package game;
+
+import java.io.PrintStream;
+
+/**
+ * Represents the adaptive substepping of the balls, defined by the cap of
+ * substeps a ball may take in a frame, the environment whose thinnest
+ * collidable bounds the length of a substep, and the metrics of the
+ * substeps taken. A fast ball splits its step so that no substep is longer
+ * than the thinnest collidable, and after every bounce it carries on with
+ * the rest of the step, so the cost of a frame grows with the speed of the
+ * balls but never beyond the cap.
+ * @author Max Shabs
+ */
+public class Substepper {
+    private GameEnvironment environment;
+    private int cap;
+    private int frameSubsteps;
+    private int frameMaxSubsteps;
+    private int frameCappedBalls;
+    private int maxSubsteps;
+    private long totalSubsteps;
+    private long totalCappedBalls;
+    private long frames;
+
+    /**
+     * Instantiates a new substepper.
+     *
+     * @param environment the game environment.
+     * @param cap         the most substeps a ball may take in a frame.
+     */
+    public Substepper(GameEnvironment environment, int cap) {
+        this.environment = environment;
+        this.cap = cap;
+    }
+
+    /**
+     * Gets the most substeps a ball may take in a frame.
+     *
+     * @return the cap.
+     */
+    public int getCap() {
+        return this.cap;
+    }
+
+    /**
+     * Gets the longest distance a ball may move in a single substep, which
+     * is the thinnest side of the collidables.
+     *
+     * @return the longest distance of a substep.
+     */
+    public double maxStepLength() {
+        return this.environment.getThinnestSide();
+    }
+
+    /**
+     * Starts the metrics of a new frame.
+     */
+    public void beginFrame() {
+        this.frameSubsteps = 0;
+        this.frameMaxSubsteps = 0;
+        this.frameCappedBalls = 0;
+        this.frames++;
+    }
+
+    /**
+     * Records the substeps a ball took in this frame.
+     *
+     * @param substeps the number of substeps.
+     * @param capped   true if the ball needed more substeps than the cap.
+     */
+    public void record(int substeps, boolean capped) {
+        this.frameSubsteps += substeps;
+        this.totalSubsteps += substeps;
+        this.frameMaxSubsteps = Math.max(this.frameMaxSubsteps, substeps);
+        this.maxSubsteps = Math.max(this.maxSubsteps, substeps);
+        // checks if the ball ran out of substeps.
+        if (capped) {
+            this.frameCappedBalls++;
+            this.totalCappedBalls++;
+        }
+    }
+
+    /**
+     * Gets the number of substeps all the balls took in this frame.
+     *
+     * @return the number of substeps.
+     */
+    public int getFrameSubsteps() {
+        return this.frameSubsteps;
+    }
+
+    /**
+     * Gets the most substeps a single ball took in this frame.
+     *
+     * @return the most substeps of a ball.
+     */
+    public int getFrameMaxSubsteps() {
+        return this.frameMaxSubsteps;
+    }
+
+    /**
+     * Gets the number of balls that reached the cap in this frame.
+     *
+     * @return the number of capped balls.
+     */
+    public int getFrameCappedBalls() {
+        return this.frameCappedBalls;
+    }
+
+    /**
+     * Gets the average number of substeps all the balls took in a frame.
+     *
+     * @return the average substeps per frame, 0 before the first frame.
+     */
+    public double getAverageSubsteps() {
+        // checks if no frame was recorded yet.
+        if (this.frames == 0) {
+            return 0;
+        }
+        return (double) this.totalSubsteps / this.frames;
+    }
+
+    /**
+     * Gets the number of times a ball reached the cap, over all the frames.
+     *
+     * @return the number of capped steps.
+     */
+    public long getTotalCappedBalls() {
+        return this.totalCappedBalls;
+    }
+
+    /**
+     * Gets the most substeps a single ball took in a frame, over all the
+     * frames.
+     *
+     * @return the most substeps of a ball.
+     */
+    public int getMaxSubsteps() {
+        return this.maxSubsteps;
+    }
+
+    /**
+     * Removes the metrics of the frames so far.
+     */
+    public void reset() {
+        this.frameSubsteps = 0;
+        this.frameMaxSubsteps = 0;
+        this.frameCappedBalls = 0;
+        this.maxSubsteps = 0;
+        this.totalSubsteps = 0;
+        this.totalCappedBalls = 0;
+        this.frames = 0;
+    }
+
+    /**
+     * Prints the metrics of the substeps over all the frames.
+     *
+     * @param out the stream to print to.
+     */
+    public void dump(PrintStream out) {
+        out.printf("substeps: cap %d, %.2f per frame, %d most of a ball,"
+                    + " %d capped steps%n", this.cap, getAverageSubsteps(),
+                    this.maxSubsteps, this.totalCappedBalls);
+    }
+}
@@ -0,0 +1,405 @@
+package geometry;
+
+/**
+ * Represents the result of casting a segment or a moving circle against an
+ * axis aligned rectangle, defined by the time of the hit, the side that was
+ * hit and the contact normal. The time is a fraction of the segment, 0 at
+ * its start and 1 at its end. The intersection uses the slab method on
+ * primitive doubles, so a single instance can be reused for any number of
+ * casts without allocating.
+ * @author Max Shabs
+ */
+public class RayHit {
+    /**
+     * No side was hit.
+     */
+    public static final int NONE = 0;
+    /**
+     * The left side of the rectangle was hit.
+     */
+    public static final int LEFT = 1;
+    /**
+     * The right side of the rectangle was hit.
+     */
+    public static final int RIGHT = 2;
+    /**
+     * The upper side of the rectangle was hit.
+     */
+    public static final int TOP = 3;
+    /**
+     * The lower side of the rectangle was hit.
+     */
+    public static final int BOTTOM = 4;
+    /**
+     * A rounded corner of the rectangle was hit by a circle.
+     */
+    public static final int CORNER = 5;
+    private double time;
+    private int face;
+    private double normalX;
+    private double normalY;
+
+    /**
+     * Instantiates a new empty ray hit.
+     */
+    public RayHit() {
+        this.time = Double.POSITIVE_INFINITY;
+        this.face = NONE;
+    }
+
+    /**
+     * Casts a segment against a rectangle. If the segment starts outside the
+     * rectangle the hit is where it enters it, and if it starts inside the
+     * hit is where it leaves it, like the closest intersection of the
+     * segment with the sides of the rectangle.
+     *
+     * @param x0   the x coordinate of the segment start.
+     * @param y0   the y coordinate of the segment start.
+     * @param dx   the length of the segment on the x-axis.
+     * @param dy   the length of the segment on the y-axis.
+     * @param minX the left side of the rectangle.
+     * @param minY the upper side of the rectangle.
+     * @param maxX the right side of the rectangle.
+     * @param maxY the lower side of the rectangle.
+     * @return true if the segment hits a side of the rectangle.
+     */
+    public boolean intersect(double x0, double y0, double dx, double dy,
+                             double minX, double minY, double maxX,
+                             double maxY) {
+        double enterX, exitX, enterY, exitY;
+        int enterFaceX, exitFaceX, enterFaceY, exitFaceY;
+        this.face = NONE;
+        this.time = Double.POSITIVE_INFINITY;
+        // checks if the segment is parallel to the x slab.
+        if (dx == 0) {
+            // checks if the segment is outside of the x slab.
+            if (x0 < minX || x0 > maxX) {
+                return false;
+            }
+            enterX = Double.NEGATIVE_INFINITY;
+            exitX = Double.POSITIVE_INFINITY;
+            enterFaceX = NONE;
+            exitFaceX = NONE;
+        } else if (dx > 0) {
+            enterX = (minX - x0) / dx;
+            exitX = (maxX - x0) / dx;
+            enterFaceX = LEFT;
+            exitFaceX = RIGHT;
+        } else {
+            enterX = (maxX - x0) / dx;
+            exitX = (minX - x0) / dx;
+            enterFaceX = RIGHT;
+            exitFaceX = LEFT;
+        }
+        // checks if the segment is parallel to the y slab.
+        if (dy == 0) {
+            // checks if the segment is outside of the y slab.
+            if (y0 < minY || y0 > maxY) {
+                return false;
+            }
+            enterY = Double.NEGATIVE_INFINITY;
+            exitY = Double.POSITIVE_INFINITY;
+            enterFaceY = NONE;
+            exitFaceY = NONE;
+        } else if (dy > 0) {
+            enterY = (minY - y0) / dy;
+            exitY = (maxY - y0) / dy;
+            enterFaceY = TOP;
+            exitFaceY = BOTTOM;
+        } else {
+            enterY = (maxY - y0) / dy;
+            exitY = (minY - y0) / dy;
+            enterFaceY = BOTTOM;
+            exitFaceY = TOP;
+        }
+        double enter = Math.max(enterX, enterY);
+        double exit = Math.min(exitX, exitY);
+        // checks if the slabs don't overlap on the segment.
+        if (enter > exit || exit < 0 || enter > 1) {
+            return false;
+        }
+        // checks if the segment starts outside of the rectangle.
+        if (enter >= 0) {
+            this.time = enter;
+            setFace((enterX >= enterY) ? enterFaceX : enterFaceY);
+            return true;
+        }
+        // checks if the segment leaves the rectangle before it ends.
+        if (exit <= 1) {
+            this.time = exit;
+            setFace((exitX <= exitY) ? exitFaceX : exitFaceY);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Casts a moving circle against a rectangle. This is the same as casting
+     * the center of the circle against the rectangle expanded by the radius,
+     * with its corners rounded by the radius. Only a circle moving into the
+     * rectangle hits it, a circle that already overlaps the rectangle hits
+     * it at time 0 if it moves deeper into it.
+     *
+     * @param x0     the x coordinate of the circle center at the start.
+     * @param y0     the y coordinate of the circle center at the start.
+     * @param dx     the movement of the center on the x-axis.
+     * @param dy     the movement of the center on the y-axis.
+     * @param radius the radius of the circle.
+     * @param minX   the left side of the rectangle.
+     * @param minY   the upper side of the rectangle.
+     * @param maxX   the right side of the rectangle.
+     * @param maxY   the lower side of the rectangle.
+     * @return true if the circle hits the rectangle.
+     */
+    public boolean sweepCircle(double x0, double y0, double dx, double dy,
+                               double radius, double minX, double minY,
+                               double maxX, double maxY) {
+        this.face = NONE;
+        this.time = Double.POSITIVE_INFINITY;
+        double closestX = Math.max(minX, Math.min(x0, maxX));
+        double closestY = Math.max(minY, Math.min(y0, maxY));
+        double offsetX = x0 - closestX;
+        double offsetY = y0 - closestY;
+        double distanceSquared = offsetX * offsetX + offsetY * offsetY;
+        // checks if the circle already overlaps the rectangle.
+        if (distanceSquared < radius * radius) {
+            return overlapHit(x0, y0, dx, dy, offsetX, offsetY,
+                            distanceSquared, minX, minY, maxX, maxY);
+        }
+        boolean outsideX = x0 < minX || x0 > maxX;
+        boolean outsideY = y0 < minY || y0 > maxY;
+        // checks if the center starts next to a corner of the rectangle.
+        if (outsideX && outsideY && x0 > minX - radius && x0 < maxX + radius
+                && y0 > minY - radius && y0 < maxY + radius) {
+            return cornerHit(x0, y0, dx, dy, radius,
+                            (x0 < minX) ? minX : maxX,
+                            (y0 < minY) ? minY : maxY);
+        }
+        // checks if the center misses the expanded rectangle.
+        if (!intersect(x0, y0, dx, dy, minX - radius, minY - radius,
+                        maxX + radius, maxY + radius)) {
+            return false;
+        }
+        double hitX = x0 + this.time * dx;
+        double hitY = y0 + this.time * dy;
+        // checks if the center is next to a side and not a corner.
+        if ((hitX >= minX && hitX <= maxX) || (hitY >= minY && hitY <= maxY)) {
+            // checks if the circle moves away from the side.
+            if (this.normalX * dx + this.normalY * dy >= 0) {
+                this.face = NONE;
+                this.time = Double.POSITIVE_INFINITY;
+                return false;
+            }
+            return true;
+        }
+        return cornerHit(x0, y0, dx, dy, radius, (hitX < minX) ? minX : maxX,
+                        (hitY < minY) ? minY : maxY);
+    }
+
+    /**
+     * Casts a moving circle against a corner of the rectangle, which is the
+     * same as casting its center against a circle around the corner.
+     *
+     * @param x0      the x coordinate of the circle center at the start.
+     * @param y0      the y coordinate of the circle center at the start.
+     * @param dx      the movement of the center on the x-axis.
+     * @param dy      the movement of the center on the y-axis.
+     * @param radius  the radius of the circle.
+     * @param cornerX the x coordinate of the corner.
+     * @param cornerY the y coordinate of the corner.
+     * @return true if the circle hits the corner.
+     */
+    private boolean cornerHit(double x0, double y0, double dx, double dy,
+                              double radius, double cornerX, double cornerY) {
+        this.face = NONE;
+        this.time = Double.POSITIVE_INFINITY;
+        double fromCornerX = x0 - cornerX;
+        double fromCornerY = y0 - cornerY;
+        double a = dx * dx + dy * dy;
+        double b = fromCornerX * dx + fromCornerY * dy;
+        double c = fromCornerX * fromCornerX + fromCornerY * fromCornerY
+                    - radius * radius;
+        double discriminant = b * b - a * c;
+        // checks if the center passes by the corner or moves away from it.
+        if (a == 0 || discriminant < 0 || b >= 0) {
+            return false;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        // checks if the corner is reached after the end of the movement.
+        if (t > 1) {
+            return false;
+        }
+        this.time = Math.max(t, 0);
+        this.face = CORNER;
+        this.normalX = (fromCornerX + this.time * dx) / radius;
+        this.normalY = (fromCornerY + this.time * dy) / radius;
+        return true;
+    }
+
+    /**
+     * Creates the hit of a circle that already overlaps the rectangle, at
+     * time 0, if it moves deeper into the rectangle.
+     *
+     * @param x0              the x coordinate of the circle center.
+     * @param y0              the y coordinate of the circle center.
+     * @param dx              the movement of the center on the x-axis.
+     * @param dy              the movement of the center on the y-axis.
+     * @param offsetX         the x offset from the closest rectangle point.
+     * @param offsetY         the y offset from the closest rectangle point.
+     * @param distanceSquared the squared length of the offset.
+     * @param minX            the left side of the rectangle.
+     * @param minY            the upper side of the rectangle.
+     * @param maxX            the right side of the rectangle.
+     * @param maxY            the lower side of the rectangle.
+     * @return true if the circle moves into the rectangle.
+     */
+    private boolean overlapHit(double x0, double y0, double dx, double dy,
+                               double offsetX, double offsetY,
+                               double distanceSquared, double minX,
+                               double minY, double maxX, double maxY) {
+        // checks if the center is outside of the rectangle.
+        if (distanceSquared > 0) {
+            double distance = Math.sqrt(distanceSquared);
+            this.normalX = offsetX / distance;
+            this.normalY = offsetY / distance;
+            this.face = CORNER;
+            // checks if the offset is along a single axis.
+            if (offsetY == 0) {
+                this.face = (offsetX < 0) ? LEFT : RIGHT;
+            } else if (offsetX == 0) {
+                this.face = (offsetY < 0) ? TOP : BOTTOM;
+            }
+        } else {
+            double toLeft = x0 - minX;
+            double toRight = maxX - x0;
+            double toTop = y0 - minY;
+            double toBottom = maxY - y0;
+            double nearest = Math.min(Math.min(toLeft, toRight),
+                                    Math.min(toTop, toBottom));
+            // picks the side the center is nearest to.
+            if (nearest == toLeft) {
+                setFace(LEFT);
+            } else if (nearest == toRight) {
+                setFace(RIGHT);
+            } else if (nearest == toTop) {
+                setFace(TOP);
+            } else {
+                setFace(BOTTOM);
+            }
+        }
+        // checks if the circle moves out of the rectangle.
+        if (this.normalX * dx + this.normalY * dy >= 0) {
+            this.face = NONE;
+            return false;
+        }
+        this.time = 0;
+        return true;
+    }
+
+    /**
+     * Sets the side that was hit and its outward normal.
+     *
+     * @param side the side.
+     */
+    private void setFace(int side) {
+        this.face = side;
+        this.normalX = 0;
+        this.normalY = 0;
+        // sets the normal according to the side.
+        if (side == LEFT) {
+            this.normalX = -1;
+        } else if (side == RIGHT) {
+            this.normalX = 1;
+        } else if (side == TOP) {
+            this.normalY = -1;
+        } else if (side == BOTTOM) {
+            this.normalY = 1;
+        }
+    }
+
+    /**
+     * Calculates when a segment enters a rectangle, without finding the side.
+     *
+     * @param x0   the x coordinate of the segment start.
+     * @param y0   the y coordinate of the segment start.
+     * @param dx   the length of the segment on the x-axis.
+     * @param dy   the length of the segment on the y-axis.
+     * @param minX the left side of the rectangle.
+     * @param minY the upper side of the rectangle.
+     * @param maxX the right side of the rectangle.
+     * @param maxY the lower side of the rectangle.
+     * @return the entry time, 0 if the segment starts inside the rectangle,
+     *         or infinity if the segment misses it.
+     */
+    public static double entryTime(double x0, double y0, double dx,
+                                   double dy, double minX, double minY,
+                                   double maxX, double maxY) {
+        double enter = 0;
+        double exit = 1;
+        // checks if the segment is parallel to the x slab.
+        if (dx == 0) {
+            // checks if the segment is outside of the x slab.
+            if (x0 < minX || x0 > maxX) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minX - x0) / dx;
+            double t2 = (maxX - x0) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        // checks if the segment is parallel to the y slab.
+        if (dy == 0) {
+            // checks if the segment is outside of the y slab.
+            if (y0 < minY || y0 > maxY) {
+                return Double.POSITIVE_INFINITY;
+            }
+        } else {
+            double t1 = (minY - y0) / dy;
+            double t2 = (maxY - y0) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        // checks if the slabs don't overlap on the segment.
+        if (enter > exit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return enter;
+    }
+
+    /**
+     * Gets the time of the hit, as a fraction of the segment.
+     *
+     * @return the time, infinity if there was no hit.
+     */
+    public double getTime() {
+        return this.time;
+    }
+
+    /**
+     * Gets the side of the rectangle that was hit.
+     *
+     * @return one of LEFT, RIGHT, TOP, BOTTOM, CORNER or NONE.
+     */
+    public int getFace() {
+        return this.face;
+    }
+
+    /**
+     * Gets the x-axis part of the outward normal of the contact.
+     *
+     * @return the x-axis part of the normal.
+     */
+    public double getNormalX() {
+        return this.normalX;
+    }
+
+    /**
+     * Gets the y-axis part of the outward normal of the contact.
+     *
+     * @return the y-axis part of the normal.
+     */
+    public double getNormalY() {
+        return this.normalY;
+    }
+}
@@ -97,6 +97,42 @@ public class Rectangle {
         return this.height;
     }
 
+    /**
+     * Gets the x coordinate of the left side of the rectangle.
+     *
+     * @return the x coordinate of the left side.
+     */
+    public double getLeftX() {
+        return this.upperLeft.getX();
+    }
+
+    /**
+     * Gets the x coordinate of the right side of the rectangle.
+     *
+     * @return the x coordinate of the right side.
+     */
+    public double getRightX() {
+        return this.upperLeft.getX() + this.width;
+    }
+
+    /**
+     * Gets the y coordinate of the upper side of the rectangle.
+     *
+     * @return the y coordinate of the upper side.
+     */
+    public double getUpperY() {
+        return this.upperLeft.getY();
+    }
+
+    /**
+     * Gets the y coordinate of the lower side of the rectangle.
+     *
+     * @return the y coordinate of the lower side.
+     */
+    public double getLowerY() {
+        return this.upperLeft.getY() + this.height;
+    }
+
     /**
      * Gets the upper left point of the rectangle.
      *
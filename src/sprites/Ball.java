@@ -1,9 +1,13 @@
 package sprites;
 
 import biuoop.DrawSurface;
+import collision.CoherenceCache;
 import collision.CollisionInfo;
+import collision.CollisionLayers;
 import game.GameEnvironment;
 import game.GameLevel;
+import game.ImpactScheduler;
+import game.Substepper;
 import geometry.Line;
 import geometry.Point;
 import geometry.Rectangle;
@@ -15,14 +19,26 @@ import java.awt.Color;
  * Represents a ball defined by center, radius, color and velocity.
  * @author Max Shabs
  */
-public class Ball implements Sprite {
+public class Ball implements InterpolatedSprite, DirtySprite {
     private static final double DEFAULT_SPEED = 0;
     private Point center;
+    private Point previousCenter;
     private int r;
     private Color color;
     private Velocity v = new Velocity(DEFAULT_SPEED, DEFAULT_SPEED);
     private DrawSurface surface;
     private GameEnvironment gameEnvironment;
+    private boolean sweptCollision;
+    private ImpactScheduler scheduler;
+    private CollisionInfo plannedCollision;
+    private boolean hasPlannedCollision;
+    private int collisionMask = CollisionLayers.ALL;
+    private CoherenceCache coherenceCache;
+    private Substepper substepper;
+    private double stepScale = 1;
+    private boolean hasDrawnArea;
+    private int drawnX;
+    private int drawnY;
     private static final double PROXIMITY = 5.0;
 
     /**
@@ -34,6 +50,7 @@ public class Ball implements Sprite {
      */
     public Ball(Point center, int r, Color color) {
         this.center = center;
+        this.previousCenter = center;
         // checks if the radius is negative and turns it to positive.
         if (r < 0) {
             this.r = r * (-1);
@@ -53,6 +70,7 @@ public class Ball implements Sprite {
      */
     public Ball(double xCenter, double yCenter, int r, Color color) {
         this.center = new Point(xCenter, yCenter);
+        this.previousCenter = this.center;
         // checks if the radius is negative and turns it to positive.
         if (r < 0) {
             this.r = r * (-1);
@@ -89,6 +107,15 @@ public class Ball implements Sprite {
         return this.r;
     }
 
+    /**
+     * Gets the center of the ball.
+     *
+     * @return the center point.
+     */
+    public Point getCenter() {
+        return this.center;
+    }
+
     /**
      * Gets color.
      *
@@ -105,6 +132,117 @@ public class Ball implements Sprite {
      */
     @Override
     public void drawOn(DrawSurface surface) {
+        drawAt(surface, this.getX(), this.getY());
+    }
+
+    /**
+     * Draws the ball between its center before its last step and its
+     * current center.
+     *
+     * @param surface the surface which the ball will be drawn on.
+     * @param alpha   how far from the previous center (0) to the current
+     *                one (1) the ball is drawn.
+     */
+    @Override
+    public void drawOn(DrawSurface surface, double alpha) {
+        drawAt(surface, xAt(alpha), yAt(alpha));
+    }
+
+    /**
+     * Gets the x coordinate of the center the ball is drawn at, between its
+     * center before its last step and its current center.
+     *
+     * @param alpha how far from the previous center (0) to the current one
+     *              (1) the ball is drawn.
+     * @return the x coordinate.
+     */
+    private int xAt(double alpha) {
+        // checks if the ball is drawn at its current center.
+        if (alpha >= 1) {
+            return this.getX();
+        }
+        return (int) (this.previousCenter.getX()
+                + alpha * (this.center.getX() - this.previousCenter.getX()));
+    }
+
+    /**
+     * Gets the y coordinate of the center the ball is drawn at, between its
+     * center before its last step and its current center.
+     *
+     * @param alpha how far from the previous center (0) to the current one
+     *              (1) the ball is drawn.
+     * @return the y coordinate.
+     */
+    private int yAt(double alpha) {
+        // checks if the ball is drawn at its current center.
+        if (alpha >= 1) {
+            return this.getY();
+        }
+        return (int) (this.previousCenter.getY()
+                + alpha * (this.center.getY() - this.previousCenter.getY()));
+    }
+
+    /**
+     * Adds the area the ball was drawn in and the one it is drawn in now to
+     * the dirty regions, if the ball moved by a pixel.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous center (0) to the current
+     *                one (1) the ball is drawn.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        int x = xAt(alpha);
+        int y = yAt(alpha);
+        // checks if the ball is drawn where it was drawn.
+        if (this.hasDrawnArea && x == this.drawnX && y == this.drawnY) {
+            return;
+        }
+        addDrawnArea(regions);
+        this.drawnX = x;
+        this.drawnY = y;
+        this.hasDrawnArea = true;
+        addDrawnArea(regions);
+    }
+
+    /**
+     * Adds the area the ball was last drawn in, with its outline, to the
+     * dirty regions.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        // checks if the ball was drawn.
+        if (this.hasDrawnArea) {
+            regions.add(this.drawnX - this.r, this.drawnY - this.r,
+                        this.drawnX + this.r + 1, this.drawnY + this.r + 1);
+        }
+    }
+
+    /**
+     * Checks if the ball, where it is drawn now, draws in a part of an area.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the ball draws in the area, false otherwise.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        return this.drawnX - this.r < maxX && this.drawnX + this.r >= minX
+                && this.drawnY - this.r < maxY && this.drawnY + this.r >= minY;
+    }
+
+    /**
+     * Draws the ball with its center at a given point.
+     *
+     * @param surface the surface which the ball will be drawn on.
+     * @param x       the x coordinate of the center.
+     * @param y       the y coordinate of the center.
+     */
+    private void drawAt(DrawSurface surface, int x, int y) {
         this.surface = surface;
         // checks if the radius is larger than the width of the surface.
         if (this.r > this.surface.getWidth() / 2) {
@@ -115,9 +253,9 @@ public class Ball implements Sprite {
             this.r = this.surface.getHeight() / 2;
         }
         surface.setColor(this.color);
-        surface.fillCircle(this.getX(), this.getY(), this.getSize());
+        surface.fillCircle(x, y, this.getSize());
         surface.setColor(Color.BLACK);
-        surface.drawCircle(this.getX(), this.getY(), this.getSize());
+        surface.drawCircle(x, y, this.getSize());
     }
 
     /**
@@ -125,6 +263,7 @@ public class Ball implements Sprite {
      */
     @Override
     public void timePassed() {
+        this.previousCenter = this.center;
         moveOneStep();
     }
 
@@ -135,6 +274,10 @@ public class Ball implements Sprite {
      */
     public void setVelocity(Velocity v) {
         this.v = v;
+        // checks if the ball's next impact has to be found again.
+        if (this.scheduler != null) {
+            this.scheduler.invalidate(this);
+        }
     }
 
     /**
@@ -144,7 +287,7 @@ public class Ball implements Sprite {
      * @param dy the velocity on the y-axis of the ball.
      */
     public void setVelocity(double dx, double dy) {
-        this.v = new Velocity(dx, dy);
+        this.setVelocity(new Velocity(dx, dy));
     }
 
     /**
@@ -156,6 +299,98 @@ public class Ball implements Sprite {
         this.gameEnvironment = gameEnvironment;
     }
 
+    /**
+     * Sets whether the ball collides as a circle swept along its trajectory,
+     * instead of as its center point pushed back from the collision.
+     *
+     * @param swept true for swept circle collisions.
+     */
+    public void setSweptCollision(boolean swept) {
+        this.sweptCollision = swept;
+    }
+
+    /**
+     * Checks if the ball collides as a swept circle.
+     *
+     * @return true if the ball uses swept circle collisions.
+     */
+    public boolean isSweptCollision() {
+        return this.sweptCollision;
+    }
+
+    /**
+     * Sets the impact scheduler, which lets the ball skip the collision
+     * queries in the frames it can't hit anything.
+     *
+     * @param impactScheduler the impact scheduler, null to query every frame.
+     */
+    public void setImpactScheduler(ImpactScheduler impactScheduler) {
+        this.scheduler = impactScheduler;
+    }
+
+    /**
+     * Sets the collision layers the ball collides with, for example only the
+     * walls and the paddle for a ball that goes through the bricks.
+     *
+     * @param mask the collision layers, CollisionLayers.ALL by default.
+     */
+    public void setCollisionMask(int mask) {
+        this.collisionMask = mask;
+        // checks if the ball's scheduled impact has to be found again.
+        if (this.scheduler != null) {
+            this.scheduler.invalidate(this);
+        }
+    }
+
+    /**
+     * Gets the collision layers the ball collides with.
+     *
+     * @return the collision layers.
+     */
+    public int getCollisionMask() {
+        return this.collisionMask;
+    }
+
+    /**
+     * Sets the coherence cache the ball's collision queries go through,
+     * which reuses the candidates around the trajectory between frames.
+     *
+     * @param cache the cache, null to query the environment directly.
+     */
+    public void setCoherenceCache(CoherenceCache cache) {
+        this.coherenceCache = cache;
+    }
+
+    /**
+     * Sets the substepper, which splits the ball's step by its speed and
+     * carries the rest of the step after every bounce.
+     *
+     * @param ballSubstepper the substepper, null to take a single step.
+     */
+    public void setSubstepper(Substepper ballSubstepper) {
+        this.substepper = ballSubstepper;
+    }
+
+    /**
+     * Sets the part of the velocity the ball moves in a single step. The
+     * velocity is in pixels per frame at 60 frames per second, so with a
+     * faster tick rate every tick moves a smaller part of it.
+     *
+     * @param scale the part of the velocity moved in a step, 1 by default.
+     */
+    public void setStepScale(double scale) {
+        this.stepScale = scale;
+    }
+
+    /**
+     * Gets the part of the velocity the ball moves in a single step.
+     *
+     * @return the step scale.
+     */
+    public double getStepScale() {
+        return this.stepScale;
+    }
+
     /**
      * Gets the velocity of the ball.
      *
@@ -165,19 +400,192 @@ public class Ball implements Sprite {
         return this.v;
     }
 
+    /**
+     * Checks if the next step of the ball queries the environment for a
+     * collision.
+     *
+     * @return true if the next step makes a collision query.
+     */
+    public boolean needsCollisionQuery() {
+        return this.surface != null
+                && (this.scheduler == null || this.scheduler.isImpactDue(this));
+    }
+
+    /**
+     * Gets the trajectory of the ball's center in its next step, or in the
+     * first substep of it if the ball is substepped.
+     *
+     * @return the trajectory.
+     */
+    public Line nextTrajectory() {
+        // checks if the ball takes the whole step at once.
+        if (this.substepper == null) {
+            return new Line(this.center, pointAt(1));
+        }
+        return new Line(this.center, pointAt(substepFraction(1, 0)));
+    }
+
+    /**
+     * Gets the radius the ball's collision queries are made with.
+     *
+     * @return the radius for swept collisions, 0 for point collisions.
+     */
+    public double collisionRadius() {
+        return this.sweptCollision ? this.r : 0;
+    }
+
+    /**
+     * Gives the ball the result of its next collision query, which was
+     * found ahead of its step (by the parallel physics phase). The next
+     * step uses it instead of querying the environment.
+     *
+     * @param info the closest collision of the next trajectory, or null.
+     */
+    public void setPlannedCollision(CollisionInfo info) {
+        this.plannedCollision = info;
+        this.hasPlannedCollision = true;
+    }
+
     /**
      * Moves the ball, if there is a collision changes the velocity of the ball.
      */
     public void moveOneStep() {
+        // checks if the scheduler knows the ball hits nothing in this step.
+        if (this.scheduler != null && this.surface != null
+                && !this.scheduler.isImpactDue(this)) {
+            this.center = pointAt(1);
+            recordSingleStep();
+            return;
+        }
+        // checks if the ball's step is split into substeps.
+        if (this.substepper != null && this.surface != null) {
+            moveSubsteps();
+        } else {
+            moveFraction(1);
+            recordSingleStep();
+        }
+        // checks if the next impact should be scheduled.
+        if (this.scheduler != null && this.surface != null) {
+            this.scheduler.schedule(this);
+        }
+    }
+
+    /**
+     * Moves the ball in substeps until its whole step is used, a substep
+     * being no longer than the thinnest collidable while the cap allows it.
+     * After a bounce the ball carries on with the rest of the step, and once
+     * the substeps left can't be that short the rest of the step is spread
+     * evenly over them.
+     */
+    private void moveSubsteps() {
+        int cap = this.substepper.getCap();
+        double remaining = 1;
+        int steps = 0;
+        boolean capped = false;
+        // goes over the substeps until the step is used.
+        while (remaining > 0 && steps < cap) {
+            double fraction = substepFraction(remaining, steps);
+            // checks if the substep is longer than the thinnest collidable.
+            if (fraction > shortestFraction(remaining)) {
+                capped = true;
+            }
+            steps++;
+            remaining -= moveFraction(fraction);
+        }
+        // checks if the step wasn't used when the cap was reached.
+        if (remaining > 0) {
+            capped = true;
+        }
+        this.substepper.record(steps, capped);
+    }
+
+    /**
+     * Records a step the ball took whole as a single substep, if its
+     * substeps are counted.
+     */
+    private void recordSingleStep() {
+        // checks if the ball is substepped.
+        if (this.substepper != null) {
+            this.substepper.record(1, false);
+        }
+    }
+
+    /**
+     * Calculates the fraction of the step the next substep takes, which is
+     * the one of the thinnest collidable's length unless the substeps left
+     * in the cap are too few for that.
+     *
+     * @param remaining the fraction of the step that is left.
+     * @param steps     the number of substeps already taken.
+     * @return the fraction of the next substep.
+     */
+    private double substepFraction(double remaining, int steps) {
+        int left = this.substepper.getCap() - steps;
+        return Math.max(shortestFraction(remaining), remaining / left);
+    }
+
+    /**
+     * Calculates the fraction of the step whose length is the thinnest
+     * collidable's side, or the rest of the step if it is shorter.
+     *
+     * @param remaining the fraction of the step that is left.
+     * @return the fraction.
+     */
+    private double shortestFraction(double remaining) {
+        double speed = this.stepScale * Math.hypot(this.v.getDx(),
+                                                    this.v.getDy());
+        double maxLength = this.substepper.maxStepLength();
+        // checks if the rest of the step fits in a single substep.
+        if (maxLength <= 0 || speed * remaining <= maxLength) {
+            return remaining;
+        }
+        return maxLength / speed;
+    }
+
+    /**
+     * Gets the point the ball's center reaches after a fraction of its step.
+     *
+     * @param fraction the fraction of the step.
+     * @return the point.
+     */
+    private Point pointAt(double fraction) {
+        double move = fraction * this.stepScale;
+        return new Point(this.center.getX() + move * this.v.getDx(),
+                        this.center.getY() + move * this.v.getDy());
+    }
+
+    /**
+     * Moves the ball along a fraction of its step, as a ray or as a swept
+     * circle.
+     *
+     * @param fraction the fraction of the step.
+     * @return the fraction of the step that was used, less than the given
+     *         one if the ball bounced.
+     */
+    private double moveFraction(double fraction) {
+        // checks if the ball collides as a swept circle.
+        if (this.sweptCollision) {
+            return moveSwept(fraction);
+        }
+        return moveRay(fraction);
+    }
+
+    /**
+     * Moves the ball's center along a fraction of its trajectory, and if it
+     * hits a collidable places it near the collision point.
+     *
+     * @param fraction the fraction of the step.
+     * @return the fraction of the step that was used.
+     */
+    private double moveRay(double fraction) {
         double proximity = r / PROXIMITY;
-        Point nextPoint = this.getVelocity().applyToPoint(this.center);
+        Point nextPoint = pointAt(fraction);
         Line trajectory = new Line(this.center, nextPoint);
-        CollisionInfo thisCol =
-                this.gameEnvironment.getClosestCollision(trajectory);
+        CollisionInfo thisCol = findCollision(trajectory, 0);
         // checks if the surface is null.
         if (this.surface == null) {
             this.center = nextPoint;
-            return;
+            return fraction;
         }
         // checks if there is a collision incoming.
         if (thisCol != null) {
@@ -210,9 +618,73 @@ public class Ball implements Sprite {
             }
             this.center = nearCol;
             this.setVelocity(newVelocity);
-        } else {
+            return thisCol.collisionTime() * fraction;
+        }
+        this.center = nextPoint;
+        return fraction;
+    }
+
+    /**
+     * Moves the ball as a circle swept along a fraction of its trajectory.
+     * If it hits a collidable it stops exactly where it touches it, so the
+     * radius is taken into account and fast balls can't pass through thin
+     * blocks.
+     *
+     * @param fraction the fraction of the step.
+     * @return the fraction of the step that was used.
+     */
+    private double moveSwept(double fraction) {
+        Point nextPoint = pointAt(fraction);
+        // checks if the surface is null.
+        if (this.surface == null) {
             this.center = nextPoint;
+            return fraction;
         }
+        Line trajectory = new Line(this.center, nextPoint);
+        CollisionInfo thisCol = findCollision(trajectory, this.r);
+        // checks if there is no collision incoming.
+        if (thisCol == null) {
+            this.center = nextPoint;
+            return fraction;
+        }
+        double time = thisCol.collisionTime() * fraction;
+        double normalX = thisCol.normalX();
+        double normalY = thisCol.normalY();
+        this.center = pointAt(time);
+        Velocity newVelocity = thisCol.collisionObject().hit(this,
+                                                    thisCol.collisionPoint(),
+                                                    this.v);
+        double towards = newVelocity.getDx() * normalX
+                        + newVelocity.getDy() * normalY;
+        // checks if the new velocity still goes into the collidable (which
+        // happens on rounded corners) and reflects it around the normal.
+        if (towards < 0) {
+            double along = this.v.getDx() * normalX + this.v.getDy() * normalY;
+            newVelocity = new Velocity(this.v.getDx() - 2 * along * normalX,
+                                    this.v.getDy() - 2 * along * normalY);
+        }
+        this.setVelocity(newVelocity);
+        return time;
+    }
+
+    /**
+     * Finds the closest collision of a trajectory, using the planned
+     * collision if there is one and the coherence cache if the ball has one.
+     *
+     * @param trajectory the trajectory of the ball's center.
+     * @param radius     the radius of the query.
+     * @return the closest collision info, null if there isn't one.
+     */
+    private CollisionInfo findCollision(Line trajectory, double radius) {
+        // checks if the collision was already found ahead of the step.
+        if (this.hasPlannedCollision) {
+            CollisionInfo planned = this.plannedCollision;
+            this.hasPlannedCollision = false;
+            this.plannedCollision = null;
+            return planned;
+        }
+        return this.gameEnvironment.getClosestCollision(this.coherenceCache,
+                                trajectory, radius, this.collisionMask);
     }
 
     /**
@@ -232,5 +704,14 @@ public class Ball implements Sprite {
      */
     public void removeFromGame(GameLevel game) {
         game.removeSprite(this);
+        // checks if the ball was scheduled.
+        if (this.scheduler != null) {
+            this.scheduler.remove(this);
+        }
+        // checks if the ball has a coherence cache to release.
+        if (this.coherenceCache != null) {
+            this.gameEnvironment.releaseCoherenceCache(this.coherenceCache);
+            this.coherenceCache = null;
+        }
     }
 }
\ No newline at end of file
@@ -2,12 +2,15 @@ package sprites;
 
 import biuoop.DrawSurface;
 import collision.Collidable;
+import collision.CollisionLayers;
 import collision.HitListener;
 import collision.HitNotifier;
 import game.GameLevel;
 import geometry.Point;
 import geometry.Rectangle;
 import geometry.Velocity;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
 
 import java.awt.Color;
 import java.util.ArrayList;
@@ -15,14 +18,17 @@ import java.util.List;
 
 
 /**
- * Represents a block, defined by a rectangle surface, color and hit listeners.
+ * Represents a block, defined by a rectangle surface, color, hit listeners
+ * and collision category, which is the bricks layer unless it is changed.
  * @author Max Shabs
  */
-public class Block implements Collidable, Sprite, HitNotifier {
+public class Block implements Collidable, StaticSprite, HitNotifier {
     private static final double EPSILON = 0.00001;
+    private static EventType hitType;
     private Rectangle blockSurface;
     private Color color;
     private List<HitListener> hitListeners;
+    private int category;
 
     /**
      * Instantiates a new block.
@@ -34,6 +40,7 @@ public class Block implements Collidable, Sprite, HitNotifier {
         this.blockSurface = blockRect;
         this.color = color;
         this.hitListeners = new ArrayList<>();
+        this.category = CollisionLayers.BRICKS;
     }
     /**
      * Gets the rectangle surface of the block.
@@ -44,6 +51,42 @@ public class Block implements Collidable, Sprite, HitNotifier {
     public Rectangle getCollisionRectangle() {
         return this.blockSurface;
     }
+    /**
+     * Gets the area the block is drawn in, its rectangle surface.
+     *
+     * @return the rectangle surface of the block.
+     */
+    @Override
+    public Rectangle getDrawingArea() {
+        return this.blockSurface;
+    }
+    /**
+     * Gets the collision category of the block.
+     *
+     * @return the collision category.
+     */
+    @Override
+    public int getCollisionCategory() {
+        return this.category;
+    }
+    /**
+     * Sets the collision category of the block, for example to make it a
+     * wall. After the block was added to a game, the game has to be told
+     * with updateCollidable.
+     *
+     * @param collisionCategory the collision category.
+     */
+    public void setCollisionCategory(int collisionCategory) {
+        this.category = collisionCategory;
+    }
+    /**
+     * Gets the color of the block.
+     *
+     * @return the color.
+     */
+    public Color getColor() {
+        return this.color;
+    }
     /**
      * Changes the direction of the object that hit the block.
      *
@@ -123,18 +166,48 @@ public class Block implements Collidable, Sprite, HitNotifier {
         game.removeSprite(this);
     }
     /**
-     * Notifies the listeners that there has been a hit.
+     * Notifies the listeners that there has been a hit. The listeners are
+     * iterated without a copy, so a listener that removes itself queues it
+     * in the game's frame command buffer.
      *
      * @param hitter is the ball that made the hit.
      */
     private void notifyHit(Ball hitter) {
-        // Make a copy of the hitListeners before iterating over them.
-        List<HitListener> listeners = new ArrayList<HitListener>(
-                                                            this.hitListeners);
+        HitDispatchEvent event = null;
+        // checks if a flight recording may take the dispatch.
+        if (FlightRecorder.isInitialized() && hitEventsEnabled()) {
+            event = new HitDispatchEvent();
+            event.begin();
+        }
         // Notify all listeners about a hit event:
-        for (HitListener hl : listeners) {
+        for (HitListener hl : this.hitListeners) {
             hl.hitEvent(this, hitter);
         }
+        // checks if the dispatch is committed to a flight recording.
+        if (event != null) {
+            event.end();
+            // checks if the dispatch was slow enough to be recorded.
+            if (event.shouldCommit()) {
+                event.listeners = this.hitListeners.size();
+                event.category = this.category;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Checks if a running flight recording takes hit dispatch events,
+     * without creating an event. The event type is only looked up once the
+     * flight recorder was initialized.
+     *
+     * @return true if hit dispatch events are enabled.
+     */
+    private static boolean hitEventsEnabled() {
+        // checks if the event type wasn't looked up yet.
+        if (hitType == null) {
+            hitType = EventType.getEventType(HitDispatchEvent.class);
+        }
+        return hitType.isEnabled();
     }
     /**
      * Adds hit listener.
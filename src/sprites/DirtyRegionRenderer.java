@@ -0,0 +1,230 @@
+package sprites;
+
+import animation.FrameFence;
+import biuoop.DrawSurface;
+import geometry.Rectangle;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Represents a dirty region renderer, defined by canvas images that keep
+ * the last frame drawn into them and the regions that changed since then.
+ * Every frame the sprites report the areas they changed, the overlapping
+ * and nearby areas are merged, and only the sprites in each merged area
+ * are drawn again into the canvas, clipped to it. The gui still shows the
+ * whole canvas, which is a single image copy instead of drawing every
+ * sprite, so this pays off while few sprites move, as in the levels, and
+ * not when dozens of balls are spread over the screen.
+ * Sprites that aren't dirty or static sprites can't tell what they change,
+ * so while there is one of them the whole screen is drawn every frame.
+ * The renderer may keep several canvases, since the gui reads the canvas
+ * of a frame until a later frame replaced it on the screen, so a frame is
+ * drawn into a canvas no shown frame holds. Every canvas keeps the regions
+ * of the frames drawn into the others since it was last drawn, which it
+ * missed, and draws them too when it is used again. The canvases may be
+ * framebuffers, which are drawn into by the software rasterizer instead of
+ * a graphics.
+ * @author Max Shabs
+ */
+public class DirtyRegionRenderer {
+    private int width;
+    private int height;
+    private BufferedImage[] canvases;
+    private Graphics2D[] graphics;
+    private DrawSurface[] surfaces;
+    private FramebufferSurface[] framebuffers;
+    private DirtyRegions[] missed;
+    private FrameSlots slots;
+    private int current;
+    private DirtyRegions regions;
+    private DirtyRegions repaint;
+    private long frames;
+    private long repaintedPixels;
+
+    /**
+     * Instantiates a new renderer.
+     *
+     * @param width    the width of the screen.
+     * @param height   the height of the screen.
+     * @param fence    the fence of the frames shown on the gui.
+     * @param canvases the number of canvases the renderer keeps before it
+     *                 waits for one that isn't shown.
+     * @param software true if the canvases are framebuffers.
+     */
+    public DirtyRegionRenderer(int width, int height, FrameFence fence,
+                               int canvases, boolean software) {
+        this.width = width;
+        this.height = height;
+        this.slots = new FrameSlots(fence, canvases);
+        int count = this.slots.capacity();
+        this.canvases = new BufferedImage[count];
+        this.graphics = new Graphics2D[count];
+        this.surfaces = new DrawSurface[count];
+        // checks if the canvases are framebuffers.
+        if (software) {
+            this.framebuffers = new FramebufferSurface[count];
+        }
+        this.missed = new DirtyRegions[count];
+        this.current = 0;
+        this.regions = new DirtyRegions(width, height);
+        this.repaint = new DirtyRegions(width, height);
+    }
+
+    /**
+     * Marks an area to be drawn again in the next frame, for example the
+     * area of a block that was removed.
+     *
+     * @param area the area, not counting the one pixel wide outlines on its
+     *             right and lower sides.
+     */
+    public void invalidate(Rectangle area) {
+        this.regions.add(area);
+    }
+
+    /**
+     * Marks the area a sprite was drawn in to be drawn again in the next
+     * frame, for example when the sprite is removed. The whole screen is
+     * marked if the sprite can't tell where it was drawn.
+     *
+     * @param s the sprite.
+     */
+    public void invalidate(Sprite s) {
+        // checks if the sprite knows where it was drawn.
+        if (s instanceof DirtySprite) {
+            ((DirtySprite) s).addDrawnArea(this.regions);
+        } else if (s instanceof StaticSprite) {
+            this.regions.add(((StaticSprite) s).getDrawingArea());
+        } else {
+            this.regions.addScreen();
+        }
+    }
+
+    /**
+     * Draws the changed regions of the sprites into a canvas no shown frame
+     * holds, and the canvas on the surface.
+     *
+     * @param d       the surface.
+     * @param sprites the sprites, in the order they are drawn.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprites are drawn.
+     */
+    public void render(DrawSurface d, SpriteCollection sprites,
+                       double alpha) {
+        sprites.addDirtyAreas(this.regions, alpha);
+        int next = this.slots.acquire(this.current);
+        // checks if the slots outgrew the canvases.
+        if (next >= this.canvases.length) {
+            grow();
+        }
+        this.repaint.clear();
+        // checks if the next canvas wasn't drawn into yet.
+        if (this.canvases[next] == null) {
+            createCanvas(next);
+            this.repaint.addScreen();
+        } else {
+            this.repaint.addAll(this.regions);
+            this.repaint.addAll(this.missed[next]);
+        }
+        this.repaint.merge();
+        sprites.markRegions(this.repaint);
+        DrawSurface surface = this.surfaces[next];
+        // goes over the merged regions.
+        for (int i = 0; i < this.repaint.size(); i++) {
+            int x = this.repaint.getMinX(i);
+            int y = this.repaint.getMinY(i);
+            int toX = this.repaint.getMaxX(i);
+            int toY = this.repaint.getMaxY(i);
+            clip(next, x, y, toX, toY);
+            sprites.drawAllIn(surface, alpha, i);
+            this.repaintedPixels += (long) (toX - x) * (toY - y);
+        }
+        this.frames++;
+        // goes over the canvases, which miss the regions of this frame.
+        for (int i = 0; i < this.canvases.length; i++) {
+            // checks if the canvas was drawn into before.
+            if (i != next && this.canvases[i] != null) {
+                this.missed[i].addAll(this.regions);
+            }
+        }
+        this.missed[next].clear();
+        this.regions.clear();
+        this.current = next;
+        d.drawImage(0, 0, this.canvases[next]);
+    }
+
+    /**
+     * Limits the drawing into a canvas to a region, and clears the region.
+     *
+     * @param i    the canvas.
+     * @param minX the left side of the region.
+     * @param minY the upper side of the region.
+     * @param maxX the right side of the region, which is outside of it.
+     * @param maxY the lower side of the region, which is outside of it.
+     */
+    private void clip(int i, int minX, int minY, int maxX, int maxY) {
+        // checks if the canvas is a framebuffer.
+        if (this.framebuffers != null) {
+            this.framebuffers[i].setClip(minX, minY, maxX, maxY);
+            this.framebuffers[i].clear(Color.BLACK);
+            return;
+        }
+        Graphics2D g = this.graphics[i];
+        g.setClip(minX, minY, maxX - minX, maxY - minY);
+        g.setColor(Color.BLACK);
+        g.fillRect(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Grows the arrays of the canvases to the number of slots.
+     */
+    private void grow() {
+        int count = this.slots.capacity();
+        this.canvases = Arrays.copyOf(this.canvases, count);
+        this.graphics = Arrays.copyOf(this.graphics, count);
+        this.surfaces = Arrays.copyOf(this.surfaces, count);
+        // checks if the canvases are framebuffers.
+        if (this.framebuffers != null) {
+            this.framebuffers = Arrays.copyOf(this.framebuffers, count);
+        }
+        this.missed = Arrays.copyOf(this.missed, count);
+    }
+
+    /**
+     * Creates a canvas with the graphics and surface that draw into it.
+     *
+     * @param i the canvas.
+     */
+    private void createCanvas(int i) {
+        this.missed[i] = new DirtyRegions(this.width, this.height);
+        // checks if the canvas is a framebuffer.
+        if (this.framebuffers != null) {
+            this.framebuffers[i] = new FramebufferSurface(this.width,
+                                                          this.height);
+            this.canvases[i] = this.framebuffers[i].getImage();
+            this.surfaces[i] = this.framebuffers[i];
+            return;
+        }
+        this.canvases[i] = new BufferedImage(this.width, this.height,
+                                            BufferedImage.TYPE_INT_RGB);
+        this.graphics[i] = this.canvases[i].createGraphics();
+        this.surfaces[i] = new GraphicsDrawSurface(this.graphics[i],
+                                                    this.width, this.height);
+    }
+
+    /**
+     * Gets the mean part of the screen drawn again in a frame.
+     *
+     * @return the part of the screen, between 0 and 1.
+     */
+    public double getRepaintedShare() {
+        // checks if no frame was drawn yet.
+        if (this.frames == 0) {
+            return 0;
+        }
+        return (double) this.repaintedPixels
+                / ((double) this.frames * this.width * this.height);
+    }
+}
@@ -0,0 +1,296 @@
+package sprites;
+
+import geometry.Rectangle;
+
+/**
+ * Represents the dirty regions of a frame, defined by the sides of the
+ * rectangles that changed in primitive arrays, clipped to the screen. A
+ * rectangle includes its left and upper sides but not its right and lower
+ * ones. Merging unites the rectangles that overlap, so no pixel is drawn
+ * twice, and the ones that are close enough that drawing their bounding
+ * box wastes fewer pixels than a few sprite draws cost. There are at most
+ * as many rectangles as the bits of an int, so the rectangles a sprite is
+ * in fit in a mask, and when there is no room a new rectangle is united
+ * with the one that grows the least by it.
+ * @author Max Shabs
+ */
+public class DirtyRegions {
+    /**
+     * The most rectangles the regions hold, which is the bits of an int.
+     */
+    public static final int MAX_REGIONS = Integer.SIZE;
+    private static final int OUTLINE = 1;
+    private static final long SLACK_PIXELS = 4096;
+    private int width;
+    private int height;
+    private int[] minX;
+    private int[] minY;
+    private int[] maxX;
+    private int[] maxY;
+    private int count;
+
+    /**
+     * Instantiates new empty dirty regions.
+     *
+     * @param width  the width of the screen.
+     * @param height the height of the screen.
+     */
+    public DirtyRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.minX = new int[MAX_REGIONS];
+        this.minY = new int[MAX_REGIONS];
+        this.maxX = new int[MAX_REGIONS];
+        this.maxY = new int[MAX_REGIONS];
+        this.count = 0;
+    }
+
+    /**
+     * Adds a rectangle that changed, clipped to the screen.
+     *
+     * @param fromX the left side of the rectangle.
+     * @param fromY the upper side of the rectangle.
+     * @param toX   the right side of the rectangle, which is outside of it.
+     * @param toY   the lower side of the rectangle, which is outside of it.
+     */
+    public void add(int fromX, int fromY, int toX, int toY) {
+        int x0 = Math.max(fromX, 0);
+        int y0 = Math.max(fromY, 0);
+        int x1 = Math.min(toX, this.width);
+        int y1 = Math.min(toY, this.height);
+        // checks if the rectangle is empty or off the screen.
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        // checks if there is no room for another rectangle.
+        if (this.count == MAX_REGIONS) {
+            merge();
+            // checks if merging didn't make room.
+            if (this.count == MAX_REGIONS) {
+                int j = leastGrowing(x0, y0, x1, y1);
+                this.minX[j] = Math.min(this.minX[j], x0);
+                this.minY[j] = Math.min(this.minY[j], y0);
+                this.maxX[j] = Math.max(this.maxX[j], x1);
+                this.maxY[j] = Math.max(this.maxY[j], y1);
+                return;
+            }
+        }
+        this.minX[this.count] = x0;
+        this.minY[this.count] = y0;
+        this.maxX[this.count] = x1;
+        this.maxY[this.count] = y1;
+        this.count++;
+    }
+
+    /**
+     * Adds the area of a rectangle with the one pixel wide outlines on its
+     * right and lower sides, the way blocks are drawn.
+     *
+     * @param area the rectangle.
+     */
+    public void add(Rectangle area) {
+        add((int) Math.floor(area.getLeftX()),
+            (int) Math.floor(area.getUpperY()),
+            (int) Math.ceil(area.getRightX()) + OUTLINE,
+            (int) Math.ceil(area.getLowerY()) + OUTLINE);
+    }
+
+    /**
+     * Adds the rectangles of other dirty regions.
+     *
+     * @param other the other regions.
+     */
+    public void addAll(DirtyRegions other) {
+        // goes over the rectangles of the other regions.
+        for (int i = 0; i < other.count; i++) {
+            add(other.minX[i], other.minY[i], other.maxX[i], other.maxY[i]);
+        }
+    }
+
+    /**
+     * Marks the whole screen as changed.
+     */
+    public void addScreen() {
+        this.count = 0;
+        add(0, 0, this.width, this.height);
+    }
+
+    /**
+     * Removes all the rectangles.
+     */
+    public void clear() {
+        this.count = 0;
+    }
+
+    /**
+     * Unites the rectangles that overlap or are close, until no two
+     * rectangles overlap.
+     */
+    public void merge() {
+        boolean merged = true;
+        // goes over the rectangles again while any two were united.
+        while (merged) {
+            merged = false;
+            // goes over the pairs of rectangles.
+            for (int i = 0; i < this.count; i++) {
+                int j = i + 1;
+                // goes over the rectangles after the first of the pair.
+                while (j < this.count) {
+                    // checks if the pair is cheaper to draw as one.
+                    if (overlap(i, j) || wasted(i, j) <= SLACK_PIXELS) {
+                        unite(i, j);
+                        merged = true;
+                    } else {
+                        j++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if two rectangles overlap.
+     *
+     * @param i the first rectangle.
+     * @param j the second rectangle.
+     * @return true if they share a pixel, false otherwise.
+     */
+    private boolean overlap(int i, int j) {
+        return this.minX[i] < this.maxX[j] && this.minX[j] < this.maxX[i]
+                && this.minY[i] < this.maxY[j] && this.minY[j] < this.maxY[i];
+    }
+
+    /**
+     * Gets the number of pixels that are in the bounding box of two
+     * rectangles but in neither of them, assuming they don't overlap.
+     *
+     * @param i the first rectangle.
+     * @param j the second rectangle.
+     * @return the number of wasted pixels.
+     */
+    private long wasted(int i, int j) {
+        long united = (long) (Math.max(this.maxX[i], this.maxX[j])
+                            - Math.min(this.minX[i], this.minX[j]))
+                    * (Math.max(this.maxY[i], this.maxY[j])
+                            - Math.min(this.minY[i], this.minY[j]));
+        return united - area(i) - area(j);
+    }
+
+    /**
+     * Gets the number of pixels in a rectangle.
+     *
+     * @param i the rectangle.
+     * @return the area of the rectangle.
+     */
+    private long area(int i) {
+        return (long) (this.maxX[i] - this.minX[i])
+                * (this.maxY[i] - this.minY[i]);
+    }
+
+    /**
+     * Unites the second rectangle into the first one, and moves the last
+     * rectangle into the place of the second.
+     *
+     * @param i the first rectangle.
+     * @param j the second rectangle.
+     */
+    private void unite(int i, int j) {
+        this.minX[i] = Math.min(this.minX[i], this.minX[j]);
+        this.minY[i] = Math.min(this.minY[i], this.minY[j]);
+        this.maxX[i] = Math.max(this.maxX[i], this.maxX[j]);
+        this.maxY[i] = Math.max(this.maxY[i], this.maxY[j]);
+        this.count--;
+        this.minX[j] = this.minX[this.count];
+        this.minY[j] = this.minY[this.count];
+        this.maxX[j] = this.maxX[this.count];
+        this.maxY[j] = this.maxY[this.count];
+    }
+
+    /**
+     * Finds the rectangle whose area grows the least when it is united with
+     * another rectangle.
+     *
+     * @param x0 the left side of the other rectangle.
+     * @param y0 the upper side of the other rectangle.
+     * @param x1 the right side of the other rectangle.
+     * @param y1 the lower side of the other rectangle.
+     * @return the rectangle that grows the least.
+     */
+    private int leastGrowing(int x0, int y0, int x1, int y1) {
+        int best = 0;
+        long bestGrowth = Long.MAX_VALUE;
+        // goes over the rectangles.
+        for (int i = 0; i < this.count; i++) {
+            long area = (long) (this.maxX[i] - this.minX[i])
+                        * (this.maxY[i] - this.minY[i]);
+            long united = (long) (Math.max(this.maxX[i], x1)
+                                - Math.min(this.minX[i], x0))
+                        * (Math.max(this.maxY[i], y1)
+                                - Math.min(this.minY[i], y0));
+            // checks if this rectangle grows less than the best one.
+            if (united - area < bestGrowth) {
+                bestGrowth = united - area;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the number of rectangles.
+     *
+     * @return the number of rectangles.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Checks if nothing changed.
+     *
+     * @return true if there are no rectangles, false otherwise.
+     */
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * Gets the left side of a rectangle.
+     *
+     * @param i the rectangle.
+     * @return the left side.
+     */
+    public int getMinX(int i) {
+        return this.minX[i];
+    }
+
+    /**
+     * Gets the upper side of a rectangle.
+     *
+     * @param i the rectangle.
+     * @return the upper side.
+     */
+    public int getMinY(int i) {
+        return this.minY[i];
+    }
+
+    /**
+     * Gets the right side of a rectangle, which is outside of it.
+     *
+     * @param i the rectangle.
+     * @return the right side.
+     */
+    public int getMaxX(int i) {
+        return this.maxX[i];
+    }
+
+    /**
+     * Gets the lower side of a rectangle, which is outside of it.
+     *
+     * @param i the rectangle.
+     * @return the lower side.
+     */
+    public int getMaxY(int i) {
+        return this.maxY[i];
+    }
+}
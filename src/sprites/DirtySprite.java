@@ -0,0 +1,41 @@
+package sprites;
+
+/**
+ * The interface Dirty sprite, a sprite that knows the area it was drawn in
+ * and the area it is about to be drawn in, so a frame only has to draw
+ * again the areas that changed since the previous one.
+ * @author Max Shabs
+ */
+public interface DirtySprite extends Sprite {
+    /**
+     * Adds the areas the sprite changes in the next frame to the dirty
+     * regions, which are the area it was drawn in and the area it is drawn
+     * in now, or nothing if it is drawn the same. The area it is drawn in
+     * now becomes the one it was drawn in.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprite is drawn.
+     */
+    void addDirtyAreas(DirtyRegions regions, double alpha);
+
+    /**
+     * Adds the area the sprite was last drawn in to the dirty regions, for
+     * example when the sprite is removed.
+     *
+     * @param regions the dirty regions.
+     */
+    void addDrawnArea(DirtyRegions regions);
+
+    /**
+     * Checks if the sprite draws in a part of an area, where it is drawn
+     * now.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the sprite draws in the area, false otherwise.
+     */
+    boolean intersects(int minX, int minY, int maxX, int maxY);
+}
@@ -0,0 +1,240 @@
+package sprites;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Represents a batch of the draws of a frame, defined by the commands the
+ * sprites made on it and the bucket of every command. A bucket holds the
+ * commands of a draw layer, a pass and a color, and the buckets are sorted
+ * by their layer, then the fills of a layer come before its outlines and
+ * its outlines before its texts, and then by the color. A frame has few
+ * buckets, so only they are sorted, and the commands are placed in them in
+ * a single pass, keeping the order they were made in. Submitting the batch
+ * draws the sorted commands on a surface and only sets the color when it
+ * changes, so the blocks of a color and all the black outlines cost a
+ * single color change each.
+ * The arrays are reused by the next frame, so batching doesn't allocate
+ * once they are large enough. The texts and images aren't copied, so they
+ * must not change until the batch is submitted.
+ * @author Max Shabs
+ */
+public class DrawBatch extends DrawCommands {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int FILL_PASS = 0;
+    private static final int OUTLINE_PASS = 1;
+    private static final int TEXT_PASS = 2;
+    private static final int INITIAL_BUCKETS = 16;
+    private static final int LAYER_SHIFT = 26;
+    private static final int PASS_SHIFT = 24;
+    private static final int RGB_MASK = 0xFFFFFF;
+    private int[] bucketOf;
+    private int[] order;
+    private int[] bucketKeys;
+    private int[] bucketSizes;
+    private int[] bucketStarts;
+    private int[] sortedBuckets;
+    private int bucketCount;
+    private int lastBucket;
+    private int layer;
+    private Color color;
+    private int colorChanges;
+    private int colorSwitches;
+
+    /**
+     * Instantiates a new empty batch.
+     */
+    public DrawBatch() {
+        super(0, 0);
+        this.bucketOf = new int[INITIAL_CAPACITY];
+        this.order = new int[INITIAL_CAPACITY];
+        this.bucketKeys = new int[INITIAL_BUCKETS];
+        this.bucketSizes = new int[INITIAL_BUCKETS];
+        this.bucketStarts = new int[INITIAL_BUCKETS];
+        this.sortedBuckets = new int[INITIAL_BUCKETS];
+    }
+
+    /**
+     * Removes the commands of the last frame, so a new frame can be batched
+     * for a surface, whose size the batch has until it is submitted.
+     *
+     * @param d the surface the batch is submitted to.
+     */
+    public void begin(DrawSurface d) {
+        setSize(d.getWidth(), d.getHeight());
+        clear();
+        this.bucketCount = 0;
+        this.lastBucket = -1;
+        this.layer = 0;
+        this.color = null;
+        this.colorChanges = 0;
+    }
+
+    /**
+     * Sets the draw layer of the next commands, before a sprite is drawn.
+     *
+     * @param drawLayer the draw layer, as one of DrawLayers.
+     */
+    public void setLayer(int drawLayer) {
+        this.layer = drawLayer;
+    }
+
+    /**
+     * Draws the batched commands, sorted, on a surface.
+     *
+     * @param d the surface.
+     */
+    public void submit(DrawSurface d) {
+        sortCommands();
+        this.colorSwitches = replay(d, this.order, getCommandCount());
+    }
+
+    /**
+     * Sorts the buckets by their keys, with an insertion sort since there
+     * are few of them, and places the commands in the order of their
+     * buckets.
+     */
+    private void sortCommands() {
+        int[] sorted = this.sortedBuckets;
+        // goes over the buckets.
+        for (int b = 0; b < this.bucketCount; b++) {
+            int key = this.bucketKeys[b];
+            int j = b;
+            // goes over the sorted buckets with larger keys.
+            while (j > 0 && this.bucketKeys[sorted[j - 1]] > key) {
+                sorted[j] = sorted[j - 1];
+                j--;
+            }
+            sorted[j] = b;
+        }
+        int start = 0;
+        // goes over the sorted buckets.
+        for (int k = 0; k < this.bucketCount; k++) {
+            int b = sorted[k];
+            this.bucketStarts[b] = start;
+            start += this.bucketSizes[b];
+        }
+        // checks if the order is too small for the commands.
+        if (this.order.length < getCommandCount()) {
+            this.order = new int[this.bucketOf.length];
+        }
+        // goes over the commands, in the order they were made.
+        for (int c = 0; c < getCommandCount(); c++) {
+            int b = this.bucketOf[c];
+            this.order[this.bucketStarts[b]] = c;
+            this.bucketStarts[b]++;
+        }
+    }
+
+    /**
+     * Gets the bucket of a key, adding a bucket if the key is new.
+     *
+     * @param key the layer, pass and color of a command.
+     * @return the bucket.
+     */
+    private int bucket(int key) {
+        // checks if the key is the one of the last command.
+        if (this.lastBucket >= 0 && this.bucketKeys[this.lastBucket] == key) {
+            return this.lastBucket;
+        }
+        int b = 0;
+        // goes over the buckets until one has the key.
+        while (b < this.bucketCount && this.bucketKeys[b] != key) {
+            b++;
+        }
+        // checks if the key is new.
+        if (b == this.bucketCount) {
+            // checks if the buckets are full.
+            if (b == this.bucketKeys.length) {
+                int capacity = 2 * b;
+                this.bucketKeys = Arrays.copyOf(this.bucketKeys, capacity);
+                this.bucketSizes = Arrays.copyOf(this.bucketSizes, capacity);
+                this.bucketStarts = new int[capacity];
+                this.sortedBuckets = new int[capacity];
+            }
+            this.bucketKeys[b] = key;
+            this.bucketSizes[b] = 0;
+            this.bucketCount++;
+        }
+        this.lastBucket = b;
+        return b;
+    }
+
+    /**
+     * Gets the number of times the sprites changed the color in the last
+     * batch, which is how many color changes drawing them unbatched costs.
+     *
+     * @return the number of color changes the sprites made.
+     */
+    public int getColorChanges() {
+        return this.colorChanges;
+    }
+
+    /**
+     * Gets the number of times the color was set when the last batch was
+     * submitted.
+     *
+     * @return the number of color changes the batch made.
+     */
+    public int getColorSwitches() {
+        return this.colorSwitches;
+    }
+
+    /**
+     * Places a recorded command in the bucket of its layer, pass and color.
+     *
+     * @param c the command.
+     */
+    @Override
+    void commandAdded(int c) {
+        // checks if the bucket array is full.
+        if (c == this.bucketOf.length) {
+            this.bucketOf = Arrays.copyOf(this.bucketOf,
+                                          2 * this.bucketOf.length);
+        }
+        int kind = getKind(c);
+        int rgb = 0;
+        Color commandColor = getColor(c);
+        // checks if the command depends on the color.
+        if (commandColor != null) {
+            rgb = commandColor.getRGB() & RGB_MASK;
+        }
+        int b = bucket((this.layer << LAYER_SHIFT) | (pass(kind) << PASS_SHIFT)
+                        | rgb);
+        this.bucketOf[c] = b;
+        this.bucketSizes[b]++;
+    }
+
+    /**
+     * Gets the pass a kind of command is drawn in.
+     *
+     * @param kind the kind of the command.
+     * @return the pass.
+     */
+    private static int pass(int kind) {
+        switch (kind) {
+            case FILL_OVAL:
+            case FILL_RECTANGLE:
+            case FILL_CIRCLE:
+            case FILL_POLYGON:
+            case DRAW_IMAGE:
+                return FILL_PASS;
+            case DRAW_TEXT:
+                return TEXT_PASS;
+            default:
+                return OUTLINE_PASS;
+        }
+    }
+
+    @Override
+    public void setColor(Color c) {
+        // checks if the color changes.
+        if (this.color == null || c.getRGB() != this.color.getRGB()) {
+            this.colorChanges++;
+        }
+        this.color = c;
+        super.setColor(c);
+    }
+}
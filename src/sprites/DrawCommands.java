@@ -0,0 +1,358 @@
+package sprites;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.util.Arrays;
+
+/**
+ * Represents the drawing commands made on a surface, defined by the kind of
+ * every command, its integer arguments, the color it is drawn in and its
+ * text, image or polygon. The commands can be replayed on another surface,
+ * all of them in the order they were made or any of them in a given order,
+ * and the color is only set when it changes. The recorders that keep the
+ * commands of a frame for later, sort them or bin them into tiles extend
+ * this one and only add their own order or index of the commands.
+ * The arrays are reused after the commands are cleared, so recording
+ * doesn't allocate once they are large enough. Polygons are copied, since a
+ * sprite may change its polygon after drawing it, but texts and images
+ * aren't.
+ * @author Max Shabs
+ */
+public class DrawCommands implements DrawSurface {
+    static final int DRAW_LINE = 0;
+    static final int DRAW_OVAL = 1;
+    static final int FILL_OVAL = 2;
+    static final int DRAW_RECTANGLE = 3;
+    static final int FILL_RECTANGLE = 4;
+    static final int DRAW_IMAGE = 5;
+    static final int DRAW_CIRCLE = 6;
+    static final int FILL_CIRCLE = 7;
+    static final int DRAW_TEXT = 8;
+    static final int DRAW_POLYGON = 9;
+    static final int FILL_POLYGON = 10;
+    static final int ARGUMENTS = 4;
+    private static final int INITIAL_CAPACITY = 256;
+    private int width;
+    private int height;
+    private int[] kinds;
+    private int[] ints;
+    private Color[] colors;
+    private Object[] refs;
+    private int count;
+    private Color color;
+
+    /**
+     * Instantiates a new empty recorder of a surface's size.
+     *
+     * @param width  the width of the surface.
+     * @param height the height of the surface.
+     */
+    public DrawCommands(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.kinds = new int[INITIAL_CAPACITY];
+        this.ints = new int[INITIAL_CAPACITY * ARGUMENTS];
+        this.colors = new Color[INITIAL_CAPACITY];
+        this.refs = new Object[INITIAL_CAPACITY];
+        this.count = 0;
+        this.color = null;
+    }
+
+    /**
+     * Removes the recorded commands, so a new frame can be recorded.
+     */
+    public void clear() {
+        Arrays.fill(this.colors, 0, this.count, null);
+        Arrays.fill(this.refs, 0, this.count, null);
+        this.count = 0;
+        this.color = null;
+    }
+
+    /**
+     * Sets the size of the surface the commands are recorded for.
+     *
+     * @param newWidth  the width of the surface.
+     * @param newHeight the height of the surface.
+     */
+    void setSize(int newWidth, int newHeight) {
+        this.width = newWidth;
+        this.height = newHeight;
+    }
+
+    /**
+     * Gets the number of recorded commands.
+     *
+     * @return the number of commands.
+     */
+    public int getCommandCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the kind of a command.
+     *
+     * @param c the command.
+     * @return the kind, as one of the kinds of this class.
+     */
+    int getKind(int c) {
+        return this.kinds[c];
+    }
+
+    /**
+     * Gets an integer argument of a command.
+     *
+     * @param c the command.
+     * @param k the number of the argument, from 0.
+     * @return the argument.
+     */
+    int getArgument(int c, int k) {
+        return this.ints[c * ARGUMENTS + k];
+    }
+
+    /**
+     * Gets the color a command is drawn in.
+     *
+     * @param c the command.
+     * @return the color, null for an image or if no color was set.
+     */
+    Color getColor(int c) {
+        return this.colors[c];
+    }
+
+    /**
+     * Gets the text, image or polygon of a command.
+     *
+     * @param c the command.
+     * @return the object, null if the command has none.
+     */
+    Object getRef(int c) {
+        return this.refs[c];
+    }
+
+    /**
+     * Called after a command was recorded, so a recorder that extends this
+     * one can sort or bin it.
+     *
+     * @param c the command.
+     */
+    void commandAdded(int c) {
+        return;
+    }
+
+    /**
+     * Draws the recorded commands, in the order they were made, on a
+     * surface.
+     *
+     * @param d the surface.
+     */
+    public void replay(DrawSurface d) {
+        Color current = null;
+        // goes over the recorded commands.
+        for (int c = 0; c < this.count; c++) {
+            current = replayColor(c, current, d);
+            replayCommand(c, d);
+        }
+    }
+
+    /**
+     * Draws some of the recorded commands, in a given order, on a surface.
+     *
+     * @param d        the surface.
+     * @param order    the commands, in the order they are drawn.
+     * @param commands the number of commands in the order.
+     * @return the number of times the color was set.
+     */
+    int replay(DrawSurface d, int[] order, int commands) {
+        Color current = null;
+        int switches = 0;
+        // goes over the commands in the order.
+        for (int k = 0; k < commands; k++) {
+            int c = order[k];
+            Color next = replayColor(c, current, d);
+            // checks if the color was set.
+            if (next != current) {
+                switches++;
+            }
+            current = next;
+            replayCommand(c, d);
+        }
+        return switches;
+    }
+
+    /**
+     * Sets the color of a command on a surface, if it is another color than
+     * the one the surface has.
+     *
+     * @param c       the command.
+     * @param current the color of the surface, null if it wasn't set.
+     * @param d       the surface.
+     * @return the color of the surface after the command's color is set.
+     */
+    private Color replayColor(int c, Color current, DrawSurface d) {
+        Color commandColor = this.colors[c];
+        // checks if the command is drawn in another color.
+        if (commandColor != null && (current == null
+                || commandColor.getRGB() != current.getRGB())) {
+            d.setColor(commandColor);
+            return commandColor;
+        }
+        return current;
+    }
+
+    /**
+     * Draws a single command on a surface, in the surface's color.
+     *
+     * @param c the command.
+     * @param d the surface.
+     */
+    private void replayCommand(int c, DrawSurface d) {
+        int[] in = this.ints;
+        int i = c * ARGUMENTS;
+        switch (this.kinds[c]) {
+            case DRAW_LINE:
+                d.drawLine(in[i], in[i + 1], in[i + 2], in[i + 3]);
+                break;
+            case DRAW_OVAL:
+                d.drawOval(in[i], in[i + 1], in[i + 2], in[i + 3]);
+                break;
+            case FILL_OVAL:
+                d.fillOval(in[i], in[i + 1], in[i + 2], in[i + 3]);
+                break;
+            case DRAW_RECTANGLE:
+                d.drawRectangle(in[i], in[i + 1], in[i + 2], in[i + 3]);
+                break;
+            case FILL_RECTANGLE:
+                d.fillRectangle(in[i], in[i + 1], in[i + 2], in[i + 3]);
+                break;
+            case DRAW_IMAGE:
+                d.drawImage(in[i], in[i + 1], (Image) this.refs[c]);
+                break;
+            case DRAW_CIRCLE:
+                d.drawCircle(in[i], in[i + 1], in[i + 2]);
+                break;
+            case FILL_CIRCLE:
+                d.fillCircle(in[i], in[i + 1], in[i + 2]);
+                break;
+            case DRAW_TEXT:
+                d.drawText(in[i], in[i + 1], (String) this.refs[c],
+                            in[i + 2]);
+                break;
+            case DRAW_POLYGON:
+                d.drawPolygon((Polygon) this.refs[c]);
+                break;
+            default:
+                d.fillPolygon((Polygon) this.refs[c]);
+                break;
+        }
+    }
+
+    /**
+     * Records a command in the current color.
+     *
+     * @param kind the kind of the command.
+     * @param a    the first argument.
+     * @param b    the second argument.
+     * @param c    the third argument.
+     * @param e    the fourth argument.
+     * @param ref  the text, image or polygon of the command, if it has one.
+     */
+    private void record(int kind, int a, int b, int c, int e, Object ref) {
+        // checks if the arrays are full.
+        if (this.count == this.kinds.length) {
+            int capacity = 2 * this.kinds.length;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.ints = Arrays.copyOf(this.ints, capacity * ARGUMENTS);
+            this.colors = Arrays.copyOf(this.colors, capacity);
+            this.refs = Arrays.copyOf(this.refs, capacity);
+        }
+        int command = this.count;
+        int i = command * ARGUMENTS;
+        this.kinds[command] = kind;
+        this.ints[i] = a;
+        this.ints[i + 1] = b;
+        this.ints[i + 2] = c;
+        this.ints[i + 3] = e;
+        // checks if the command depends on the color.
+        if (kind != DRAW_IMAGE) {
+            this.colors[command] = this.color;
+        }
+        this.refs[command] = ref;
+        this.count++;
+        commandAdded(command);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        this.color = c;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        record(DRAW_LINE, x1, y1, x2, y2, null);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        record(DRAW_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        record(FILL_OVAL, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        record(DRAW_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        record(FILL_RECTANGLE, x, y, w, h, null);
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image image) {
+        record(DRAW_IMAGE, x, y, 0, 0, image);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        record(DRAW_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        record(FILL_CIRCLE, x, y, r, 0, null);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        record(DRAW_TEXT, x, y, fontSize, 0, text);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        record(DRAW_POLYGON, 0, 0, 0, 0,
+                new Polygon(p.xpoints, p.ypoints, p.npoints));
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        record(FILL_POLYGON, 0, 0, 0, 0,
+                new Polygon(p.xpoints, p.ypoints, p.npoints));
+    }
+}
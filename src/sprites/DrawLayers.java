@@ -0,0 +1,66 @@
+package sprites;
+
+/**
+ * The draw layers of the game, from the bottom one. A layer is drawn over
+ * all the layers under it, and when the draws are batched the draws inside
+ * a layer may be reordered by their color, so the sprites of a layer are
+ * expected not to overlap, or to look the same in any order.
+ * @author Max Shabs
+ */
+public final class DrawLayers {
+    /**
+     * The background of the level and the static layer.
+     */
+    public static final int BACKGROUND = 0;
+    /**
+     * The walls and the blocks.
+     */
+    public static final int BLOCKS = 1;
+    /**
+     * The paddle.
+     */
+    public static final int PADDLE = 2;
+    /**
+     * The balls.
+     */
+    public static final int BALLS = 3;
+    /**
+     * The score, the level name and the other texts over the game.
+     */
+    public static final int HUD = 4;
+
+    /**
+     * The layers can't be instantiated.
+     */
+    private DrawLayers() {
+    }
+
+    /**
+     * Gets the layer a sprite is drawn in by its kind. The background of a
+     * level is a block like the others, so it is given its layer when it is
+     * added. Any sprite of another kind is put in the texts layer, over the
+     * balls, so it should be added with its layer if it belongs lower.
+     *
+     * @param s the sprite.
+     * @return the draw layer, the texts layer for an unknown sprite.
+     */
+    public static int of(Sprite s) {
+        // checks if the sprite is the static layer.
+        if (s instanceof StaticLayer) {
+            return BACKGROUND;
+        }
+        // checks if the sprite is a block or a map of blocks.
+        if (s instanceof StaticSprite) {
+            return BLOCKS;
+        }
+        // checks if the sprite is the paddle.
+        if (s instanceof Paddle) {
+            return PADDLE;
+        }
+        // checks if the sprite is a ball.
+        if (s instanceof Ball) {
+            return BALLS;
+        }
+        return HUD;
+    }
+}
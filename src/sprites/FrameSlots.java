@@ -0,0 +1,111 @@
+package sprites;
+
+import animation.FrameFence;
+
+import java.util.Arrays;
+
+/**
+ * Represents the images a renderer draws frames into, defined by the fence
+ * of the shown frames and the frame every image was last drawn in. An
+ * image is only given out again once the frame it was drawn in was
+ * replaced on the screen, so the gui never reads an image while it is
+ * drawn into. Images are added up to a limit while none is free, after
+ * that the renderer waits for the oldest one, and only if that can't be
+ * released before the frame is shown (like while a nested animation runs)
+ * one more image is added.
+ * @author Max Shabs
+ */
+class FrameSlots {
+    private final FrameFence fence;
+    private final int limit;
+    private long[] frames;
+    private int count;
+
+    /**
+     * Instantiates new slots, none of which has an image yet.
+     *
+     * @param fence the fence of the shown frames.
+     * @param limit the number of images added before waiting for one.
+     */
+    FrameSlots(FrameFence fence, int limit) {
+        this.fence = fence;
+        this.limit = Math.max(limit, 1);
+        this.frames = new long[this.limit];
+        this.count = 0;
+    }
+
+    /**
+     * Gets the number of slots, which the arrays of the images should be
+     * able to hold.
+     *
+     * @return the number of slots.
+     */
+    int capacity() {
+        return this.frames.length;
+    }
+
+    /**
+     * Gets a slot whose image may be drawn into, and marks it as drawn in
+     * the current frame. A slot that wasn't given before has no image yet.
+     *
+     * @param preferred the slot to give if it is free, like the one with
+     *                  the image of the last frame.
+     * @return the slot.
+     */
+    int acquire(int preferred) {
+        int slot = find(preferred);
+        this.frames[slot] = this.fence.currentFrame();
+        return slot;
+    }
+
+    /**
+     * Marks a slot as drawn in the current frame, like an image that is
+     * shown again without being drawn into.
+     *
+     * @param slot the slot.
+     */
+    void use(int slot) {
+        this.frames[slot] = this.fence.currentFrame();
+    }
+
+    /**
+     * Finds a free slot, adding or waiting for one if there isn't.
+     *
+     * @param preferred the slot to give if it is free.
+     * @return the slot.
+     */
+    private int find(int preferred) {
+        // checks if the preferred slot is free.
+        if (preferred < this.count
+                && this.fence.isReleased(this.frames[preferred])) {
+            return preferred;
+        }
+        int oldest = 0;
+        // goes over the slots that were given.
+        for (int i = 0; i < this.count; i++) {
+            // checks if the image of the slot isn't shown.
+            if (this.fence.isReleased(this.frames[i])) {
+                return i;
+            }
+            // checks if the slot was drawn before the oldest one so far.
+            if (this.frames[i] < this.frames[oldest]) {
+                oldest = i;
+            }
+        }
+        // checks if another image may be added.
+        if (this.count < this.limit) {
+            this.count++;
+            return this.count - 1;
+        }
+        // checks if the oldest image is released after waiting.
+        if (this.fence.awaitRelease(this.frames[oldest])) {
+            return oldest;
+        }
+        // checks if the slots are full.
+        if (this.count == this.frames.length) {
+            this.frames = Arrays.copyOf(this.frames, 2 * this.frames.length);
+        }
+        this.count++;
+        return this.count - 1;
+    }
+}
@@ -0,0 +1,75 @@
+package sprites;
+
+import animation.FrameFence;
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Represents a software renderer, defined by the framebuffer surfaces it
+ * draws into. Every frame the sprites are drawn from scratch into the
+ * pixels of the next framebuffer, and the gui is given the framebuffer as a
+ * single image, instead of a command for every sprite it draws. Clearing
+ * and copying the whole screen cost about as much as drawing a light
+ * level, so this pays off with hundreds of balls and blocks, and goes
+ * best with the dirty region renderer, which draws only what changed.
+ * The renderer may keep several framebuffers, since the gui reads the image
+ * of a frame until a later frame replaced it on the screen, so a frame is
+ * only drawn into a framebuffer no shown frame holds.
+ * @author Max Shabs
+ */
+public class FramebufferRenderer {
+    private int width;
+    private int height;
+    private FramebufferSurface[] framebuffers;
+    private FrameSlots slots;
+    private int current;
+
+    /**
+     * Instantiates a new renderer.
+     *
+     * @param width        the width of the screen.
+     * @param height       the height of the screen.
+     * @param fence        the fence of the frames shown on the gui.
+     * @param framebuffers the number of framebuffers the renderer keeps
+     *                     before it waits for one that isn't shown.
+     */
+    public FramebufferRenderer(int width, int height, FrameFence fence,
+                               int framebuffers) {
+        this.width = width;
+        this.height = height;
+        this.slots = new FrameSlots(fence, framebuffers);
+        this.framebuffers = new FramebufferSurface[this.slots.capacity()];
+        this.current = 0;
+    }
+
+    /**
+     * Draws the sprites into a framebuffer no shown frame holds, and the
+     * framebuffer on the surface.
+     *
+     * @param d       the surface.
+     * @param sprites the sprites, in the order they are drawn.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprites are drawn.
+     */
+    public void render(DrawSurface d, SpriteCollection sprites,
+                       double alpha) {
+        int next = this.slots.acquire(this.current);
+        // checks if the slots outgrew the framebuffers.
+        if (next >= this.framebuffers.length) {
+            this.framebuffers = Arrays.copyOf(this.framebuffers,
+                                              this.slots.capacity());
+        }
+        // checks if the next framebuffer wasn't created yet.
+        if (this.framebuffers[next] == null) {
+            this.framebuffers[next] = new FramebufferSurface(this.width,
+                                                             this.height);
+        }
+        FramebufferSurface framebuffer = this.framebuffers[next];
+        framebuffer.clear(Color.BLACK);
+        sprites.drawAllOn(framebuffer, alpha);
+        this.current = next;
+        d.drawImage(0, 0, framebuffer.getImage());
+    }
+}
@@ -0,0 +1,460 @@
+package sprites;
+
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Represents a draw surface that rasterizes in software, defined by an
+ * image and the array of its pixels. Rectangles, their outlines, ovals and
+ * circles are written straight into the array as runs of pixels, with no
+ * graphics call per primitive, which is most of the cost of drawing
+ * thousands of blocks. The runs of an oval are traced once per size by a
+ * graphics on a small image and kept, so every primitive covers exactly the
+ * pixels the gui would draw. Lines, polygons, texts and images are drawn by
+ * a graphics on the same image. The pixels are in an opaque image, so the
+ * image is shown with a single copy instead of a blend.
+ * @author Max Shabs
+ */
+public class FramebufferSurface implements DrawSurface {
+    private static final int CACHED_OVALS = 16;
+    private static final int MAX_TRACED = 512;
+    private static final int OPAQUE = 0xFF000000;
+    private int width;
+    private int height;
+    private BufferedImage image;
+    private int[] pixels;
+    private Graphics2D graphics;
+    private DrawSurface fallback;
+    private Color color;
+    private int rgb;
+    private boolean graphicsColored;
+    private int clipMinX;
+    private int clipMinY;
+    private int clipMaxX;
+    private int clipMaxY;
+    private boolean graphicsClipped;
+    private OvalRuns[] ovals;
+    private int nextOval;
+
+    /**
+     * Instantiates a new surface over a new black image.
+     *
+     * @param width  the width of the surface.
+     * @param height the height of the surface.
+     */
+    public FramebufferSurface(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+    }
+
+    /**
+     * Instantiates a new surface over an existing image, so several
+     * surfaces can draw into different clips of the same pixels.
+     *
+     * @param image the image, whose pixels are in a single int array.
+     */
+    FramebufferSurface(BufferedImage image) {
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.image = image;
+        this.pixels = ((DataBufferInt) this.image.getRaster()
+                .getDataBuffer()).getData();
+        this.graphics = this.image.createGraphics();
+        this.fallback = new GraphicsDrawSurface(this.graphics, this.width,
+                                                this.height);
+        this.color = Color.BLACK;
+        this.rgb = OPAQUE;
+        this.graphicsColored = false;
+        this.ovals = new OvalRuns[CACHED_OVALS];
+        this.nextOval = 0;
+        clearClip();
+    }
+
+    /**
+     * Checks if an oval is too big to keep its runs, so it is drawn by the
+     * graphics of the image instead of written into the pixels.
+     *
+     * @param w the width of the oval.
+     * @param h the height of the oval.
+     * @return true if the oval is drawn by the graphics.
+     */
+    static boolean isTooBigToTrace(int w, int h) {
+        return w > MAX_TRACED || h > MAX_TRACED;
+    }
+
+    /**
+     * Gets the image the surface draws into.
+     *
+     * @return the image.
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Limits the drawing to a rectangle of the surface, until the clip is
+     * set again or cleared.
+     *
+     * @param minX the left side of the rectangle.
+     * @param minY the upper side of the rectangle.
+     * @param maxX the right side of the rectangle, which is outside of it.
+     * @param maxY the lower side of the rectangle, which is outside of it.
+     */
+    public void setClip(int minX, int minY, int maxX, int maxY) {
+        this.clipMinX = Math.max(minX, 0);
+        this.clipMinY = Math.max(minY, 0);
+        this.clipMaxX = Math.min(maxX, this.width);
+        this.clipMaxY = Math.min(maxY, this.height);
+        this.graphicsClipped = false;
+    }
+
+    /**
+     * Lets the drawing cover the whole surface again.
+     */
+    public void clearClip() {
+        setClip(0, 0, this.width, this.height);
+    }
+
+    /**
+     * Fills the clipped part of the surface with a color.
+     *
+     * @param c the color.
+     */
+    public void clear(Color c) {
+        Color previous = this.color;
+        setColor(c);
+        fillRectangle(this.clipMinX, this.clipMinY,
+                      this.clipMaxX - this.clipMinX,
+                      this.clipMaxY - this.clipMinY);
+        setColor(previous);
+    }
+
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public void setColor(Color c) {
+        this.color = c;
+        this.rgb = c.getRGB() | OPAQUE;
+        this.graphicsColored = false;
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        graphicsSurface().drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void drawOval(int x, int y, int w, int h) {
+        // checks if the oval is too big to keep its runs.
+        if (isTooBigToTrace(w, h)) {
+            graphicsSurface().drawOval(x, y, w, h);
+            return;
+        }
+        drawRuns(oval(w, h, false), x, y);
+    }
+
+    @Override
+    public void fillOval(int x, int y, int w, int h) {
+        // checks if the oval is too big to keep its runs.
+        if (isTooBigToTrace(w, h)) {
+            graphicsSurface().fillOval(x, y, w, h);
+            return;
+        }
+        drawRuns(oval(w, h, true), x, y);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        // checks if the outline is inverted, which draws nothing.
+        if (w < 0 || h < 0) {
+            return;
+        }
+        // checks if the outline is a single line or a single pixel.
+        if (w == 0 || h == 0) {
+            fillRectangle(x, y, w + 1, h + 1);
+            return;
+        }
+        fillRectangle(x, y, w + 1, 1);
+        fillRectangle(x, y + 1, 1, h - 1);
+        fillRectangle(x + w, y + 1, 1, h - 1);
+        fillRectangle(x, y + h, w + 1, 1);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        int x0 = Math.max(x, this.clipMinX);
+        int y0 = Math.max(y, this.clipMinY);
+        int x1 = (int) Math.min((long) x + w, this.clipMaxX);
+        int y1 = (int) Math.min((long) y + h, this.clipMaxY);
+        // checks if the rectangle is empty or outside of the clip.
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        // goes over the rows of the rectangle.
+        for (int row = y0; row < y1; row++) {
+            int start = row * this.width;
+            Arrays.fill(this.pixels, start + x0, start + x1, this.rgb);
+        }
+    }
+
+    @Override
+    public void drawImage(int x, int y, Image img) {
+        graphicsSurface().drawImage(x, y, img);
+    }
+
+    @Override
+    public void drawCircle(int x, int y, int r) {
+        drawOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void fillCircle(int x, int y, int r) {
+        fillOval(x - r, y - r, 2 * r, 2 * r);
+    }
+
+    @Override
+    public void drawText(int x, int y, String text, int fontSize) {
+        graphicsSurface().drawText(x, y, text, fontSize);
+    }
+
+    @Override
+    public void drawPolygon(Polygon p) {
+        graphicsSurface().drawPolygon(p);
+    }
+
+    @Override
+    public void fillPolygon(Polygon p) {
+        graphicsSurface().fillPolygon(p);
+    }
+
+    /**
+     * Gets the surface that draws with the graphics of the image, after
+     * giving the graphics the color and the clip of this surface.
+     *
+     * @return the graphics surface.
+     */
+    private DrawSurface graphicsSurface() {
+        // checks if the graphics has an older color.
+        if (!this.graphicsColored) {
+            this.fallback.setColor(this.color);
+            this.graphicsColored = true;
+        }
+        // checks if the graphics has an older clip.
+        if (!this.graphicsClipped) {
+            this.graphics.setClip(this.clipMinX, this.clipMinY,
+                                  this.clipMaxX - this.clipMinX,
+                                  this.clipMaxY - this.clipMinY);
+            this.graphicsClipped = true;
+        }
+        return this.fallback;
+    }
+
+    /**
+     * Writes the runs of an oval into the pixels, clipped.
+     *
+     * @param runs the runs of the oval, null if it draws nothing.
+     * @param x    the left side of the oval.
+     * @param y    the upper side of the oval.
+     */
+    private void drawRuns(OvalRuns runs, int x, int y) {
+        // checks if the oval draws nothing.
+        if (runs == null) {
+            return;
+        }
+        int top = y + runs.top();
+        int fromRow = Math.max(this.clipMinY - top, 0);
+        int toRow = Math.min(this.clipMaxY - top, runs.rows());
+        // goes over the rows of the oval inside the clip.
+        for (int row = fromRow; row < toRow; row++) {
+            int start = (top + row) * this.width;
+            // goes over the runs of the row.
+            for (int i = runs.first(row); i < runs.first(row + 1); i++) {
+                int x0 = Math.max(x + runs.from(i), this.clipMinX);
+                int x1 = Math.min(x + runs.to(i), this.clipMaxX);
+                // checks if the run is inside the clip.
+                if (x0 < x1) {
+                    Arrays.fill(this.pixels, start + x0, start + x1,
+                                this.rgb);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the runs of an oval by its size, tracing them if they aren't
+     * kept.
+     *
+     * @param w      the width of the oval.
+     * @param h      the height of the oval.
+     * @param filled true for a filled oval, false for its outline.
+     * @return the runs, null if the oval draws nothing.
+     */
+    private OvalRuns oval(int w, int h, boolean filled) {
+        // checks if the oval is inverted, which draws nothing.
+        if (w < 0 || h < 0) {
+            return null;
+        }
+        // goes over the kept ovals.
+        for (OvalRuns runs : this.ovals) {
+            // checks if the oval has the same size and kind.
+            if (runs != null && runs.is(w, h, filled)) {
+                return runs;
+            }
+        }
+        OvalRuns runs = new OvalRuns(w, h, filled);
+        this.ovals[this.nextOval] = runs;
+        this.nextOval = (this.nextOval + 1) % CACHED_OVALS;
+        return runs;
+    }
+
+    /**
+     * Represents the runs of pixels an oval of a certain size covers,
+     * defined by the runs of each row relative to the upper left corner of
+     * the oval. A run includes its left side but not its right one.
+     */
+    private static final class OvalRuns {
+        private static final int MARGIN = 2;
+        private int width;
+        private int height;
+        private boolean filled;
+        private int top;
+        private int[] firsts;
+        private int[] froms;
+        private int[] tos;
+
+        /**
+         * Traces the runs of an oval by drawing it on a small image.
+         *
+         * @param w      the width of the oval.
+         * @param h      the height of the oval.
+         * @param filled true for a filled oval, false for its outline.
+         */
+        OvalRuns(int w, int h, boolean filled) {
+            this.width = w;
+            this.height = h;
+            this.filled = filled;
+            int size = Math.max(w, h) + 2 * MARGIN + 1;
+            BufferedImage trace = new BufferedImage(size, size,
+                                                BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = trace.createGraphics();
+            g.setColor(Color.WHITE);
+            // checks if the oval is filled.
+            if (filled) {
+                g.fillOval(MARGIN, MARGIN, w, h);
+            } else {
+                g.drawOval(MARGIN, MARGIN, w, h);
+            }
+            g.dispose();
+            int[] traced = ((DataBufferInt) trace.getRaster()
+                    .getDataBuffer()).getData();
+            this.top = -MARGIN;
+            this.firsts = new int[size + 1];
+            int[] from = new int[2 * size];
+            int[] to = new int[2 * size];
+            int count = 0;
+            // goes over the rows of the trace.
+            for (int row = 0; row < size; row++) {
+                this.firsts[row] = count;
+                int col = 0;
+                // goes over the pixels of the row.
+                while (col < size) {
+                    // checks if a run starts at the pixel.
+                    if (traced[row * size + col] != 0) {
+                        // checks if there is no room for another run.
+                        if (count == from.length) {
+                            from = Arrays.copyOf(from, 2 * count);
+                            to = Arrays.copyOf(to, 2 * count);
+                        }
+                        from[count] = col - MARGIN;
+                        // goes over the pixels of the run.
+                        while (col < size && traced[row * size + col] != 0) {
+                            col++;
+                        }
+                        to[count] = col - MARGIN;
+                        count++;
+                    } else {
+                        col++;
+                    }
+                }
+            }
+            this.firsts[size] = count;
+            this.froms = Arrays.copyOf(from, count);
+            this.tos = Arrays.copyOf(to, count);
+        }
+
+        /**
+         * Checks if the runs are of an oval of a certain size and kind.
+         *
+         * @param w the width of the oval.
+         * @param h the height of the oval.
+         * @param f true for a filled oval, false for its outline.
+         * @return true if they are, false otherwise.
+         */
+        boolean is(int w, int h, boolean f) {
+            return this.width == w && this.height == h && this.filled == f;
+        }
+
+        /**
+         * Gets the first row of the runs.
+         *
+         * @return the row, relative to the upper side of the oval.
+         */
+        int top() {
+            return this.top;
+        }
+
+        /**
+         * Gets the number of rows the runs are in.
+         *
+         * @return the number of rows.
+         */
+        int rows() {
+            return this.firsts.length - 1;
+        }
+
+        /**
+         * Gets the first run of a row.
+         *
+         * @param row the row.
+         * @return the index of the first run, or of the first run of the
+         *         next rows if the row has none.
+         */
+        int first(int row) {
+            return this.firsts[row];
+        }
+
+        /**
+         * Gets the left side of a run.
+         *
+         * @param i the run.
+         * @return the left side, relative to the oval.
+         */
+        int from(int i) {
+            return this.froms[i];
+        }
+
+        /**
+         * Gets the right side of a run, which is outside of it.
+         *
+         * @param i the run.
+         * @return the right side, relative to the oval.
+         */
+        int to(int i) {
+            return this.tos[i];
+        }
+    }
+}
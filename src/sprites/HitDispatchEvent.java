@@ -0,0 +1,30 @@
+package sprites;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The flight recorder event of notifying the hit listeners of a block.
+ * @author Max Shabs
+ */
+@Name("arkanoid.HitDispatch")
+@Label("Hit Dispatch")
+@Category({"Arkanoid", "Collision"})
+@Description("Notifying the hit listeners of a block that a ball hit it")
+@StackTrace(false)
+@Enabled(false)
+@Threshold("20 us")
+class HitDispatchEvent extends Event {
+    @Label("Listeners")
+    int listeners;
+
+    @Label("Category")
+    @Description("The collision category of the block")
+    int category;
+}
@@ -0,0 +1,21 @@
+package sprites;
+
+import biuoop.DrawSurface;
+
+/**
+ * The interface Interpolated sprite, a sprite that remembers where it was
+ * before its last move, so it can be drawn in between the two places when
+ * the drawing is faster than the simulation.
+ * @author Max Shabs
+ */
+public interface InterpolatedSprite extends Sprite {
+    /**
+     * Draws the sprite between where it was before its last move and where
+     * it is now.
+     *
+     * @param d     the surface.
+     * @param alpha how far from the previous place (0) to the current one
+     *              (1) the sprite is drawn.
+     */
+    void drawOn(DrawSurface d, double alpha);
+}
@@ -6,8 +6,12 @@ import game.LevelInformation;
 /**
  * The type Level name, defined by level info.
  */
-public class LevelName implements Sprite {
+public class LevelName implements DirtySprite {
+    private static final int AREA_LEFT_X = 600;
+    private static final int AREA_RIGHT_X = 800;
+    private static final int AREA_HEIGHT = 18;
     private LevelInformation levelInfo;
+    private boolean hasDrawnArea;
 
     /**
      * Instantiates a new Level name.
@@ -28,6 +32,48 @@ public class LevelName implements Sprite {
         d.drawText(600, 14, "Level Name: " + levelInfo.levelName(), 13);
     }
 
+    /**
+     * Adds the area of the name to the dirty regions the first time it is
+     * drawn, since the name doesn't change.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprite is drawn, which doesn't move it.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        // checks if the name was drawn.
+        if (!this.hasDrawnArea) {
+            this.hasDrawnArea = true;
+            addDrawnArea(regions);
+        }
+    }
+
+    /**
+     * Adds the area of the name to the dirty regions.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        regions.add(AREA_LEFT_X, 0, AREA_RIGHT_X, AREA_HEIGHT);
+    }
+
+    /**
+     * Checks if the name is in a part of an area.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the name is in the area, false otherwise.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        return AREA_LEFT_X < maxX && AREA_RIGHT_X > minX && 0 < maxY
+                && AREA_HEIGHT > minY;
+    }
+
     /**
      * Notify the sprite that time has passed.
      */
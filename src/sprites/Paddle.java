@@ -3,6 +3,7 @@ package sprites;
 import biuoop.DrawSurface;
 import biuoop.KeyboardSensor;
 import collision.Collidable;
+import collision.CollisionLayers;
 import game.GameLevel;
 import geometry.Point;
 import geometry.Rectangle;
@@ -14,7 +15,7 @@ import java.awt.Color;
  * Represents a paddle, defined by keyboard, paddle surface and color.
  * @author Max Shabs
  */
-public class Paddle implements Sprite, Collidable {
+public class Paddle implements InterpolatedSprite, DirtySprite, Collidable {
     private static final double EPSILON = 0.00001;
     private static final double HEIGHT = 15.0;
     private static final double LEFT_BORDER = 20.0;
@@ -23,7 +24,12 @@ public class Paddle implements Sprite, Collidable {
     private Rectangle paddleSurface;
     private Color color;
     private int paddleSpeed;
+    private double stepScale;
+    private double previousX;
+    private boolean hasDrawnArea;
+    private int drawnX;
     private int paddleWidth;
+    private GameLevel game;
 
     /**
      * Instantiates a new paddle.
@@ -39,6 +45,8 @@ public class Paddle implements Sprite, Collidable {
                 580 - HEIGHT), paddleWidth, HEIGHT);
         color = Color.ORANGE;
         this.paddleSpeed = paddleSpeed;
+        this.stepScale = 1;
+        this.previousX = this.paddleSurface.getUpperLeft().getX();
         this.paddleWidth = paddleWidth;
     }
 
@@ -48,12 +56,13 @@ public class Paddle implements Sprite, Collidable {
     public void moveLeft() {
         double curUpLeftX = this.paddleSurface.getUpperLeft().getX();
         double curUpLeftY = this.paddleSurface.getUpperLeft().getY();
+        double step = this.paddleSpeed * this.stepScale;
         // checks if the paddle hasn't reached the border.
-        if (LEFT_BORDER <= curUpLeftX - this.paddleSpeed) {
-            this.paddleSurface = new Rectangle(new Point(curUpLeftX
-                                                        - this.paddleSpeed,
+        if (LEFT_BORDER <= curUpLeftX - step) {
+            this.paddleSurface = new Rectangle(new Point(curUpLeftX - step,
                                                 curUpLeftY), this.paddleWidth,
                                                 HEIGHT);
+            notifyMoved();
         }
     }
 
@@ -64,12 +73,33 @@ public class Paddle implements Sprite, Collidable {
         double curUpRightX = this.paddleSurface.getUpperRight().getX();
         double curUpLeftX = this.paddleSurface.getUpperLeft().getX();
         double curUpLeftY = this.paddleSurface.getUpperLeft().getY();
+        double step = this.paddleSpeed * this.stepScale;
         // checks if the paddle hasn't reached the border.
-        if (RIGHT_BORDER >= curUpRightX + this.paddleSpeed) {
-            this.paddleSurface = new Rectangle(new Point(curUpLeftX
-                                                + this.paddleSpeed,
+        if (RIGHT_BORDER >= curUpRightX + step) {
+            this.paddleSurface = new Rectangle(new Point(curUpLeftX + step,
                                                 curUpLeftY), this.paddleWidth,
                                                 HEIGHT);
+            notifyMoved();
+        }
+    }
+
+    /**
+     * Sets the part of the paddle's speed it moves in a single step, which
+     * is smaller with a faster tick rate.
+     *
+     * @param scale the part of the speed moved in a step, 1 by default.
+     */
+    public void setStepScale(double scale) {
+        this.stepScale = scale;
+    }
+
+    /**
+     * Notifies the game that the paddle's collision rectangle has changed.
+     */
+    private void notifyMoved() {
+        // checks if the paddle was added to a game.
+        if (this.game != null) {
+            this.game.updateCollidable(this);
         }
     }
 
@@ -78,6 +108,7 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public void timePassed() {
+        this.previousX = this.paddleSurface.getUpperLeft().getX();
         // checks if the key pressed was the left key.
         if (keyboard.isPressed(KeyboardSensor.LEFT_KEY)) {
             moveLeft();
@@ -94,13 +125,110 @@ public class Paddle implements Sprite, Collidable {
      */
     @Override
     public void drawOn(DrawSurface d) {
+        drawAt(d, this.paddleSurface.getUpperLeft().getX());
+    }
+
+    /**
+     * Draws the paddle between its place before its last move and its
+     * current place.
+     *
+     * @param d     the surface which the paddle will be drawn on.
+     * @param alpha how far from the previous place (0) to the current one
+     *              (1) the paddle is drawn.
+     */
+    @Override
+    public void drawOn(DrawSurface d, double alpha) {
+        drawAt(d, xAt(alpha));
+    }
+
+    /**
+     * Gets the x coordinate of the left side the paddle is drawn at, between
+     * its place before its last move and its current place.
+     *
+     * @param alpha how far from the previous place (0) to the current one
+     *              (1) the paddle is drawn.
+     * @return the x coordinate.
+     */
+    private double xAt(double alpha) {
+        double x = this.paddleSurface.getUpperLeft().getX();
+        // checks if the paddle is drawn at its current place.
+        if (alpha >= 1) {
+            return x;
+        }
+        return this.previousX + alpha * (x - this.previousX);
+    }
+
+    /**
+     * Adds the area the paddle was drawn in and the one it is drawn in now
+     * to the dirty regions, if the paddle moved by a pixel.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous place (0) to the current one
+     *                (1) the paddle is drawn.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        int x = (int) xAt(alpha);
+        // checks if the paddle is drawn where it was drawn.
+        if (this.hasDrawnArea && x == this.drawnX) {
+            return;
+        }
+        addDrawnArea(regions);
+        this.drawnX = x;
+        this.hasDrawnArea = true;
+        addDrawnArea(regions);
+    }
+
+    /**
+     * Adds the area the paddle was last drawn in, with its outline, to the
+     * dirty regions.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        // checks if the paddle was drawn.
+        if (this.hasDrawnArea) {
+            int y = (int) this.paddleSurface.getUpperLeft().getY();
+            regions.add(this.drawnX, y,
+                    this.drawnX + (int) this.paddleSurface.getWidth() + 1,
+                    y + (int) this.paddleSurface.getHeight() + 1);
+        }
+    }
+
+    /**
+     * Checks if the paddle, where it is drawn now, draws in a part of an
+     * area.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the paddle draws in the area, false otherwise.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        int y = (int) this.paddleSurface.getUpperLeft().getY();
+        return this.drawnX < maxX
+                && this.drawnX + (int) this.paddleSurface.getWidth() >= minX
+                && y < maxY
+                && y + (int) this.paddleSurface.getHeight() >= minY;
+    }
+
+    /**
+     * Draws the paddle with its left side at a given x coordinate.
+     *
+     * @param d the surface which the paddle will be drawn on.
+     * @param x the x coordinate of the left side.
+     */
+    private void drawAt(DrawSurface d, double x) {
         d.setColor(this.color);
-        d.fillRectangle((int) this.paddleSurface.getUpperLeft().getX(),
+        d.fillRectangle((int) x,
                 (int) this.paddleSurface.getUpperLeft().getY(),
                 (int) this.paddleSurface.getWidth(),
                 (int) this.paddleSurface.getHeight());
         d.setColor(Color.BLACK);
-        d.drawRectangle((int) this.paddleSurface.getUpperLeft().getX(),
+        d.drawRectangle((int) x,
                 (int) this.paddleSurface.getUpperLeft().getY(),
                 (int) this.paddleSurface.getWidth(),
                 (int) this.paddleSurface.getHeight());
@@ -114,6 +242,15 @@ public class Paddle implements Sprite, Collidable {
     public Rectangle getCollisionRectangle() {
         return this.paddleSurface;
     }
+    /**
+     * Gets the collision category of the paddle.
+     *
+     * @return the paddle layer.
+     */
+    @Override
+    public int getCollisionCategory() {
+        return CollisionLayers.PADDLE;
+    }
     /**
      * Changes the direction of the object that hit the paddle.
      *
@@ -168,6 +305,7 @@ public class Paddle implements Sprite, Collidable {
      * @param g the game object.
      */
     public void addToGame(GameLevel g) {
+        this.game = g;
         g.addSprite(this);
         g.addCollidable(this);
     }
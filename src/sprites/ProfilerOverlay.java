@@ -0,0 +1,148 @@
+package sprites;
+
+import animation.FrameProfiler;
+import biuoop.DrawSurface;
+import game.Substepper;
+
+import java.awt.Color;
+
+/**
+ * The type Profiler overlay, defined by a frame profiler and the lines of
+ * text it shows. The lines show the p50, p99 and max time of every phase
+ * of the frames, and the substeps of the last frame if the balls are
+ * substepped. They are only rebuilt every few frames, so drawing the
+ * overlay doesn't allocate in between.
+ * @author Max Shabs
+ */
+public class ProfilerOverlay implements DirtySprite {
+    private static final int REFRESH_FRAMES = 30;
+    private static final int TEXT_X = 25;
+    private static final int TEXT_Y = 60;
+    private static final int LINE_HEIGHT = 14;
+    private static final int TEXT_SIZE = 12;
+    private static final int AREA_WIDTH = 300;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private FrameProfiler profiler;
+    private Substepper substepper;
+    private String[] lines;
+    private int frames;
+    private boolean changed;
+
+    /**
+     * Instantiates a new Profiler overlay.
+     *
+     * @param profiler   the profiler whose phases are shown.
+     * @param substepper the substepper whose substeps are shown, null if
+     *                   the balls aren't substepped.
+     */
+    public ProfilerOverlay(FrameProfiler profiler, Substepper substepper) {
+        this.profiler = profiler;
+        this.substepper = substepper;
+        int count = FrameProfiler.phaseCount() + 1;
+        // checks if a line of substeps is shown.
+        if (substepper != null) {
+            count++;
+        }
+        this.lines = new String[count];
+        this.frames = 0;
+        refresh();
+    }
+
+    /**
+     * Rebuilds the lines of text from the profiler.
+     */
+    private void refresh() {
+        this.lines[0] = "phase: p50 / p99 / max ms";
+        // goes over the phases.
+        for (int i = 0; i < FrameProfiler.phaseCount(); i++) {
+            this.lines[i + 1] = String.format("%s: %.2f / %.2f / %.2f",
+                    FrameProfiler.nameOf(i),
+                    this.profiler.percentile(i, 50) / NANOS_PER_MILLI,
+                    this.profiler.percentile(i, 99) / NANOS_PER_MILLI,
+                    this.profiler.max(i) / NANOS_PER_MILLI);
+        }
+        // checks if the substeps are shown.
+        if (this.substepper != null) {
+            this.lines[this.lines.length - 1] = String.format(
+                    "substeps: %d / max %d of %d / capped %d",
+                    this.substepper.getFrameSubsteps(),
+                    this.substepper.getFrameMaxSubsteps(),
+                    this.substepper.getCap(),
+                    this.substepper.getFrameCappedBalls());
+        }
+        this.changed = true;
+    }
+
+    /**
+     * Draws a sprite on the surface.
+     *
+     * @param d surface.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        d.setColor(Color.YELLOW);
+        // goes over the lines.
+        for (int i = 0; i < this.lines.length; i++) {
+            d.drawText(TEXT_X, TEXT_Y + i * LINE_HEIGHT, this.lines[i],
+                        TEXT_SIZE);
+        }
+    }
+
+    /**
+     * Adds the area of the lines to the dirty regions, if they were rebuilt
+     * since they were drawn.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprite is drawn, which doesn't move it.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        // checks if the lines were rebuilt.
+        if (this.changed) {
+            this.changed = false;
+            addDrawnArea(regions);
+        }
+    }
+
+    /**
+     * Adds the area of the lines to the dirty regions.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        regions.add(TEXT_X, TEXT_Y - LINE_HEIGHT, TEXT_X + AREA_WIDTH,
+                    TEXT_Y + this.lines.length * LINE_HEIGHT);
+    }
+
+    /**
+     * Checks if the lines are in a part of an area.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the lines are in the area, false otherwise.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        return TEXT_X < maxX && TEXT_X + AREA_WIDTH > minX
+                && TEXT_Y - LINE_HEIGHT < maxY
+                && TEXT_Y + this.lines.length * LINE_HEIGHT > minY;
+    }
+
+    /**
+     * Notify the sprite that time has passed, rebuilding the lines every
+     * few frames.
+     */
+    @Override
+    public void timePassed() {
+        this.frames++;
+        // checks if the lines are due to be rebuilt.
+        if (this.frames == REFRESH_FRAMES) {
+            this.frames = 0;
+            refresh();
+        }
+    }
+}
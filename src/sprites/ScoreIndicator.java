@@ -9,7 +9,7 @@ import java.awt.Color;
  * The type Score indicator defined by score.
  * @author Max Shabs
  */
-public class ScoreIndicator implements Sprite {
+public class ScoreIndicator implements DirtySprite {
     private static final int BACKGROUND_WIDTH = 800;
     private static final int BACKGROUND_HEIGHT = 18;
     private static final int BACKGROUND_TOP_LEFT_X = 0;
@@ -18,6 +18,8 @@ public class ScoreIndicator implements Sprite {
     private static final int SCORE_TOP_LEFT_Y = 14;
     private static final int TEXT_SIZE = 13;
     private Counter score;
+    private boolean hasDrawnArea;
+    private int drawnScore;
 
     /**
      * Instantiates a new Score indicator.
@@ -41,6 +43,55 @@ public class ScoreIndicator implements Sprite {
         d.drawText(SCORE_TOP_LEFT_X, SCORE_TOP_LEFT_Y,
                 "Score:" + this.score.getValue(), TEXT_SIZE);
     }
+
+    /**
+     * Adds the bar of the score to the dirty regions, if the score changed
+     * since it was drawn.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprite is drawn, which doesn't move it.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        int value = this.score.getValue();
+        // checks if the score is drawn as it was drawn.
+        if (this.hasDrawnArea && value == this.drawnScore) {
+            return;
+        }
+        this.drawnScore = value;
+        this.hasDrawnArea = true;
+        addDrawnArea(regions);
+    }
+
+    /**
+     * Adds the bar of the score to the dirty regions.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        regions.add(BACKGROUND_TOP_LEFT_X, BACKGROUND_TOP_LEFT_Y,
+                    BACKGROUND_TOP_LEFT_X + BACKGROUND_WIDTH,
+                    BACKGROUND_TOP_LEFT_Y + BACKGROUND_HEIGHT);
+    }
+
+    /**
+     * Checks if the bar of the score is in a part of an area.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true if the bar is in the area, false otherwise.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        return BACKGROUND_TOP_LEFT_X < maxX
+                && BACKGROUND_TOP_LEFT_X + BACKGROUND_WIDTH > minX
+                && BACKGROUND_TOP_LEFT_Y < maxY
+                && BACKGROUND_TOP_LEFT_Y + BACKGROUND_HEIGHT > minY;
+    }
     /**
      * Notify the sprite that time has passed.
      */
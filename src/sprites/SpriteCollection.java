@@ -1,49 +1,192 @@
 package sprites;
 
 import biuoop.DrawSurface;
+import geometry.Rectangle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Represents a collection of sprites, defined by a list of sprites.
+ * Represents a collection of sprites, defined by an array of sprite slots
+ * and the slot of every sprite. Removing a sprite only empties its slot,
+ * and the empty slots are compacted once a frame, so removing k sprites in
+ * a frame costs O(k) instead of shifting the list k times.
+ * Every slot also has the draw layer of its sprite. When the draws are
+ * batched the sprites are drawn into a draw batch, which draws them sorted
+ * by their layers and colors instead of in the order they were added.
  * @author Max Shabs
  */
 public class SpriteCollection {
-    private List<Sprite> spritesList;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int OUTLINE = 1;
+    private Sprite[] slots;
+    private Map<Sprite, Integer> slotOf;
+    private int size;
+    private int removed;
+    private int[] masks;
+    private int[] layers;
+    private DrawBatch batch;
 
     /**
      * Instantiates a new collection of sprites.
      */
     public SpriteCollection() {
-        spritesList = new ArrayList<>();
+        this.slots = new Sprite[INITIAL_CAPACITY];
+        this.slotOf = new IdentityHashMap<>();
+        this.size = 0;
+        this.removed = 0;
+        this.masks = new int[INITIAL_CAPACITY];
+        this.layers = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Sets if the sprites are drawn through a draw batch, which sorts their
+     * draws by their layers and colors.
+     *
+     * @param batched true to batch the draws, false to draw the sprites in
+     *                the order they were added.
+     */
+    public void setDrawBatching(boolean batched) {
+        // checks if the draws are batched.
+        if (batched) {
+            this.batch = new DrawBatch();
+        } else {
+            this.batch = null;
+        }
+    }
+
+    /**
+     * Gets the draw batch of the sprites, whose counters show the color
+     * changes of the last batched frame.
+     *
+     * @return the draw batch, null if the draws aren't batched.
+     */
+    public DrawBatch getDrawBatch() {
+        return this.batch;
     }
 
     /**
      * Gets sprites list.
      *
-     * @return the sprites list.
+     * @return a new list of the sprites, in the order they were added.
      */
     public List<Sprite> getSpritesList() {
-        return this.spritesList;
+        List<Sprite> list = new ArrayList<>(this.size - this.removed);
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            // checks if the slot wasn't emptied.
+            if (this.slots[i] != null) {
+                list.add(this.slots[i]);
+            }
+        }
+        return list;
     }
 
     /**
-     * Adds sprite to the sprite collection.
+     * Adds sprite to the sprite collection, in the draw layer of its kind.
      *
      * @param s the sprite we want to add.
      */
     public void addSprite(Sprite s) {
-        spritesList.add(s);
+        addSprite(s, DrawLayers.of(s));
+    }
+
+    /**
+     * Adds sprite to the sprite collection in a draw layer.
+     *
+     * @param s     the sprite we want to add.
+     * @param layer the draw layer, as one of DrawLayers.
+     */
+    public void addSprite(Sprite s, int layer) {
+        // checks if the slots are full.
+        if (this.size == this.slots.length) {
+            this.slots = Arrays.copyOf(this.slots, 2 * this.slots.length);
+            this.layers = Arrays.copyOf(this.layers, this.slots.length);
+        }
+        this.slots[this.size] = s;
+        this.layers[this.size] = layer;
+        this.slotOf.put(s, this.size);
+        this.size++;
+    }
+
+    /**
+     * Removes a sprite by emptying its slot, until the next compaction.
+     *
+     * @param s the sprite we want to remove.
+     */
+    public void removeSprite(Sprite s) {
+        Integer slot = this.slotOf.remove(s);
+        // checks if the sprite is in the collection.
+        if (slot != null) {
+            this.slots[slot] = null;
+            this.removed++;
+        }
     }
 
     /**
-     * Calls timePassed() on all sprites.
+     * Moves the sprites over the emptied slots, keeping their order.
+     */
+    public void compact() {
+        // checks if no sprite was removed since the last compaction.
+        if (this.removed == 0) {
+            return;
+        }
+        int next = 0;
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the slot wasn't emptied.
+            if (sprite != null) {
+                // checks if the sprite moves to a new slot.
+                if (next != i) {
+                    this.slots[next] = sprite;
+                    this.layers[next] = this.layers[i];
+                    this.slotOf.put(sprite, next);
+                }
+                next++;
+            }
+        }
+        Arrays.fill(this.slots, next, this.size, null);
+        this.size = next;
+        this.removed = 0;
+    }
+
+    /**
+     * Calls timePassed() on all sprites. Sprites added during the call wait
+     * for the next one, and removed sprites are skipped.
      */
     public void notifyAllTimePassed() {
-        List<Sprite> spritesListCopy = new ArrayList<>(this.spritesList);
-        for (Sprite sprite: spritesListCopy) {
-            sprite.timePassed();
+        int end = this.size;
+        // goes over the slots that were used before the call.
+        for (int i = 0; i < end; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the slot wasn't emptied.
+            if (sprite != null) {
+                sprite.timePassed();
+            }
+        }
+    }
+
+    /**
+     * Calls timePassed() on all sprites except the balls, which are added to
+     * a list in their order to be moved by the parallel physics phase.
+     *
+     * @param balls the list the balls are added to.
+     */
+    public void notifyAllTimePassed(List<Ball> balls) {
+        int end = this.size;
+        // goes over the slots that were used before the call.
+        for (int i = 0; i < end; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the sprite is a ball, which is moved later.
+            if (sprite instanceof Ball) {
+                balls.add((Ball) sprite);
+            } else if (sprite != null) {
+                sprite.timePassed();
+            }
         }
     }
 
@@ -53,8 +196,195 @@ public class SpriteCollection {
      * @param d the surface.
      */
     public void drawAllOn(DrawSurface d) {
-        for (Sprite sprite: spritesList) {
-            sprite.drawOn(d);
+        DrawBatch curBatch = this.batch;
+        DrawSurface target = d;
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.begin(d);
+            target = curBatch;
+        }
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the slot wasn't emptied.
+            if (sprite != null) {
+                // checks if the draws of the sprite are batched.
+                if (curBatch != null) {
+                    curBatch.setLayer(this.layers[i]);
+                }
+                sprite.drawOn(target);
+            }
+        }
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.submit(d);
+        }
+    }
+
+    /**
+     * Draws all sprites on a given surface in between the last two ticks.
+     * The interpolated sprites are drawn between their previous and current
+     * places, and the others where they are.
+     *
+     * @param d     the surface.
+     * @param alpha how far from the previous tick (0) to the last one (1).
+     */
+    public void drawAllOn(DrawSurface d, double alpha) {
+        DrawBatch curBatch = this.batch;
+        DrawSurface target = d;
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.begin(d);
+            target = curBatch;
+        }
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the draws of the sprite are batched.
+            if (curBatch != null) {
+                curBatch.setLayer(this.layers[i]);
+            }
+            // checks if the sprite is drawn between its places.
+            if (sprite instanceof InterpolatedSprite) {
+                ((InterpolatedSprite) sprite).drawOn(target, alpha);
+            } else if (sprite != null) {
+                sprite.drawOn(target);
+            }
+        }
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.submit(d);
+        }
+    }
+
+    /**
+     * Adds the areas the sprites change in the next frame to the dirty
+     * regions. A static sprite only changes when the game is told so, and
+     * a sprite that can't tell what it changes marks the whole screen.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprites are drawn.
+     */
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the sprite knows the areas it changes.
+            if (sprite instanceof DirtySprite) {
+                ((DirtySprite) sprite).addDirtyAreas(regions, alpha);
+            } else if (sprite != null && !(sprite instanceof StaticSprite)) {
+                regions.addScreen();
+            }
+        }
+    }
+
+    /**
+     * Marks the rectangles of the dirty regions every sprite draws in, in
+     * the bits of its mask, so the sprites are tested against the regions
+     * once before they are drawn.
+     *
+     * @param regions the merged dirty regions.
+     */
+    public void markRegions(DirtyRegions regions) {
+        // checks if the masks are shorter than the slots.
+        if (this.masks.length < this.slots.length) {
+            this.masks = new int[this.slots.length];
+        }
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            Sprite sprite = this.slots[i];
+            // checks if the slot wasn't emptied.
+            if (sprite != null) {
+                this.masks[i] = regionMask(sprite, regions);
+            } else {
+                this.masks[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Draws the sprites that draw in a rectangle of the marked regions, in
+     * between the last two ticks. The surface is expected to be clipped to
+     * the rectangle.
+     *
+     * @param d      the surface.
+     * @param alpha  how far from the previous tick (0) to the last one (1).
+     * @param region the rectangle of the regions that were last marked.
+     */
+    public void drawAllIn(DrawSurface d, double alpha, int region) {
+        int bit = 1 << region;
+        DrawBatch curBatch = this.batch;
+        DrawSurface target = d;
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.begin(d);
+            target = curBatch;
+        }
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            // checks if the sprite draws in the rectangle.
+            if ((this.masks[i] & bit) != 0) {
+                Sprite sprite = this.slots[i];
+                // checks if the draws of the sprite are batched.
+                if (curBatch != null) {
+                    curBatch.setLayer(this.layers[i]);
+                }
+                // checks if the sprite is drawn between its places.
+                if (sprite instanceof InterpolatedSprite) {
+                    ((InterpolatedSprite) sprite).drawOn(target, alpha);
+                } else {
+                    sprite.drawOn(target);
+                }
+            }
+        }
+        // checks if the draws are batched.
+        if (curBatch != null) {
+            curBatch.submit(d);
+        }
+    }
+
+    /**
+     * Gets the rectangles of dirty regions a sprite draws in, as bits. A
+     * sprite that can't tell where it draws may draw in all of them.
+     *
+     * @param sprite  the sprite.
+     * @param regions the dirty regions.
+     * @return the mask of the rectangles.
+     */
+    private static int regionMask(Sprite sprite, DirtyRegions regions) {
+        int mask = 0;
+        // checks if the sprite knows where it draws.
+        if (sprite instanceof DirtySprite) {
+            DirtySprite dirty = (DirtySprite) sprite;
+            // goes over the rectangles.
+            for (int r = 0; r < regions.size(); r++) {
+                // checks if the sprite draws in the rectangle.
+                if (dirty.intersects(regions.getMinX(r), regions.getMinY(r),
+                                    regions.getMaxX(r), regions.getMaxY(r))) {
+                    mask |= 1 << r;
+                }
+            }
+            return mask;
+        }
+        // checks if the sprite can't tell where it draws.
+        if (!(sprite instanceof StaticSprite)) {
+            return -1;
+        }
+        Rectangle area = ((StaticSprite) sprite).getDrawingArea();
+        double left = area.getLeftX();
+        double upper = area.getUpperY();
+        double right = area.getRightX() + OUTLINE;
+        double lower = area.getLowerY() + OUTLINE;
+        // goes over the rectangles.
+        for (int r = 0; r < regions.size(); r++) {
+            // checks if the area is in the rectangle.
+            if (left < regions.getMaxX(r) && right >= regions.getMinX(r)
+                    && upper < regions.getMaxY(r)
+                    && lower >= regions.getMinY(r)) {
+                mask |= 1 << r;
+            }
         }
+        return mask;
     }
 }
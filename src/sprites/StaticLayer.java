@@ -0,0 +1,519 @@
+package sprites;
+
+import animation.FrameFence;
+import biuoop.DrawSurface;
+import geometry.Rectangle;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Represents a static layer, defined by the static sprites in it and an
+ * image they were drawn into. Every frame the layer draws the image in a
+ * single call, so drawing the backgrounds, walls and blocks doesn't depend
+ * on how many of them there are. When a sprite is added or removed, or a
+ * part of it changes, only the sprites in the changed area are drawn again
+ * into the image, clipped to that area.
+ * Every sprite has a slot, and removing it moves the last sprite into its
+ * slot, so the sprites keep the order they were added in by a number given
+ * to them instead. The layer is split into coarse buckets that hold the
+ * slots of the sprites over them, so a changed area only looks at the
+ * sprites in its buckets, which are drawn sorted by the order they were
+ * added in.
+ * When the bottom sprite is a block that covers the screen the images are
+ * opaque, so drawing them doesn't blend every pixel.
+ * The layer may keep several images, since the gui reads the image a frame
+ * was drawn with until a later frame replaced it on the screen. A changed
+ * area is drawn into the current image if no shown frame holds it, and
+ * otherwise into a free image, after copying the current image into it.
+ * @author Max Shabs
+ */
+public class StaticLayer implements DirtySprite {
+    private static final int OUTLINE = 1;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int BUCKET_SIZE = 64;
+    private static final int SLOT_BITS = 24;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+    private int width;
+    private int height;
+    private BufferedImage[] images;
+    private FrameSlots slots;
+    private int current;
+    private boolean opaque;
+    private StaticSprite[] sprites;
+    private long[] orders;
+    private int[] bucketBounds;
+    private int[] marks;
+    private Map<StaticSprite, Integer> slotOf;
+    private int size;
+    private long nextOrder;
+    private StaticSprite bottom;
+    private int columns;
+    private int rows;
+    private int[][] buckets;
+    private int[] bucketSizes;
+    private long[] found;
+    private int redraws;
+    private boolean dirty;
+    private double dirtyMinX;
+    private double dirtyMinY;
+    private double dirtyMaxX;
+    private double dirtyMaxY;
+
+    /**
+     * Instantiates a new empty static layer.
+     *
+     * @param width   the width of the screen.
+     * @param height  the height of the screen.
+     * @param fence   the fence of the frames shown on the gui.
+     * @param buffers the number of images the layer keeps before it waits
+     *                for one that isn't shown.
+     */
+    public StaticLayer(int width, int height, FrameFence fence,
+                       int buffers) {
+        this.width = width;
+        this.height = height;
+        this.slots = new FrameSlots(fence, buffers);
+        this.images = new BufferedImage[this.slots.capacity()];
+        this.current = 0;
+        this.opaque = false;
+        this.sprites = new StaticSprite[INITIAL_CAPACITY];
+        this.orders = new long[INITIAL_CAPACITY];
+        this.bucketBounds = new int[4 * INITIAL_CAPACITY];
+        this.marks = new int[INITIAL_CAPACITY];
+        this.slotOf = new IdentityHashMap<>();
+        this.size = 0;
+        this.nextOrder = 0;
+        this.bottom = null;
+        this.columns = (width + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.rows = (height + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.buckets = new int[this.columns * this.rows][];
+        this.bucketSizes = new int[this.buckets.length];
+        // goes over the buckets.
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new int[4];
+        }
+        this.found = new long[INITIAL_CAPACITY];
+        this.redraws = 0;
+        this.dirty = false;
+    }
+
+    /**
+     * Adds a static sprite on top of the sprites in the layer.
+     *
+     * @param s the sprite.
+     */
+    public void add(StaticSprite s) {
+        // checks if the slots are full.
+        if (this.size == this.sprites.length) {
+            int capacity = 2 * this.sprites.length;
+            this.sprites = Arrays.copyOf(this.sprites, capacity);
+            this.orders = Arrays.copyOf(this.orders, capacity);
+            this.bucketBounds = Arrays.copyOf(this.bucketBounds, 4 * capacity);
+            this.marks = Arrays.copyOf(this.marks, capacity);
+            this.found = new long[capacity];
+        }
+        int slot = this.size;
+        this.size++;
+        this.sprites[slot] = s;
+        this.orders[slot] = this.nextOrder;
+        this.nextOrder++;
+        this.marks[slot] = this.redraws;
+        this.slotOf.put(s, slot);
+        // checks if the sprite is the only one, so it is the bottom one.
+        if (this.bottom == null) {
+            this.bottom = s;
+        }
+        Rectangle area = s.getDrawingArea();
+        int i = 4 * slot;
+        this.bucketBounds[i] = column(area.getLeftX());
+        this.bucketBounds[i + 1] = row(area.getUpperY());
+        this.bucketBounds[i + 2] = column(area.getRightX() + OUTLINE);
+        this.bucketBounds[i + 3] = row(area.getLowerY() + OUTLINE);
+        // goes over the rows of buckets the sprite is over.
+        for (int r = this.bucketBounds[i + 1]; r <= this.bucketBounds[i + 3];
+                r++) {
+            // goes over the buckets in the row.
+            for (int c = this.bucketBounds[i];
+                    c <= this.bucketBounds[i + 2]; c++) {
+                addToBucket(r * this.columns + c, slot);
+            }
+        }
+        invalidate(area);
+    }
+
+    /**
+     * Removes a static sprite from the layer.
+     *
+     * @param s the sprite.
+     * @return true if the sprite was in the layer, false otherwise.
+     */
+    public boolean remove(StaticSprite s) {
+        Integer slot = this.slotOf.remove(s);
+        // checks if the sprite isn't in the layer.
+        if (slot == null) {
+            return false;
+        }
+        replaceInBuckets(slot, -1);
+        int last = this.size - 1;
+        // checks if another sprite moves into the emptied slot.
+        if (slot != last) {
+            replaceInBuckets(last, slot);
+            StaticSprite moved = this.sprites[last];
+            this.sprites[slot] = moved;
+            this.orders[slot] = this.orders[last];
+            this.marks[slot] = this.marks[last];
+            System.arraycopy(this.bucketBounds, 4 * last, this.bucketBounds,
+                            4 * slot, 4);
+            this.slotOf.put(moved, slot);
+        }
+        this.sprites[last] = null;
+        this.size = last;
+        // checks if the bottom sprite was removed.
+        if (this.bottom == s) {
+            this.bottom = findBottom();
+        }
+        invalidate(s.getDrawingArea());
+        return true;
+    }
+
+    /**
+     * Finds the sprite added first of the ones in the layer.
+     *
+     * @return the bottom sprite, null if the layer is empty.
+     */
+    private StaticSprite findBottom() {
+        int best = -1;
+        // goes over the slots.
+        for (int i = 0; i < this.size; i++) {
+            // checks if the sprite was added before the best one so far.
+            if (best < 0 || this.orders[i] < this.orders[best]) {
+                best = i;
+            }
+        }
+        // checks if the layer is empty.
+        if (best < 0) {
+            return null;
+        }
+        return this.sprites[best];
+    }
+
+    /**
+     * Gets the column of the buckets a coordinate is in, clamped to the
+     * layer.
+     *
+     * @param x the x coordinate.
+     * @return the column.
+     */
+    private int column(double x) {
+        int c = (int) Math.floor(x / BUCKET_SIZE);
+        return Math.max(0, Math.min(this.columns - 1, c));
+    }
+
+    /**
+     * Gets the row of the buckets a coordinate is in, clamped to the layer.
+     *
+     * @param y the y coordinate.
+     * @return the row.
+     */
+    private int row(double y) {
+        int r = (int) Math.floor(y / BUCKET_SIZE);
+        return Math.max(0, Math.min(this.rows - 1, r));
+    }
+
+    /**
+     * Adds a slot to a bucket.
+     *
+     * @param bucket the bucket.
+     * @param slot   the slot.
+     */
+    private void addToBucket(int bucket, int slot) {
+        int count = this.bucketSizes[bucket];
+        // checks if the bucket is full.
+        if (count == this.buckets[bucket].length) {
+            this.buckets[bucket] = Arrays.copyOf(this.buckets[bucket],
+                                                 2 * count);
+        }
+        this.buckets[bucket][count] = slot;
+        this.bucketSizes[bucket] = count + 1;
+    }
+
+    /**
+     * Replaces a slot in the buckets it is in with another slot, or removes
+     * it from them, moving the last slot of every bucket into its place.
+     *
+     * @param slot    the slot.
+     * @param newSlot the slot that replaces it, -1 to remove it.
+     */
+    private void replaceInBuckets(int slot, int newSlot) {
+        int i = 4 * slot;
+        // goes over the rows of buckets the sprite is over.
+        for (int r = this.bucketBounds[i + 1]; r <= this.bucketBounds[i + 3];
+                r++) {
+            // goes over the buckets in the row.
+            for (int c = this.bucketBounds[i];
+                    c <= this.bucketBounds[i + 2]; c++) {
+                int bucket = r * this.columns + c;
+                int[] slots = this.buckets[bucket];
+                int count = this.bucketSizes[bucket];
+                // goes over the slots in the bucket.
+                for (int k = 0; k < count; k++) {
+                    // checks if this is the slot.
+                    if (slots[k] != slot) {
+                        continue;
+                    }
+                    // checks if the slot is replaced by another one.
+                    if (newSlot >= 0) {
+                        slots[k] = newSlot;
+                    } else {
+                        slots[k] = slots[count - 1];
+                        this.bucketSizes[bucket] = count - 1;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the sprites over the buckets of an area, each once, sorted by
+     * the order they were added in.
+     *
+     * @param x   the left side of the area.
+     * @param y   the upper side of the area.
+     * @param toX the right side of the area, which is outside of it.
+     * @param toY the lower side of the area, which is outside of it.
+     * @return the number of sprites found, whose slots are in the low bits
+     *         of the found keys.
+     */
+    private int findSprites(int x, int y, int toX, int toY) {
+        this.redraws++;
+        int count = 0;
+        int toRow = row(toY - 1);
+        int toColumn = column(toX - 1);
+        // goes over the rows of buckets the area is over.
+        for (int r = row(y); r <= toRow; r++) {
+            // goes over the buckets in the row.
+            for (int c = column(x); c <= toColumn; c++) {
+                int bucket = r * this.columns + c;
+                int[] slots = this.buckets[bucket];
+                // goes over the slots in the bucket.
+                for (int k = 0; k < this.bucketSizes[bucket]; k++) {
+                    int slot = slots[k];
+                    // checks if the sprite was already found.
+                    if (this.marks[slot] == this.redraws) {
+                        continue;
+                    }
+                    this.marks[slot] = this.redraws;
+                    this.found[count] = (this.orders[slot] << SLOT_BITS)
+                            | slot;
+                    count++;
+                }
+            }
+        }
+        Arrays.sort(this.found, 0, count);
+        return count;
+    }
+
+    /**
+     * Marks an area of the layer to be drawn again before the next frame,
+     * for example the area of a tile that was removed from a tile map.
+     *
+     * @param area the area that changed.
+     */
+    public void invalidate(Rectangle area) {
+        double minX = area.getLeftX();
+        double minY = area.getUpperY();
+        double maxX = area.getRightX() + OUTLINE;
+        double maxY = area.getLowerY() + OUTLINE;
+        // checks if another area already changed since the last frame.
+        if (this.dirty) {
+            minX = Math.min(minX, this.dirtyMinX);
+            minY = Math.min(minY, this.dirtyMinY);
+            maxX = Math.max(maxX, this.dirtyMaxX);
+            maxY = Math.max(maxY, this.dirtyMaxY);
+        }
+        this.dirtyMinX = minX;
+        this.dirtyMinY = minY;
+        this.dirtyMaxX = maxX;
+        this.dirtyMaxY = maxY;
+        this.dirty = true;
+    }
+
+    /**
+     * Checks if the bottom sprite is a block that covers the whole screen,
+     * so nothing under the layer shows through it.
+     *
+     * @return true if the layer is opaque.
+     */
+    private boolean coversScreen() {
+        // checks if the layer is empty or the bottom sprite isn't a block.
+        if (!(this.bottom instanceof Block)) {
+            return false;
+        }
+        Rectangle area = this.bottom.getDrawingArea();
+        return area.getLeftX() <= 0 && area.getUpperY() <= 0
+                && area.getRightX() >= this.width
+                && area.getLowerY() >= this.height;
+    }
+
+    /**
+     * Drops the images, so they are created again of the right type, opaque
+     * ones if the layer covers the screen, and marks the whole screen to be
+     * drawn. A shown frame keeps the image it holds.
+     *
+     * @param isOpaque true if the layer covers the screen.
+     */
+    private void dropImages(boolean isOpaque) {
+        Arrays.fill(this.images, null);
+        this.opaque = isOpaque;
+        this.dirtyMinX = 0;
+        this.dirtyMinY = 0;
+        this.dirtyMaxX = this.width;
+        this.dirtyMaxY = this.height;
+    }
+
+    /**
+     * Draws the sprites in the changed area into an image no shown frame
+     * holds, after copying the current image into it if it is another one.
+     */
+    private void redraw() {
+        boolean isOpaque = coversScreen();
+        // checks if the images don't exist or have the wrong type.
+        if (this.images[this.current] == null || isOpaque != this.opaque) {
+            dropImages(isOpaque);
+        }
+        int x = Math.max(0, (int) Math.floor(this.dirtyMinX));
+        int y = Math.max(0, (int) Math.floor(this.dirtyMinY));
+        int toX = Math.min(this.width, (int) Math.ceil(this.dirtyMaxX) + 1);
+        int toY = Math.min(this.height, (int) Math.ceil(this.dirtyMaxY) + 1);
+        this.dirty = false;
+        // checks if the changed area is off the screen.
+        if (toX <= x || toY <= y) {
+            return;
+        }
+        int next = this.slots.acquire(this.current);
+        // checks if the slots outgrew the images.
+        if (next >= this.images.length) {
+            this.images = Arrays.copyOf(this.images, this.slots.capacity());
+        }
+        // checks if the slot has no image of the right type yet.
+        if (this.images[next] == null) {
+            int type = BufferedImage.TYPE_INT_ARGB;
+            // checks if the image doesn't need an alpha channel.
+            if (this.opaque) {
+                type = BufferedImage.TYPE_INT_RGB;
+            }
+            this.images[next] = new BufferedImage(this.width, this.height,
+                                                  type);
+        }
+        Graphics2D g = this.images[next].createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        // checks if the next image is another one, which is out of date.
+        if (next != this.current && this.images[this.current] != null) {
+            g.drawImage(this.images[this.current], 0, 0, null);
+        }
+        g.clipRect(x, y, toX - x, toY - y);
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(x, y, toX - x, toY - y);
+        g.setComposite(AlphaComposite.SrcOver);
+        DrawSurface surface = new GraphicsDrawSurface(g, this.width,
+                                                        this.height);
+        int count = findSprites(x, y, toX, toY);
+        // goes over the sprites found in the buckets, from the bottom one.
+        for (int k = 0; k < count; k++) {
+            StaticSprite s = this.sprites[(int) (this.found[k] & SLOT_MASK)];
+            Rectangle area = s.getDrawingArea();
+            // checks if the sprite is in the changed area.
+            if (area.getLeftX() < toX && area.getRightX() + OUTLINE >= x
+                    && area.getUpperY() < toY
+                    && area.getLowerY() + OUTLINE >= y) {
+                s.drawOn(surface);
+            }
+        }
+        g.dispose();
+        this.current = next;
+    }
+
+    /**
+     * Adds the area that changed since the last frame to the dirty regions,
+     * or the whole screen if the images are created again.
+     *
+     * @param regions the dirty regions.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the layer is drawn, which doesn't move it.
+     */
+    @Override
+    public void addDirtyAreas(DirtyRegions regions, double alpha) {
+        // checks if nothing changed since the last frame.
+        if (!this.dirty) {
+            return;
+        }
+        // checks if the images are created again before they are drawn.
+        if (this.images[this.current] == null
+                || coversScreen() != this.opaque) {
+            regions.addScreen();
+            return;
+        }
+        regions.add((int) Math.floor(this.dirtyMinX),
+                    (int) Math.floor(this.dirtyMinY),
+                    (int) Math.ceil(this.dirtyMaxX) + 1,
+                    (int) Math.ceil(this.dirtyMaxY) + 1);
+    }
+
+    /**
+     * Adds the whole screen to the dirty regions, since the layer is drawn
+     * over all of it.
+     *
+     * @param regions the dirty regions.
+     */
+    @Override
+    public void addDrawnArea(DirtyRegions regions) {
+        regions.addScreen();
+    }
+
+    /**
+     * Checks if the layer is in a part of an area, which it always is.
+     *
+     * @param minX the left side of the area.
+     * @param minY the upper side of the area.
+     * @param maxX the right side of the area, which is outside of it.
+     * @param maxY the lower side of the area, which is outside of it.
+     * @return true.
+     */
+    @Override
+    public boolean intersects(int minX, int minY, int maxX, int maxY) {
+        return true;
+    }
+
+    /**
+     * Draws the layer on the surface, drawing the changed area first.
+     *
+     * @param d surface.
+     */
+    @Override
+    public void drawOn(DrawSurface d) {
+        // checks if an area changed since the last frame.
+        if (this.dirty) {
+            redraw();
+        }
+        // checks if nothing was drawn into the layer yet.
+        if (this.images[this.current] == null) {
+            return;
+        }
+        this.slots.use(this.current);
+        d.drawImage(0, 0, this.images[this.current]);
+    }
+
+    /**
+     * Notify the sprite that time has passed.
+     */
+    @Override
+    public void timePassed() {
+        return;
+    }
+}
@@ -0,0 +1,19 @@
+package sprites;
+
+import geometry.Rectangle;
+
+/**
+ * The interface Static sprite, a sprite that looks the same in every frame
+ * unless the game is told that a part of it changed, so it can be drawn
+ * once into a static layer.
+ * @author Max Shabs
+ */
+public interface StaticSprite extends Sprite {
+    /**
+     * Gets the area the sprite draws in, not counting the one pixel wide
+     * outlines on its right and lower sides.
+     *
+     * @return the area of the sprite.
+     */
+    Rectangle getDrawingArea();
+}
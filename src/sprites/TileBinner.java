@@ -0,0 +1,258 @@
+package sprites;
+
+import biuoop.DrawSurface;
+
+import java.awt.Image;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Represents the draws of a frame binned into the tiles of the screen,
+ * defined by the commands the sprites made, in their order, and the
+ * commands whose bounds touch every tile. The bounds are a little larger
+ * than what a command draws, which costs a few extra clipped draws but
+ * never misses a pixel, and a text is bounded by a generous guess of its
+ * size since its font isn't known until it is drawn. Drawing the commands
+ * of a tile in their order, clipped to the tile, gives the tile the same
+ * pixels as drawing all the commands on the whole screen.
+ * A tile is also marked if one of its commands is drawn by a graphics
+ * instead of being written into the pixels, so those tiles can be drawn
+ * apart from the others.
+ * The arrays are reused by the next frame. The texts and images aren't
+ * copied, so they must not change until the tiles are drawn.
+ * @author Max Shabs
+ */
+class TileBinner extends DrawCommands {
+    private static final int INITIAL_BIN = 64;
+    private static final int MARGIN = 2;
+    private static final int TEXT_EMS = 2;
+    private int width;
+    private int height;
+    private int tileWidth;
+    private int tileHeight;
+    private int columns;
+    private int rows;
+    private int[][] bins;
+    private int[] binSizes;
+    private boolean[] graphicsTiles;
+
+    /**
+     * Instantiates a new binner.
+     *
+     * @param width      the width of the screen.
+     * @param height     the height of the screen.
+     * @param tileWidth  the width of a tile.
+     * @param tileHeight the height of a tile.
+     */
+    TileBinner(int width, int height, int tileWidth, int tileHeight) {
+        super(width, height);
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.columns = (width + tileWidth - 1) / tileWidth;
+        this.rows = (height + tileHeight - 1) / tileHeight;
+        this.bins = new int[this.columns * this.rows][];
+        this.binSizes = new int[this.bins.length];
+        this.graphicsTiles = new boolean[this.bins.length];
+        // goes over the tiles.
+        for (int t = 0; t < this.bins.length; t++) {
+            this.bins[t] = new int[INITIAL_BIN];
+        }
+    }
+
+    /**
+     * Removes the commands of the last frame.
+     */
+    void begin() {
+        clear();
+        Arrays.fill(this.binSizes, 0);
+        Arrays.fill(this.graphicsTiles, false);
+    }
+
+    /**
+     * Gets the number of tiles.
+     *
+     * @return the number of tiles.
+     */
+    int tiles() {
+        return this.bins.length;
+    }
+
+    /**
+     * Checks if a tile has a command drawn by a graphics, which isn't safe
+     * to draw at the same time as another tile of the same image.
+     *
+     * @param t the tile.
+     * @return true if the tile draws with a graphics.
+     */
+    boolean usesGraphics(int t) {
+        return this.graphicsTiles[t];
+    }
+
+    /**
+     * Gets the left side of a tile.
+     *
+     * @param t the tile.
+     * @return the left side.
+     */
+    int getMinX(int t) {
+        return (t % this.columns) * this.tileWidth;
+    }
+
+    /**
+     * Gets the upper side of a tile.
+     *
+     * @param t the tile.
+     * @return the upper side.
+     */
+    int getMinY(int t) {
+        return (t / this.columns) * this.tileHeight;
+    }
+
+    /**
+     * Gets the right side of a tile, which is outside of it.
+     *
+     * @param t the tile.
+     * @return the right side.
+     */
+    int getMaxX(int t) {
+        return Math.min(getMinX(t) + this.tileWidth, this.width);
+    }
+
+    /**
+     * Gets the lower side of a tile, which is outside of it.
+     *
+     * @param t the tile.
+     * @return the lower side.
+     */
+    int getMaxY(int t) {
+        return Math.min(getMinY(t) + this.tileHeight, this.height);
+    }
+
+    /**
+     * Draws the commands of a tile on a surface, in their order. The
+     * surface should be clipped to the tile.
+     *
+     * @param t the tile.
+     * @param d the surface.
+     */
+    void drawTile(int t, DrawSurface d) {
+        replay(d, this.bins[t], this.binSizes[t]);
+    }
+
+    /**
+     * Bins a recorded command into the tiles its bounds touch.
+     *
+     * @param c the command.
+     */
+    @Override
+    void commandAdded(int c) {
+        int x = getArgument(c, 0);
+        int y = getArgument(c, 1);
+        int w = getArgument(c, 2);
+        int h = getArgument(c, 3);
+        switch (getKind(c)) {
+            case DRAW_LINE:
+                bin(c, true, (long) Math.min(x, w) - MARGIN,
+                    (long) Math.min(y, h) - MARGIN,
+                    (long) Math.max(x, w) + MARGIN + 1,
+                    (long) Math.max(y, h) + MARGIN + 1);
+                break;
+            case DRAW_OVAL:
+            case FILL_OVAL:
+                bin(c, FramebufferSurface.isTooBigToTrace(w, h),
+                    (long) x - MARGIN, (long) y - MARGIN,
+                    (long) x + w + MARGIN + 1, (long) y + h + MARGIN + 1);
+                break;
+            case DRAW_RECTANGLE:
+                bin(c, false, x, y, (long) x + w + 1, (long) y + h + 1);
+                break;
+            case FILL_RECTANGLE:
+                bin(c, false, x, y, (long) x + w, (long) y + h);
+                break;
+            case DRAW_IMAGE:
+                binImage(c, x, y, (Image) getRef(c));
+                break;
+            case DRAW_CIRCLE:
+            case FILL_CIRCLE:
+                bin(c, FramebufferSurface.isTooBigToTrace(2 * w, 2 * w),
+                    (long) x - w - MARGIN, (long) y - w - MARGIN,
+                    (long) x + w + MARGIN + 1, (long) y + w + MARGIN + 1);
+                break;
+            case DRAW_TEXT:
+                long em = Math.abs((long) w) + MARGIN;
+                bin(c, true, x - em, y - TEXT_EMS * em,
+                    x + TEXT_EMS * em * (((String) getRef(c)).length() + 1),
+                    y + em);
+                break;
+            default:
+                Rectangle box = ((Polygon) getRef(c)).getBounds();
+                bin(c, true, (long) box.x - MARGIN, (long) box.y - MARGIN,
+                    (long) box.x + box.width + MARGIN + 1,
+                    (long) box.y + box.height + MARGIN + 1);
+                break;
+        }
+    }
+
+    /**
+     * Bins an image command by the bounds of the image, or by the whole
+     * screen if its size isn't known yet.
+     *
+     * @param c     the command.
+     * @param x     the left side of the image.
+     * @param y     the upper side of the image.
+     * @param image the image.
+     */
+    private void binImage(int c, int x, int y, Image image) {
+        long maxX = this.width;
+        long maxY = this.height;
+        // checks if the size of the image is known.
+        if (image.getWidth(null) >= 0 && image.getHeight(null) >= 0) {
+            maxX = (long) x + image.getWidth(null);
+            maxY = (long) y + image.getHeight(null);
+        }
+        bin(c, true, x, y, maxX, maxY);
+    }
+
+    /**
+     * Adds a command to the bins of the tiles its bounds touch.
+     *
+     * @param c        the command.
+     * @param graphics true if the command is drawn by a graphics.
+     * @param minX     the left side of the bounds.
+     * @param minY     the upper side of the bounds.
+     * @param maxX     the right side of the bounds, which is outside of
+     *                 them.
+     * @param maxY     the lower side of the bounds, which is outside of them.
+     */
+    private void bin(int c, boolean graphics, long minX, long minY,
+                     long maxX, long maxY) {
+        int x0 = (int) Math.max(minX, 0);
+        int y0 = (int) Math.max(minY, 0);
+        int x1 = (int) Math.min(maxX, this.width);
+        int y1 = (int) Math.min(maxY, this.height);
+        // checks if the bounds are empty or off the screen.
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        int lastColumn = (x1 - 1) / this.tileWidth;
+        int lastRow = (y1 - 1) / this.tileHeight;
+        // goes over the rows of tiles the bounds touch.
+        for (int row = y0 / this.tileHeight; row <= lastRow; row++) {
+            // goes over the tiles of the row the bounds touch.
+            for (int col = x0 / this.tileWidth; col <= lastColumn; col++) {
+                int t = row * this.columns + col;
+                // checks if the bin of the tile is full.
+                if (this.binSizes[t] == this.bins[t].length) {
+                    this.bins[t] = Arrays.copyOf(this.bins[t],
+                                                 2 * this.binSizes[t]);
+                }
+                this.bins[t][this.binSizes[t]] = c;
+                this.binSizes[t]++;
+                this.graphicsTiles[t] |= graphics;
+            }
+        }
+    }
+}
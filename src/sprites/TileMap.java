@@ -0,0 +1,551 @@
+package sprites;
+
+import biuoop.DrawSurface;
+import collision.Collidable;
+import collision.CollisionLayers;
+import collision.CompositeCollidable;
+import collision.HitListener;
+import collision.HitNotifier;
+import game.GameLevel;
+import geometry.Point;
+import geometry.RayHit;
+import geometry.Rectangle;
+import geometry.Velocity;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a grid of blocks of the same size, defined by the position and
+ * size of the tiles, a byte for every tile and a palette of colors. A tile
+ * is 0 if it is empty, or the index of its color in the palette plus 1, so
+ * a tile costs one byte instead of a block object. Trajectories are cast
+ * with an Amanatides-Woo walk over the cells they cross, so a query costs
+ * the number of cells crossed and not the number of tiles.
+ * @author Max Shabs
+ */
+public class TileMap implements CompositeCollidable, StaticSprite,
+                                HitNotifier {
+    private static final int MAX_COLORS = 255;
+    private static final int MAX_EMPTY_TILES_PER_BLOCK = 16;
+    private static final double ALIGN_EPSILON = 0.00001;
+    private static final double TOUCH_MARGIN = 0.001;
+    private double originX;
+    private double originY;
+    private double tileWidth;
+    private double tileHeight;
+    private int columns;
+    private int rows;
+    private byte[] tiles;
+    private Color[] palette;
+    private int tileCount;
+    private Rectangle bounds;
+    private List<HitListener> hitListeners;
+
+    /**
+     * Instantiates a new empty tile map.
+     *
+     * @param upperLeft  the upper left corner of the first tile.
+     * @param tileWidth  the width of a tile.
+     * @param tileHeight the height of a tile.
+     * @param columns    the number of columns.
+     * @param rows       the number of rows.
+     */
+    public TileMap(Point upperLeft, double tileWidth, double tileHeight,
+                   int columns, int rows) {
+        this.originX = upperLeft.getX();
+        this.originY = upperLeft.getY();
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.columns = columns;
+        this.rows = rows;
+        this.tiles = new byte[columns * rows];
+        this.palette = new Color[0];
+        this.tileCount = 0;
+        this.bounds = new Rectangle(upperLeft, columns * tileWidth,
+                                    rows * tileHeight);
+        this.hitListeners = new ArrayList<>();
+    }
+
+    /**
+     * Packs blocks of the same size that lie on a grid into a tile map.
+     *
+     * @param blocks the blocks.
+     * @return the tile map, or null if the blocks can't be packed.
+     */
+    public static TileMap pack(List<Block> blocks) {
+        // checks if there are no blocks to pack.
+        if (blocks.isEmpty()) {
+            return null;
+        }
+        Rectangle first = blocks.get(0).getCollisionRectangle();
+        double width = first.getWidth();
+        double height = first.getHeight();
+        double minX = first.getLeftX();
+        double minY = first.getUpperY();
+        double maxX = first.getRightX();
+        double maxY = first.getLowerY();
+        // goes over the blocks to find the size of the grid.
+        for (Block block : blocks) {
+            Rectangle rect = block.getCollisionRectangle();
+            // checks if the block's size isn't the size of the tiles.
+            if (Math.abs(rect.getWidth() - width) > ALIGN_EPSILON
+                    || Math.abs(rect.getHeight() - height) > ALIGN_EPSILON) {
+                return null;
+            }
+            minX = Math.min(minX, rect.getLeftX());
+            minY = Math.min(minY, rect.getUpperY());
+            maxX = Math.max(maxX, rect.getRightX());
+            maxY = Math.max(maxY, rect.getLowerY());
+        }
+        long columns = Math.round((maxX - minX) / width);
+        long rows = Math.round((maxY - minY) / height);
+        // checks if the grid would be mostly empty tiles.
+        if (columns * rows > (long) MAX_EMPTY_TILES_PER_BLOCK * blocks.size()) {
+            return null;
+        }
+        TileMap map = new TileMap(new Point(minX, minY), width, height,
+                                    (int) columns, (int) rows);
+        // goes over the blocks and places them on the grid.
+        for (Block block : blocks) {
+            Rectangle rect = block.getCollisionRectangle();
+            double column = (rect.getLeftX() - minX) / width;
+            double row = (rect.getUpperY() - minY) / height;
+            // checks if the block isn't aligned to the grid.
+            if (Math.abs(column - Math.rint(column)) > ALIGN_EPSILON
+                    || Math.abs(row - Math.rint(row)) > ALIGN_EPSILON) {
+                return null;
+            }
+            int index = (int) Math.rint(row) * map.columns
+                        + (int) Math.rint(column);
+            // checks if two blocks are on the same tile, or a block's color
+            // doesn't fit in the palette.
+            if (map.tiles[index] != 0
+                    || !map.setTile(index, block.getColor())) {
+                return null;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Sets a tile to a color.
+     *
+     * @param column the column of the tile.
+     * @param row    the row of the tile.
+     * @param color  the color of the tile.
+     * @return true if it was set, false if the palette is full.
+     */
+    public boolean setTile(int column, int row, Color color) {
+        return setTile(row * this.columns + column, color);
+    }
+
+    /**
+     * Gets the smallest side of a tile.
+     *
+     * @return the thinnest side of a tile.
+     */
+    @Override
+    public double thinnestPart() {
+        return Math.min(this.tileWidth, this.tileHeight);
+    }
+
+    /**
+     * Gets the number of tiles that aren't empty.
+     *
+     * @return the number of tiles.
+     */
+    public int getTileCount() {
+        return this.tileCount;
+    }
+
+    /**
+     * Gets the rectangle around all the tiles.
+     *
+     * @return the rectangle.
+     */
+    @Override
+    public Rectangle getCollisionRectangle() {
+        return this.bounds;
+    }
+
+    /**
+     * Gets the area the tiles are drawn in, the rectangle around them.
+     *
+     * @return the rectangle.
+     */
+    @Override
+    public Rectangle getDrawingArea() {
+        return this.bounds;
+    }
+
+    /**
+     * Gets the collision category of the map, the layer of its tiles.
+     *
+     * @return the bricks layer.
+     */
+    @Override
+    public int getCollisionCategory() {
+        return CollisionLayers.BRICKS;
+    }
+
+    /**
+     * The map itself isn't hit, the tiles are (see part), so the velocity
+     * isn't changed.
+     *
+     * @param hitter          the ball that hit the map.
+     * @param collisionPoint  the collision point.
+     * @param currentVelocity the velocity before the hit.
+     * @return the same velocity.
+     */
+    @Override
+    public Velocity hit(Ball hitter, Point collisionPoint,
+                        Velocity currentVelocity) {
+        return currentVelocity;
+    }
+
+    /**
+     * Casts a trajectory over the cells it crosses, in order, testing the
+     * tiles near every cell, and stops at the first cell that ends after the
+     * earliest hit found.
+     *
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param radius the radius of the moving object, 0 for a ray.
+     * @param hit    receives the time, side and normal of the hit.
+     * @param out    receives the sides of the tile that was hit.
+     * @return the index of the tile that was hit, -1 if none was hit.
+     */
+    @Override
+    public int castParts(double x0, double y0, double dx, double dy,
+                         double radius, RayHit hit, double[] out) {
+        double margin = radius + TOUCH_MARGIN;
+        double enter = RayHit.entryTime(x0, y0, dx, dy,
+                this.bounds.getLeftX() - margin,
+                this.bounds.getUpperY() - margin,
+                this.bounds.getRightX() + margin,
+                this.bounds.getLowerY() + margin);
+        // checks if the trajectory misses the map.
+        if (enter > 1) {
+            return -1;
+        }
+        int reachX = (int) Math.ceil(margin / this.tileWidth);
+        int reachY = (int) Math.ceil(margin / this.tileHeight);
+        double startX = x0 + enter * dx;
+        double startY = y0 + enter * dy;
+        int cellX = (int) Math.floor((startX - this.originX) / this.tileWidth);
+        int cellY = (int) Math.floor((startY - this.originY)
+                                    / this.tileHeight);
+        int stepX = (dx > 0) ? 1 : -1;
+        int stepY = (dy > 0) ? 1 : -1;
+        double nextX = borderTime(x0, dx, cellX, this.originX,
+                                this.tileWidth);
+        double nextY = borderTime(y0, dy, cellY, this.originY,
+                                this.tileHeight);
+        double deltaX = (dx == 0) ? Double.POSITIVE_INFINITY
+                        : this.tileWidth / Math.abs(dx);
+        double deltaY = (dy == 0) ? Double.POSITIVE_INFINITY
+                        : this.tileHeight / Math.abs(dy);
+        int best = -1;
+        double bestTime = Double.POSITIVE_INFINITY;
+        // walks over the cells the trajectory crosses.
+        while (true) {
+            int fromColumn = Math.max(cellX - reachX, 0);
+            int toColumn = Math.min(cellX + reachX, this.columns - 1);
+            int fromRow = Math.max(cellY - reachY, 0);
+            int toRow = Math.min(cellY + reachY, this.rows - 1);
+            // goes over the tiles near the cell.
+            for (int row = fromRow; row <= toRow; row++) {
+                // goes over the tiles of the row near the cell.
+                for (int column = fromColumn; column <= toColumn; column++) {
+                    int index = row * this.columns + column;
+                    // checks if the tile is empty or misses the trajectory.
+                    if (this.tiles[index] == 0
+                            || !castTile(index, x0, y0, dx, dy, radius, hit)) {
+                        continue;
+                    }
+                    double time = hit.getTime();
+                    // checks if the tile is hit before the best one.
+                    if (time < bestTime || (time == bestTime && index < best)) {
+                        best = index;
+                        bestTime = time;
+                    }
+                }
+            }
+            double cellExit = Math.min(nextX, nextY);
+            // checks if a hit was found in the cell or the trajectory ended.
+            if (bestTime <= cellExit || cellExit > 1) {
+                break;
+            }
+            // checks which cell border is crossed first.
+            if (nextX < nextY) {
+                cellX += stepX;
+                nextX += deltaX;
+            } else {
+                cellY += stepY;
+                nextY += deltaY;
+            }
+        }
+        // checks if no tile was hit.
+        if (best < 0) {
+            return -1;
+        }
+        castTile(best, x0, y0, dx, dy, radius, hit);
+        out[0] = tileLeft(best);
+        out[1] = tileTop(best);
+        out[2] = out[0] + this.tileWidth;
+        out[3] = out[1] + this.tileHeight;
+        return best;
+    }
+
+    /**
+     * Gets a tile as a block, which removes the tile from the map when it is
+     * removed from the game, and notifies the map's hit listeners.
+     *
+     * @param index the index of the tile.
+     * @return the tile's block.
+     */
+    @Override
+    public Collidable part(int index) {
+        Rectangle rect = new Rectangle(new Point(tileLeft(index),
+                                                tileTop(index)),
+                                        this.tileWidth, this.tileHeight);
+        TileBlock block = new TileBlock(this, index, rect,
+                                this.palette[(this.tiles[index] & 0xFF) - 1]);
+        // goes over the map's listeners.
+        for (HitListener hl : this.hitListeners) {
+            block.addHitListener(hl);
+        }
+        return block;
+    }
+
+    /**
+     * Draws the tiles that are inside the surface.
+     *
+     * @param surface the surface.
+     */
+    @Override
+    public void drawOn(DrawSurface surface) {
+        int toColumn = Math.min(this.columns - 1, (int) Math.floor(
+                (surface.getWidth() - this.originX) / this.tileWidth));
+        int toRow = Math.min(this.rows - 1, (int) Math.floor(
+                (surface.getHeight() - this.originY) / this.tileHeight));
+        int fromColumn = Math.max(0, (int) Math.floor(-this.originX
+                                                    / this.tileWidth));
+        int fromRow = Math.max(0, (int) Math.floor(-this.originY
+                                                    / this.tileHeight));
+        // goes over the visible rows.
+        for (int row = fromRow; row <= toRow; row++) {
+            // goes over the visible tiles of the row.
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int index = row * this.columns + column;
+                // checks if the tile is empty.
+                if (this.tiles[index] == 0) {
+                    continue;
+                }
+                int x = (int) tileLeft(index);
+                int y = (int) tileTop(index);
+                surface.setColor(this.palette[(this.tiles[index] & 0xFF) - 1]);
+                surface.fillRectangle(x, y, (int) this.tileWidth,
+                                        (int) this.tileHeight);
+                surface.setColor(Color.BLACK);
+                surface.drawRectangle(x, y, (int) this.tileWidth,
+                                        (int) this.tileHeight);
+            }
+        }
+    }
+
+    /**
+     * Notify the map that time has passed.
+     */
+    @Override
+    public void timePassed() {
+        return;
+    }
+
+    /**
+     * Adds the map to the game.
+     *
+     * @param g the game object.
+     */
+    public void addToGame(GameLevel g) {
+        g.addSprite(this);
+        g.addCollidable(this);
+    }
+
+    /**
+     * Adds hit listener, which is notified about hits of every tile.
+     *
+     * @param hl the hit listener.
+     */
+    @Override
+    public void addHitListener(HitListener hl) {
+        this.hitListeners.add(hl);
+    }
+
+    /**
+     * Removes hit listener.
+     *
+     * @param hl the hit listener.
+     */
+    @Override
+    public void removeHitListener(HitListener hl) {
+        this.hitListeners.remove(hl);
+    }
+
+    /**
+     * Empties a tile, and notifies the game that the tile changed.
+     *
+     * @param index the index of the tile.
+     * @param part  the tile's block.
+     * @param game  the game.
+     */
+    private void clearTile(int index, Collidable part, GameLevel game) {
+        // checks if the tile is already empty.
+        if (this.tiles[index] == 0) {
+            return;
+        }
+        this.tiles[index] = 0;
+        this.tileCount--;
+        game.updatePart(part);
+    }
+
+    /**
+     * Sets a tile by its index to a color, adding the color to the palette.
+     *
+     * @param index the index of the tile.
+     * @param color the color.
+     * @return true if it was set, false if the palette is full.
+     */
+    private boolean setTile(int index, Color color) {
+        int colorIndex = -1;
+        // goes over the palette to find the color.
+        for (int i = 0; i < this.palette.length; i++) {
+            // checks if this is the color.
+            if (this.palette[i].equals(color)) {
+                colorIndex = i;
+                break;
+            }
+        }
+        // checks if the color is new.
+        if (colorIndex < 0) {
+            // checks if the palette is full.
+            if (this.palette.length == MAX_COLORS) {
+                return false;
+            }
+            Color[] grown = new Color[this.palette.length + 1];
+            System.arraycopy(this.palette, 0, grown, 0, this.palette.length);
+            grown[this.palette.length] = color;
+            this.palette = grown;
+            colorIndex = this.palette.length - 1;
+        }
+        // checks if the tile was empty.
+        if (this.tiles[index] == 0) {
+            this.tileCount++;
+        }
+        this.tiles[index] = (byte) (colorIndex + 1);
+        return true;
+    }
+
+    /**
+     * Casts a trajectory against one tile.
+     *
+     * @param index  the index of the tile.
+     * @param x0     the x coordinate of the start of the trajectory.
+     * @param y0     the y coordinate of the start of the trajectory.
+     * @param dx     the x-axis part of the trajectory.
+     * @param dy     the y-axis part of the trajectory.
+     * @param radius the radius of the moving object, 0 for a ray.
+     * @param hit    receives the time, side and normal of the hit.
+     * @return true if the tile is hit, false otherwise.
+     */
+    private boolean castTile(int index, double x0, double y0, double dx,
+                             double dy, double radius, RayHit hit) {
+        double left = tileLeft(index);
+        double top = tileTop(index);
+        // checks if the trajectory is a ray or swept by a circle.
+        if (radius == 0) {
+            return hit.intersect(x0, y0, dx, dy, left, top,
+                                left + this.tileWidth, top + this.tileHeight);
+        }
+        return hit.sweepCircle(x0, y0, dx, dy, radius, left, top,
+                                left + this.tileWidth, top + this.tileHeight);
+    }
+
+    /**
+     * Calculates the left side of a tile.
+     *
+     * @param index the index of the tile.
+     * @return the left side.
+     */
+    private double tileLeft(int index) {
+        return this.originX + (index % this.columns) * this.tileWidth;
+    }
+
+    /**
+     * Calculates the upper side of a tile.
+     *
+     * @param index the index of the tile.
+     * @return the upper side.
+     */
+    private double tileTop(int index) {
+        return this.originY + (index / this.columns) * this.tileHeight;
+    }
+
+    /**
+     * Calculates the parametric distance to the first cell border on an axis.
+     *
+     * @param origin the start of the trajectory on the axis.
+     * @param delta  the length of the trajectory on the axis.
+     * @param cell   the cell the trajectory starts in on the axis.
+     * @param start  the start of the grid on the axis.
+     * @param size   the size of a cell on the axis.
+     * @return the parametric distance to the first border.
+     */
+    private static double borderTime(double origin, double delta, int cell,
+                                     double start, double size) {
+        // checks if the trajectory doesn't move on this axis.
+        if (delta == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double border = (delta > 0) ? start + (cell + 1) * size
+                                    : start + cell * size;
+        return (border - origin) / delta;
+    }
+
+    /**
+     * A tile of the map as a block, given to the balls that hit it and to
+     * the hit listeners.
+     */
+    private static class TileBlock extends Block {
+        private TileMap map;
+        private int index;
+
+        /**
+         * Instantiates a new tile block.
+         *
+         * @param map   the map.
+         * @param index the index of the tile.
+         * @param rect  the rectangle of the tile.
+         * @param color the color of the tile.
+         */
+        TileBlock(TileMap map, int index, Rectangle rect, Color color) {
+            super(rect, color);
+            this.map = map;
+            this.index = index;
+        }
+
+        /**
+         * Removes the tile from the map.
+         *
+         * @param game the game
+         */
+        @Override
+        public void removeFromGame(GameLevel game) {
+            this.map.clearTile(this.index, this, game);
+        }
+    }
+}
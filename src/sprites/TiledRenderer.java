@@ -0,0 +1,235 @@
+package sprites;
+
+import animation.FrameFence;
+import biuoop.DrawSurface;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents a tiled software renderer, defined by the framebuffers it
+ * draws into, a surface for every tile of every framebuffer and a fork
+ * join pool kept for the tiles. The sprites are drawn once, on the calling
+ * thread, into a binner that keeps their commands and the tiles every
+ * command touches, so the sprites never run on two threads. Then the tiles
+ * are rasterized in parallel, each by its own surface that shares the
+ * pixels of the framebuffer but is clipped to the tile, drawing the
+ * commands of the tile in their order. The tiles don't overlap and the
+ * rasterizer covers the same pixels however it is clipped, but for ovals
+ * too large to trace, so the frame is the same as when it is drawn
+ * serially, and the gui is given the framebuffer as one image.
+ * Only the tiles whose commands are all written into the pixels run in
+ * parallel. The tiles with a line, text, image, polygon or large oval,
+ * which are drawn by a graphics on the shared image, are drawn after them
+ * on the calling thread. A frame is only drawn into a framebuffer no shown
+ * frame holds, since the gui reads the image of a frame until a later
+ * frame replaced it on the screen.
+ * @author Max Shabs
+ */
+public class TiledRenderer {
+    private static final int TILE_WIDTH = 100;
+    private static final int TILE_HEIGHT = 100;
+    private static final int MIN_PARALLEL_COMMANDS = 64;
+    private static ForkJoinPool tilePool;
+    private int width;
+    private int height;
+    private ForkJoinPool pool;
+    private int[] parallelTiles;
+    private TileBinner binner;
+    private FramebufferSurface[][] tiles;
+    private FrameSlots slots;
+    private int current;
+
+    /**
+     * Instantiates a new renderer.
+     *
+     * @param width        the width of the screen.
+     * @param height       the height of the screen.
+     * @param fence        the fence of the frames shown on the gui.
+     * @param framebuffers the number of framebuffers the renderer keeps
+     *                     before it waits for one that isn't shown.
+     */
+    public TiledRenderer(int width, int height, FrameFence fence,
+                         int framebuffers) {
+        this.width = width;
+        this.height = height;
+        this.binner = new TileBinner(width, height, TILE_WIDTH, TILE_HEIGHT);
+        this.pool = tilePool(this.binner.tiles());
+        this.parallelTiles = new int[this.binner.tiles()];
+        this.slots = new FrameSlots(fence, framebuffers);
+        this.tiles = new FramebufferSurface[this.slots.capacity()][];
+        this.current = 0;
+    }
+
+    /**
+     * Draws the sprites into a framebuffer no shown frame holds, tile by
+     * tile in parallel, and the framebuffer on the surface.
+     *
+     * @param d       the surface.
+     * @param sprites the sprites, in the order they are drawn.
+     * @param alpha   how far from the previous tick (0) to the last one (1)
+     *                the sprites are drawn.
+     */
+    public void render(DrawSurface d, SpriteCollection sprites,
+                       double alpha) {
+        int next = this.slots.acquire(this.current);
+        // checks if the slots outgrew the framebuffers.
+        if (next >= this.tiles.length) {
+            this.tiles = Arrays.copyOf(this.tiles, this.slots.capacity());
+        }
+        // checks if the next framebuffer wasn't created yet.
+        if (this.tiles[next] == null) {
+            createFramebuffer(next);
+        }
+        this.binner.begin();
+        sprites.drawAllOn(this.binner, alpha);
+        FramebufferSurface[] surfaces = this.tiles[next];
+        // checks if there are too few commands to be worth the fork join.
+        if (this.binner.getCommandCount() < MIN_PARALLEL_COMMANDS) {
+            // goes over the tiles.
+            for (int t = 0; t < surfaces.length; t++) {
+                drawTile(this.binner, surfaces[t], t);
+            }
+        } else {
+            drawInParallel(surfaces);
+        }
+        this.current = next;
+        d.drawImage(0, 0, surfaces[0].getImage());
+    }
+
+    /**
+     * Draws the tiles that only write into the pixels in parallel, and then
+     * the tiles that draw with a graphics on the calling thread.
+     *
+     * @param surfaces the surfaces of the tiles.
+     */
+    private void drawInParallel(FramebufferSurface[] surfaces) {
+        int count = 0;
+        // goes over the tiles.
+        for (int t = 0; t < surfaces.length; t++) {
+            // checks if the tile only writes into the pixels.
+            if (!this.binner.usesGraphics(t)) {
+                this.parallelTiles[count] = t;
+                count++;
+            }
+        }
+        // checks if any tile is drawn in parallel.
+        if (count > 0) {
+            this.pool.invoke(new TileTask(this.binner, surfaces,
+                                          this.parallelTiles, 0, count));
+        }
+        // goes over the tiles.
+        for (int t = 0; t < surfaces.length; t++) {
+            // checks if the tile draws with a graphics.
+            if (this.binner.usesGraphics(t)) {
+                drawTile(this.binner, surfaces[t], t);
+            }
+        }
+    }
+
+    /**
+     * Gets the pool the tiles are rasterized on, creating it the first time
+     * with a thread for every tile, up to the number of processors.
+     *
+     * @param tiles the number of tiles.
+     * @return the pool.
+     */
+    private static synchronized ForkJoinPool tilePool(int tiles) {
+        // checks if the pool wasn't created yet.
+        if (tilePool == null) {
+            int threads = Math.min(tiles,
+                    Runtime.getRuntime().availableProcessors());
+            tilePool = new ForkJoinPool(Math.max(1, threads));
+        }
+        return tilePool;
+    }
+
+    /**
+     * Creates a framebuffer and the surfaces of its tiles, each clipped to
+     * its tile.
+     *
+     * @param i the framebuffer.
+     */
+    private void createFramebuffer(int i) {
+        FramebufferSurface[] surfaces =
+                new FramebufferSurface[this.binner.tiles()];
+        surfaces[0] = new FramebufferSurface(this.width, this.height);
+        // goes over the tiles.
+        for (int t = 0; t < surfaces.length; t++) {
+            // checks if the tile needs a surface of its own.
+            if (t > 0) {
+                surfaces[t] = new FramebufferSurface(surfaces[0].getImage());
+            }
+            surfaces[t].setClip(this.binner.getMinX(t),
+                                this.binner.getMinY(t),
+                                this.binner.getMaxX(t),
+                                this.binner.getMaxY(t));
+        }
+        this.tiles[i] = surfaces;
+    }
+
+    /**
+     * Clears a tile and draws its commands.
+     *
+     * @param binner  the binned commands.
+     * @param surface the surface of the tile.
+     * @param t       the tile.
+     */
+    private static void drawTile(TileBinner binner,
+                                 FramebufferSurface surface, int t) {
+        surface.clear(Color.BLACK);
+        binner.drawTile(t, surface);
+    }
+
+    /**
+     * Represents a task that rasterizes a range of a list of tiles, defined
+     * by the binned commands, the surfaces of the tiles, the list and the
+     * range.
+     */
+    private static class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private transient TileBinner binner;
+        private transient FramebufferSurface[] surfaces;
+        private int[] list;
+        private int from;
+        private int to;
+
+        /**
+         * Instantiates a new task.
+         *
+         * @param binner   the binned commands.
+         * @param surfaces the surfaces of the tiles.
+         * @param list     the tiles.
+         * @param from     the first index of the range in the list.
+         * @param to       the end of the range, exclusive.
+         */
+        TileTask(TileBinner binner, FramebufferSurface[] surfaces,
+                 int[] list, int from, int to) {
+            this.binner = binner;
+            this.surfaces = surfaces;
+            this.list = list;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Rasterizes the tile, or splits the range in two halves.
+         */
+        @Override
+        protected void compute() {
+            // checks if the range is a single tile.
+            if (this.to - this.from == 1) {
+                int t = this.list[this.from];
+                drawTile(this.binner, this.surfaces[t], t);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new TileTask(this.binner, this.surfaces, this.list,
+                                   this.from, middle),
+                      new TileTask(this.binner, this.surfaces, this.list,
+                                   middle, this.to));
+        }
+    }
+}